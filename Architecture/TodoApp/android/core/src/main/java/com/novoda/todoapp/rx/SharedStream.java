@@ -0,0 +1,52 @@
+package com.novoda.todoapp.rx;
+
+import com.jakewharton.rxrelay.BehaviorRelay;
+
+import rx.Observable;
+import rx.functions.Action0;
+
+/**
+ * One subscription to a source shared by every subscriber, replaying the latest value to new ones.
+ */
+public final class SharedStream<T> {
+
+    private final Observable<T> shared;
+    private final BehaviorRelay<Integer> subscriberCountRelay = BehaviorRelay.create(0);
+    private int subscriberCount;
+
+    public static <T> SharedStream<T> replayingLatest(Observable<T> source) {
+        return new SharedStream<>(source);
+    }
+
+    private SharedStream(Observable<T> source) {
+        this.shared = source
+                .replay(1)
+                .refCount()
+                .doOnSubscribe(new Action0() {
+                    @Override
+                    public void call() {
+                        updateSubscriberCount(1);
+                    }
+                })
+                .doOnUnsubscribe(new Action0() {
+                    @Override
+                    public void call() {
+                        updateSubscriberCount(-1);
+                    }
+                });
+    }
+
+    private synchronized void updateSubscriberCount(int change) {
+        subscriberCount += change;
+        subscriberCountRelay.call(subscriberCount);
+    }
+
+    public Observable<T> asObservable() {
+        return shared;
+    }
+
+    public Observable<Integer> getSubscriberCount() {
+        return subscriberCountRelay.asObservable();
+    }
+
+}
@@ -4,6 +4,14 @@ import com.novoda.todoapp.tasks.data.model.Tasks;
 
 public interface TasksDataFreshnessChecker {
 
+    /**
+     * @return true if the tasks can be shown without asking the remote for newer ones
+     */
     public boolean isFresh(Tasks tasks);
 
+    /**
+     * @return true if the tasks are too old to be shown while newer ones are fetched from the remote
+     */
+    public boolean isExpired(Tasks tasks);
+
 }
@@ -0,0 +1,55 @@
+package com.novoda.todoapp.tasks.data;
+
+import com.novoda.data.SyncState;
+import com.novoda.data.SyncedData;
+import com.novoda.todoapp.task.data.model.Task;
+import com.novoda.todoapp.tasks.data.model.Tasks;
+import com.novoda.todoapp.tasks.service.Clock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fresh for the time to live since the least recently synced task, then stale for the revalidate window.
+ */
+public class TtlTasksFreshnessChecker implements TasksDataFreshnessChecker {
+
+    private static final long NOTHING_SYNCED = -1;
+
+    private final Clock clock;
+    private final long timeToLiveMillis;
+    private final long staleWhileRevalidateMillis;
+
+    public TtlTasksFreshnessChecker(Clock clock, long timeToLive, long staleWhileRevalidate, TimeUnit unit) {
+        this.clock = clock;
+        this.timeToLiveMillis = unit.toMillis(timeToLive);
+        this.staleWhileRevalidateMillis = unit.toMillis(staleWhileRevalidate);
+    }
+
+    @Override
+    public boolean isFresh(Tasks tasks) {
+        long age = ageInMillis(tasks);
+        return age != NOTHING_SYNCED && age <= timeToLiveMillis;
+    }
+
+    @Override
+    public boolean isExpired(Tasks tasks) {
+        return ageInMillis(tasks) > timeToLiveMillis + staleWhileRevalidateMillis;
+    }
+
+    /**
+     * @return {@link #NOTHING_SYNCED} when every task has local changes
+     */
+    private long ageInMillis(Tasks tasks) {
+        long oldestSyncAction = Long.MAX_VALUE;
+        for (SyncedData<Task> syncedTask : tasks.all()) {
+            if (syncedTask.syncState() == SyncState.IN_SYNC) {
+                oldestSyncAction = Math.min(oldestSyncAction, syncedTask.lastSyncAction());
+            }
+        }
+        if (oldestSyncAction == Long.MAX_VALUE) {
+            return NOTHING_SYNCED;
+        }
+        return clock.timeInMillis() - Math.max(oldestSyncAction, tasks.inSyncConfirmedAt());
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.novoda.todoapp.tasks.data.model;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.novoda.todoapp.task.data.model.Id;
+import com.novoda.todoapp.task.data.model.Task;
+
+import java.util.Collection;
+
+/**
+ * Tasks the remote changed or deleted since a cursor, or every task when it can't tell, see {@link #replacesAll()}.
+ */
+@AutoValue
+public abstract class TaskChanges {
+
+    public static TaskChanges from(Collection<Task> upserts, Collection<Id> tombstones, String cursor) {
+        return new AutoValue_TaskChanges(ImmutableList.copyOf(upserts), ImmutableSet.copyOf(tombstones), cursor, false);
+    }
+
+    public static TaskChanges replacingAll(Collection<Task> tasks, String cursor) {
+        return new AutoValue_TaskChanges(ImmutableList.copyOf(tasks), ImmutableSet.<Id>of(), cursor, true);
+    }
+
+    public static TaskChanges none(String cursor) {
+        return from(ImmutableList.<Task>of(), ImmutableSet.<Id>of(), cursor);
+    }
+
+    TaskChanges() {
+        // AutoValue best practices https://github.com/google/auto/blob/master/value/userguide/practices.md
+    }
+
+    public abstract ImmutableList<Task> upserts();
+
+    public abstract ImmutableSet<Id> tombstones();
+
+    public abstract String cursor();
+
+    /**
+     * Whether the upserts are every task the remote has, any other task being gone.
+     */
+    public abstract boolean replacesAll();
+
+    public boolean isEmpty() {
+        return !replacesAll() && upserts().isEmpty() && tombstones().isEmpty();
+    }
+
+}
@@ -1,9 +1,7 @@
 package com.novoda.todoapp.tasks.data.model;
 
 import com.google.auto.value.AutoValue;
-import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
 import com.novoda.data.ImmutableMapWithCopy;
 import com.novoda.data.SyncState;
 import com.novoda.data.SyncedData;
@@ -13,25 +11,52 @@ import com.novoda.todoapp.task.data.model.Task;
 import java.util.Collection;
 import java.util.Map;
 
-import static com.google.common.base.Predicates.not;
-
+/**
+ * Tasks by id, with the active and the completed ones kept apart.
+ */
 @AutoValue
 public abstract class Tasks {
 
+    public static final long NEVER_CONFIRMED = 0;
+
+    private volatile ImmutableList<SyncedData<Task>> all;
+
     public static Tasks empty() {
-        return from(ImmutableMapWithCopy.<Id, SyncedData<Task>>empty());
+        ImmutableMapWithCopy<Id, SyncedData<Task>> empty = ImmutableMapWithCopy.empty();
+        return new AutoValue_Tasks(empty, empty, empty, NEVER_CONFIRMED);
     }
 
     public static Tasks asSynced(Collection<Task> tasks, long syncActionTimestamp) {
-        ImmutableMap.Builder<Id, SyncedData<Task>> builder = ImmutableMap.builder();
+        ImmutableMapWithCopy.Builder<Id, SyncedData<Task>> builder = ImmutableMapWithCopy.builder();
         for (Task task : tasks) {
             builder.put(task.id(), SyncedData.from(task, SyncState.IN_SYNC, syncActionTimestamp));
         }
-        return from(ImmutableMapWithCopy.from(builder.build()));
+        return from(builder.build());
+    }
+
+    public static Tasks from(Collection<SyncedData<Task>> syncedTasks) {
+        ImmutableMapWithCopy.Builder<Id, SyncedData<Task>> builder = ImmutableMapWithCopy.builder();
+        for (SyncedData<Task> syncedTask : syncedTasks) {
+            builder.put(syncedTask.data().id(), syncedTask);
+        }
+        return from(builder.build());
     }
 
     static Tasks from(ImmutableMapWithCopy<Id, SyncedData<Task>> map) {
-        return new AutoValue_Tasks(map);
+        return from(map, NEVER_CONFIRMED);
+    }
+
+    private static Tasks from(ImmutableMapWithCopy<Id, SyncedData<Task>> map, long inSyncConfirmedAt) {
+        ImmutableMapWithCopy.Builder<Id, SyncedData<Task>> actives = ImmutableMapWithCopy.builder();
+        ImmutableMapWithCopy.Builder<Id, SyncedData<Task>> completed = ImmutableMapWithCopy.builder();
+        for (Map.Entry<Id, SyncedData<Task>> entry : map.entrySet()) {
+            if (entry.getValue().data().isCompleted()) {
+                completed.put(entry.getKey(), entry.getValue());
+            } else {
+                actives.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return new AutoValue_Tasks(map, actives.build(), completed.build(), inSyncConfirmedAt);
     }
 
     Tasks() {
@@ -40,6 +65,15 @@ public abstract class Tasks {
 
     abstract ImmutableMapWithCopy<Id, SyncedData<Task>> internalMap();
 
+    abstract ImmutableMapWithCopy<Id, SyncedData<Task>> activeMap();
+
+    abstract ImmutableMapWithCopy<Id, SyncedData<Task>> completedMap();
+
+    /**
+     * When the remote last confirmed the tasks in sync were unchanged, {@link #NEVER_CONFIRMED} if it didn't.
+     */
+    public abstract long inSyncConfirmedAt();
+
     public boolean isEmpty() {
         return internalMap().isEmpty();
     }
@@ -50,17 +84,108 @@ public abstract class Tasks {
     }
 
     public Tasks save(SyncedData<Task> taskSyncedData) {
-        return from(internalMap().put(taskSyncedData.data().id(), taskSyncedData));
+        Id id = taskSyncedData.data().id();
+        if (taskSyncedData.data().isCompleted()) {
+            return new AutoValue_Tasks(
+                    internalMap().put(id, taskSyncedData),
+                    activeMap().remove(id),
+                    completedMap().put(id, taskSyncedData),
+                    inSyncConfirmedAt()
+            );
+        }
+        return new AutoValue_Tasks(
+                internalMap().put(id, taskSyncedData),
+                activeMap().put(id, taskSyncedData),
+                completedMap().remove(id),
+                inSyncConfirmedAt()
+        );
+    }
+
+    public Tasks remove(Id id) {
+        if (!containsTask(id)) {
+            return this;
+        }
+        return new AutoValue_Tasks(
+                internalMap().remove(id),
+                activeMap().remove(id),
+                completedMap().remove(id),
+                inSyncConfirmedAt()
+        );
+    }
+
+    /**
+     * Applies the changes from the remote as in sync at the given time, leaving tasks with local changes as they are.
+     */
+    public Tasks merge(TaskChanges changes, long syncActionTimestamp) {
+        if (changes.isEmpty()) {
+            return confirmInSyncTasks(syncActionTimestamp);
+        }
+        if (changes.replacesAll()) {
+            return replaceInSyncTasks(changes.upserts(), syncActionTimestamp);
+        }
+        Tasks merged = this;
+        for (Task task : changes.upserts()) {
+            if (isInSyncOrMissing(task.id())) {
+                merged = merged.save(SyncedData.from(task, SyncState.IN_SYNC, syncActionTimestamp));
+            }
+        }
+        for (Id id : changes.tombstones()) {
+            if (isInSyncOrMissing(id)) {
+                merged = merged.remove(id);
+            }
+        }
+        return merged;
+    }
+
+    private boolean isInSyncOrMissing(Id id) {
+        SyncedData<Task> syncedTask = internalMap().get(id);
+        return syncedTask == null || syncedTask.syncState() == SyncState.IN_SYNC;
+    }
+
+    private Tasks replaceInSyncTasks(Collection<Task> tasks, long syncActionTimestamp) {
+        ImmutableMapWithCopy.Builder<Id, SyncedData<Task>> builder = ImmutableMapWithCopy.builder();
+        for (Task task : tasks) {
+            builder.put(task.id(), SyncedData.from(task, SyncState.IN_SYNC, syncActionTimestamp));
+        }
+        for (SyncedData<Task> syncedTask : all()) {
+            if (syncedTask.syncState() != SyncState.IN_SYNC) {
+                builder.put(syncedTask.data().id(), syncedTask);
+            }
+        }
+        return from(builder.build(), inSyncConfirmedAt());
+    }
+
+    /**
+     * Marks the tasks in sync as confirmed by the remote at the given time.
+     */
+    public Tasks confirmInSyncTasks(long syncActionTimestamp) {
+        return new AutoValue_Tasks(internalMap(), activeMap(), completedMap(), syncActionTimestamp);
     }
 
+    /**
+     * Built the first time it's asked for, then shared by every call on these tasks.
+     */
     public ImmutableList<SyncedData<Task>> all() {
-        return ImmutableList.copyOf(internalMap().values());
+        ImmutableList<SyncedData<Task>> values = all;
+        if (values == null) {
+            values = ImmutableList.copyOf(internalMap().values());
+            all = values;
+        }
+        return values;
     }
 
     public int size() {
         return internalMap().size();
     }
 
+    public int activeCount() {
+        return activeMap().size();
+    }
+
+    public int completedCount() {
+        return completedMap().size();
+    }
+
     public SyncedData<Task> syncedDataFor(Id taskId) {
         return internalMap().get(taskId);
     }
@@ -70,19 +195,10 @@ public abstract class Tasks {
     }
 
     public Tasks onlyActives() {
-        return Tasks.from(internalMap().filter(not(isCompleted())));
+        return new AutoValue_Tasks(activeMap(), activeMap(), ImmutableMapWithCopy.<Id, SyncedData<Task>>empty(), inSyncConfirmedAt());
     }
 
     public Tasks onlyCompleted() {
-        return Tasks.from(internalMap().filter(isCompleted()));
-    }
-
-    private static Predicate<Map.Entry<Id, SyncedData<Task>>> isCompleted() {
-        return new Predicate<Map.Entry<Id, SyncedData<Task>>>() {
-            @Override
-            public boolean apply(Map.Entry<Id, SyncedData<Task>> input) {
-                return input.getValue().data().isCompleted();
-            }
-        };
+        return new AutoValue_Tasks(completedMap(), ImmutableMapWithCopy.<Id, SyncedData<Task>>empty(), completedMap(), inSyncConfirmedAt());
     }
 }
@@ -0,0 +1,53 @@
+package com.novoda.todoapp.tasks.data.model;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableSet;
+import com.novoda.data.ImmutableMapWithCopy;
+import com.novoda.data.SyncedData;
+import com.novoda.todoapp.task.data.model.Id;
+import com.novoda.todoapp.task.data.model.Task;
+
+/**
+ * Ids of the tasks inserted, removed and changed between two {@link Tasks}.
+ */
+@AutoValue
+public abstract class TasksDelta {
+
+    public static TasksDelta between(Tasks previous, Tasks current) {
+        final ImmutableSet.Builder<Id> inserted = ImmutableSet.builder();
+        final ImmutableSet.Builder<Id> removed = ImmutableSet.builder();
+        final ImmutableSet.Builder<Id> changed = ImmutableSet.builder();
+        current.internalMap().diff(previous.internalMap(), new ImmutableMapWithCopy.Differences<Id, SyncedData<Task>>() {
+            @Override
+            public void onAdded(Id id, SyncedData<Task> task) {
+                inserted.add(id);
+            }
+
+            @Override
+            public void onRemoved(Id id, SyncedData<Task> task) {
+                removed.add(id);
+            }
+
+            @Override
+            public void onChanged(Id id, SyncedData<Task> previousTask, SyncedData<Task> currentTask) {
+                changed.add(id);
+            }
+        });
+        return new AutoValue_TasksDelta(inserted.build(), removed.build(), changed.build());
+    }
+
+    TasksDelta() {
+        // AutoValue best practices https://github.com/google/auto/blob/master/value/userguide/practices.md
+    }
+
+    public abstract ImmutableSet<Id> inserted();
+
+    public abstract ImmutableSet<Id> removed();
+
+    public abstract ImmutableSet<Id> changed();
+
+    public boolean isEmpty() {
+        return inserted().isEmpty() && removed().isEmpty() && changed().isEmpty();
+    }
+
+}
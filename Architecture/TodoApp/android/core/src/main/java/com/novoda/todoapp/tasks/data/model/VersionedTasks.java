@@ -0,0 +1,26 @@
+package com.novoda.todoapp.tasks.data.model;
+
+import com.google.auto.value.AutoValue;
+import com.novoda.todoapp.task.data.model.Task;
+
+import java.util.List;
+
+/**
+ * Tasks from the remote along with the version it gave them, to be sent back when asking whether they changed.
+ */
+@AutoValue
+public abstract class VersionedTasks {
+
+    public static VersionedTasks from(List<Task> tasks, String version) {
+        return new AutoValue_VersionedTasks(tasks, version);
+    }
+
+    VersionedTasks() {
+        // AutoValue best practices https://github.com/google/auto/blob/master/value/userguide/practices.md
+    }
+
+    public abstract List<Task> tasks();
+
+    public abstract String version();
+
+}
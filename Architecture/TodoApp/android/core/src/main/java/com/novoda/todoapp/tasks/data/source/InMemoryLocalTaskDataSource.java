@@ -4,6 +4,7 @@ import com.google.common.collect.ImmutableList;
 import com.novoda.data.SyncedData;
 import com.novoda.todoapp.task.data.model.Id;
 import com.novoda.todoapp.task.data.model.Task;
+import com.novoda.todoapp.tasks.data.model.TaskChanges;
 import com.novoda.todoapp.tasks.data.model.Tasks;
 
 import java.util.concurrent.TimeUnit;
@@ -81,6 +82,18 @@ public final class InMemoryLocalTaskDataSource implements LocalTasksDataSource {
         }).delay(localDelay, localDelayUnit, Schedulers.immediate());
     }
 
+    @Override
+    public Observable<Tasks> mergeChanges(final TaskChanges changes, final long syncActionTimestamp) {
+        return Observable.create(new Observable.OnSubscribe<Tasks>() {
+            @Override
+            public void call(Subscriber<? super Tasks> subscriber) {
+                localTasks = localTasks.merge(changes, syncActionTimestamp);
+                subscriber.onNext(localTasks);
+                subscriber.onCompleted();
+            }
+        }).delay(localDelay, localDelayUnit, Schedulers.immediate());
+    }
+
     @Override
     public Observable<Void> deleteAllTasks() {
         return Observable.create(new Observable.OnSubscribe<Void>() {
@@ -1,11 +1,14 @@
 package com.novoda.todoapp.tasks.data.source;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.novoda.todoapp.task.data.model.Id;
 import com.novoda.todoapp.task.data.model.Task;
+import com.novoda.todoapp.tasks.data.model.TaskChanges;
+import com.novoda.todoapp.tasks.data.model.VersionedTasks;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -16,11 +19,17 @@ import rx.functions.Action1;
 import rx.functions.Func0;
 import rx.schedulers.Schedulers;
 
+/**
+ * Remote keeping tasks in memory, versioning every change so it can tell what changed since any version.
+ */
 public final class InMemoryRemoteTaskDataSource implements RemoteTasksDataSource {
 
     private final int remoteDelay;
     private final TimeUnit remoteDelayUnit;
     private final Map<Id, Task> dataSourceTasks = new HashMap<>();
+    private final Map<Id, Integer> changedAt = new HashMap<>();
+    private final Map<Id, Integer> deletedAt = new HashMap<>();
+    private int version;
 
     public static RemoteTasksDataSource newInstance() {
         InMemoryRemoteTaskDataSource dataSource = new InMemoryRemoteTaskDataSource(2, TimeUnit.SECONDS);
@@ -28,6 +37,10 @@ public final class InMemoryRemoteTaskDataSource implements RemoteTasksDataSource
         return dataSource;
     }
 
+    static InMemoryRemoteTaskDataSource newEmptyInstance() {
+        return new InMemoryRemoteTaskDataSource(0, TimeUnit.MILLISECONDS);
+    }
+
     private static void populateFakeTasks(InMemoryRemoteTaskDataSource dataSource) {
         ImmutableList<Task> remoteTasks = ImmutableList.<Task>of(
                 Task.builder()
@@ -47,7 +60,7 @@ public final class InMemoryRemoteTaskDataSource implements RemoteTasksDataSource
                         .build()
         );
         for (Task task : remoteTasks) {
-            dataSource.dataSourceTasks.put(task.id(), task);
+            dataSource.put(task);
         }
     }
 
@@ -71,6 +84,77 @@ public final class InMemoryRemoteTaskDataSource implements RemoteTasksDataSource
         }).delay(remoteDelay, remoteDelayUnit, Schedulers.immediate());
     }
 
+    @Override
+    public Observable<VersionedTasks> getTasksIfChanged(final Optional<String> knownVersion) {
+        return Observable.defer(new Func0<Observable<VersionedTasks>>() {
+            @Override
+            public Observable<VersionedTasks> call() {
+                String currentVersion = String.valueOf(version);
+                if (knownVersion.isPresent() && knownVersion.get().equals(currentVersion)) {
+                    return Observable.empty();
+                }
+                List<Task> tasks = ImmutableList.copyOf(dataSourceTasks.values());
+                return Observable.just(VersionedTasks.from(tasks, currentVersion));
+            }
+        }).delay(remoteDelay, remoteDelayUnit, Schedulers.immediate());
+    }
+
+    @Override
+    public Observable<TaskChanges> getChangesSince(final String cursor) {
+        return Observable.defer(new Func0<Observable<TaskChanges>>() {
+            @Override
+            public Observable<TaskChanges> call() {
+                String currentVersion = String.valueOf(version);
+                Optional<Integer> since = parseVersion(cursor);
+                if (!since.isPresent()) {
+                    return Observable.just(TaskChanges.replacingAll(dataSourceTasks.values(), currentVersion));
+                }
+                List<Task> upserts = new ArrayList<>();
+                for (Map.Entry<Id, Integer> entry : changedAt.entrySet()) {
+                    if (entry.getValue() > since.get()) {
+                        upserts.add(dataSourceTasks.get(entry.getKey()));
+                    }
+                }
+                List<Id> tombstones = new ArrayList<>();
+                for (Map.Entry<Id, Integer> entry : deletedAt.entrySet()) {
+                    if (entry.getValue() > since.get()) {
+                        tombstones.add(entry.getKey());
+                    }
+                }
+                return Observable.just(TaskChanges.from(upserts, tombstones, currentVersion));
+            }
+        }).delay(remoteDelay, remoteDelayUnit, Schedulers.immediate());
+    }
+
+    private Optional<Integer> parseVersion(String cursor) {
+        try {
+            int parsed = Integer.parseInt(cursor);
+            if (parsed < 0 || parsed > version) {
+                return Optional.absent();
+            }
+            return Optional.of(parsed);
+        } catch (NumberFormatException e) {
+            return Optional.absent();
+        }
+    }
+
+    private void put(Task task) {
+        version++;
+        dataSourceTasks.put(task.id(), task);
+        changedAt.put(task.id(), version);
+        deletedAt.remove(task.id());
+    }
+
+    private boolean delete(Id taskId) {
+        if (dataSourceTasks.remove(taskId) == null) {
+            return false;
+        }
+        version++;
+        changedAt.remove(taskId);
+        deletedAt.put(taskId, version);
+        return true;
+    }
+
     @Override
     public Observable<Task> getTask(Id taskId) {
         if (dataSourceTasks.containsKey(taskId)) {
@@ -87,14 +171,13 @@ public final class InMemoryRemoteTaskDataSource implements RemoteTasksDataSource
         return Observable.create(new Observable.OnSubscribe<List<Task>>() {
             @Override
             public void call(Subscriber<? super List<Task>> subscriber) {
-                dataSourceTasks.clear();
                 for (Task task : tasks) {
-                    dataSourceTasks.put(task.id(), task);
+                    put(task);
                 }
                 subscriber.onNext(tasks);
                 subscriber.onCompleted();
             }
-        });
+        }).delay(remoteDelay, remoteDelayUnit, Schedulers.immediate());
     }
 
     @Override
@@ -107,7 +190,7 @@ public final class InMemoryRemoteTaskDataSource implements RemoteTasksDataSource
                 .doOnNext(new Action1<Task>() {
                     @Override
                     public void call(Task task) {
-                        dataSourceTasks.put(task.id(), task);
+                        put(task);
                     }
                 })
                 .delay(remoteDelay, remoteDelayUnit, Schedulers.immediate());
@@ -118,11 +201,9 @@ public final class InMemoryRemoteTaskDataSource implements RemoteTasksDataSource
         return Observable.defer(new Func0<Observable<List<Task>>>() {
             @Override
             public Observable<List<Task>> call() {
-                Iterator<Map.Entry<Id, Task>> it = dataSourceTasks.entrySet().iterator();
-                while (it.hasNext()) {
-                    Map.Entry<Id, Task> entry = it.next();
-                    if (entry.getValue().isCompleted()) {
-                        it.remove();
+                for (Task task : ImmutableList.copyOf(dataSourceTasks.values())) {
+                    if (task.isCompleted()) {
+                        delete(task.id());
                     }
                 }
                 List<Task> tasks = ImmutableList.copyOf(dataSourceTasks.values());
@@ -136,7 +217,9 @@ public final class InMemoryRemoteTaskDataSource implements RemoteTasksDataSource
         return Observable.defer(new Func0<Observable<Void>>() {
             @Override
             public Observable<Void> call() {
-                dataSourceTasks.clear();
+                for (Id taskId : ImmutableList.copyOf(dataSourceTasks.keySet())) {
+                    delete(taskId);
+                }
                 return Observable.empty();
             }
         }).delay(remoteDelay, remoteDelayUnit, Schedulers.immediate());
@@ -147,7 +230,7 @@ public final class InMemoryRemoteTaskDataSource implements RemoteTasksDataSource
         return Observable.defer(new Func0<Observable<Void>>() {
             @Override
             public Observable<Void> call() {
-                dataSourceTasks.remove(taskId);
+                delete(taskId);
                 return Observable.empty();
             }
         }).delay(remoteDelay, remoteDelayUnit, Schedulers.immediate());
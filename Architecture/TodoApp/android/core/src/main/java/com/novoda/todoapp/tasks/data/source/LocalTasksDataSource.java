@@ -2,6 +2,7 @@ package com.novoda.todoapp.tasks.data.source;
 
 import com.novoda.data.SyncedData;
 import com.novoda.todoapp.task.data.model.Task;
+import com.novoda.todoapp.tasks.data.model.TaskChanges;
 import com.novoda.todoapp.tasks.data.model.Tasks;
 
 import rx.Observable;
@@ -14,6 +15,11 @@ public interface LocalTasksDataSource {
 
     Observable<SyncedData<Task>> saveTask(SyncedData<Task> taskSyncedData);
 
+    /**
+     * Merges the changes from the remote into the stored tasks, see {@link Tasks#merge(TaskChanges, long)}.
+     */
+    Observable<Tasks> mergeChanges(TaskChanges changes, long syncActionTimestamp);
+
     Observable<Void> deleteAllTasks();
 
 }
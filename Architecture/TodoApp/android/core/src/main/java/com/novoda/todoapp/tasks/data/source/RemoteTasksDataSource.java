@@ -1,7 +1,10 @@
 package com.novoda.todoapp.tasks.data.source;
 
+import com.google.common.base.Optional;
 import com.novoda.todoapp.task.data.model.Id;
 import com.novoda.todoapp.task.data.model.Task;
+import com.novoda.todoapp.tasks.data.model.TaskChanges;
+import com.novoda.todoapp.tasks.data.model.VersionedTasks;
 
 import java.util.List;
 
@@ -11,10 +14,23 @@ public interface RemoteTasksDataSource {
 
     Observable<List<Task>> getTasks();
 
+    /**
+     * Emits the tasks with their current version, or nothing when that's the version given.
+     */
+    Observable<VersionedTasks> getTasksIfChanged(Optional<String> version);
+
+    /**
+     * Emits the tasks changed since the cursor given, or every task when it can't tell.
+     */
+    Observable<TaskChanges> getChangesSince(String cursor);
+
     Observable<Task> getTask(Id taskId);
 
     Observable<Task> saveTask(Task task);
 
+    /**
+     * Inserts or updates the given tasks by id, leaving the others as they are, and emits them as the remote stored them.
+     */
     Observable<List<Task>> saveTasks(List<Task> tasks);
 
     Observable<List<Task>> clearCompletedTasks();
@@ -0,0 +1,288 @@
+package com.novoda.todoapp.tasks.data.source;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.novoda.data.SyncedData;
+import com.novoda.todoapp.task.data.model.Id;
+import com.novoda.todoapp.task.data.model.Task;
+import com.novoda.todoapp.tasks.data.model.TaskChanges;
+import com.novoda.todoapp.tasks.data.model.Tasks;
+import com.novoda.todoapp.tasks.data.model.TasksDelta;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.functions.Func0;
+import rx.schedulers.Schedulers;
+
+/**
+ * Keeps tasks in a {@link TasksDatabase}, answering from memory and writing changes in batches.
+ */
+public final class SqliteLocalTaskDataSource implements LocalTasksDataSource {
+
+    private static final long DEFAULT_BATCH_WINDOW_MILLIS = 200;
+    static final int MAX_WRITE_ATTEMPTS = 5;
+
+    private static final Logger LOGGER = Logger.getLogger(SqliteLocalTaskDataSource.class.getName());
+
+    private final TasksDatabase database;
+    private final Scheduler.Worker writer;
+    private final long batchWindow;
+    private final TimeUnit batchWindowUnit;
+
+    private final Object lock = new Object();
+    private final Object writeLock = new Object();
+    private final Map<Id, SyncedData<Task>> pendingUpserts = new LinkedHashMap<>();
+    private final Set<Id> pendingDeletions = new LinkedHashSet<>();
+    private Optional<Tasks> pendingReplacement = Optional.absent();
+    private Optional<Long> pendingInSyncConfirmedAt = Optional.absent();
+    private Optional<Subscription> scheduledFlush = Optional.absent();
+    private int failedWrites;
+    private Tasks tasks;
+
+    private final Action0 flushAction = new Action0() {
+        @Override
+        public void call() {
+            write();
+        }
+    };
+
+    public static SqliteLocalTaskDataSource newInstance(TasksDatabase database) {
+        return new SqliteLocalTaskDataSource(database, Schedulers.io(), DEFAULT_BATCH_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public SqliteLocalTaskDataSource(TasksDatabase database, Scheduler writeScheduler, long batchWindow, TimeUnit batchWindowUnit) {
+        this.database = database;
+        this.writer = writeScheduler.createWorker();
+        this.batchWindow = batchWindow;
+        this.batchWindowUnit = batchWindowUnit;
+    }
+
+    @Override
+    public Observable<Tasks> getTasks() {
+        return Observable.defer(new Func0<Observable<Tasks>>() {
+            @Override
+            public Observable<Tasks> call() {
+                Tasks loadedTasks;
+                synchronized (lock) {
+                    loadedTasks = loadedTasks();
+                }
+                if (loadedTasks.isEmpty()) {
+                    return Observable.empty();
+                } else {
+                    return Observable.just(loadedTasks);
+                }
+            }
+        });
+    }
+
+    @Override
+    public Observable<Tasks> saveTasks(final Tasks tasks) {
+        return Observable.defer(new Func0<Observable<Tasks>>() {
+            @Override
+            public Observable<Tasks> call() {
+                replaceWith(tasks);
+                return Observable.just(tasks);
+            }
+        });
+    }
+
+    @Override
+    public Observable<SyncedData<Task>> saveTask(final SyncedData<Task> taskSyncedData) {
+        return Observable.defer(new Func0<Observable<SyncedData<Task>>>() {
+            @Override
+            public Observable<SyncedData<Task>> call() {
+                synchronized (lock) {
+                    tasks = loadedTasks().save(taskSyncedData);
+                    queueUpsert(taskSyncedData);
+                    scheduleFlush();
+                }
+                return Observable.just(taskSyncedData);
+            }
+        });
+    }
+
+    @Override
+    public Observable<Tasks> mergeChanges(final TaskChanges changes, final long syncActionTimestamp) {
+        return Observable.defer(new Func0<Observable<Tasks>>() {
+            @Override
+            public Observable<Tasks> call() {
+                Tasks merged;
+                synchronized (lock) {
+                    Tasks current = loadedTasks();
+                    merged = current.merge(changes, syncActionTimestamp);
+                    tasks = merged;
+                    if (changes.isEmpty()) {
+                        pendingInSyncConfirmedAt = Optional.of(syncActionTimestamp);
+                    } else {
+                        queueDelta(merged, TasksDelta.between(current, merged));
+                    }
+                    scheduleFlush();
+                }
+                return Observable.just(merged);
+            }
+        });
+    }
+
+    @Override
+    public Observable<Void> deleteAllTasks() {
+        return Observable.defer(new Func0<Observable<Void>>() {
+            @Override
+            public Observable<Void> call() {
+                replaceWith(Tasks.empty());
+                return Observable.empty();
+            }
+        });
+    }
+
+    private void replaceWith(Tasks replacement) {
+        synchronized (lock) {
+            tasks = replacement;
+            pendingReplacement = Optional.of(replacement);
+            pendingInSyncConfirmedAt = Optional.of(replacement.inSyncConfirmedAt());
+            pendingUpserts.clear();
+            pendingDeletions.clear();
+            scheduleFlush();
+        }
+    }
+
+    private void queueDelta(Tasks tasks, TasksDelta delta) {
+        for (Id id : delta.inserted()) {
+            queueUpsert(tasks.syncedDataFor(id));
+        }
+        for (Id id : delta.changed()) {
+            queueUpsert(tasks.syncedDataFor(id));
+        }
+        for (Id id : delta.removed()) {
+            queueDeletion(id);
+        }
+    }
+
+    private void queueUpsert(SyncedData<Task> syncedTask) {
+        pendingUpserts.put(syncedTask.data().id(), syncedTask);
+        pendingDeletions.remove(syncedTask.data().id());
+    }
+
+    private void queueDeletion(Id id) {
+        pendingUpserts.remove(id);
+        pendingDeletions.add(id);
+    }
+
+    private Tasks loadedTasks() {
+        if (tasks == null) {
+            tasks = Tasks.from(database.loadTasks()).confirmInSyncTasks(database.loadInSyncConfirmedAt());
+        }
+        return tasks;
+    }
+
+    private void scheduleFlush() {
+        if (!scheduledFlush.isPresent()) {
+            scheduledFlush = Optional.of(writer.schedule(flushAction, batchWindow, batchWindowUnit));
+        }
+    }
+
+    private void rescheduleFlush(long delay) {
+        cancelScheduledFlush();
+        scheduledFlush = Optional.of(writer.schedule(flushAction, delay, batchWindowUnit));
+    }
+
+    private void cancelScheduledFlush() {
+        if (scheduledFlush.isPresent()) {
+            scheduledFlush.get().unsubscribe();
+            scheduledFlush = Optional.absent();
+        }
+    }
+
+    /**
+     * Writes whatever is waiting for the batch window right away, for when the app may be killed.
+     */
+    public void flush() {
+        writer.schedule(flushAction);
+    }
+
+    private void write() {
+        synchronized (writeLock) {
+            TasksWriteBatch batch;
+            synchronized (lock) {
+                cancelScheduledFlush();
+                if (nothingPending()) {
+                    return;
+                }
+                batch = TasksWriteBatch.from(
+                        pendingReplacement,
+                        ImmutableList.copyOf(pendingUpserts.values()),
+                        ImmutableSet.copyOf(pendingDeletions),
+                        pendingInSyncConfirmedAt
+                );
+                pendingReplacement = Optional.absent();
+                pendingInSyncConfirmedAt = Optional.absent();
+                pendingUpserts.clear();
+                pendingDeletions.clear();
+            }
+            try {
+                database.write(batch);
+            } catch (RuntimeException e) {
+                retryLater(batch, e);
+                return;
+            }
+            synchronized (lock) {
+                failedWrites = 0;
+            }
+        }
+    }
+
+    private boolean nothingPending() {
+        return !pendingReplacement.isPresent()
+                && pendingUpserts.isEmpty()
+                && pendingDeletions.isEmpty()
+                && !pendingInSyncConfirmedAt.isPresent();
+    }
+
+    /**
+     * Puts a failed batch back in front of the writes made since, unless one of them replaced everything.
+     */
+    private void retryLater(TasksWriteBatch batch, RuntimeException error) {
+        synchronized (lock) {
+            if (!pendingReplacement.isPresent()) {
+                Map<Id, SyncedData<Task>> newerUpserts = new LinkedHashMap<>(pendingUpserts);
+                Set<Id> newerDeletions = new LinkedHashSet<>(pendingDeletions);
+                pendingReplacement = batch.replacement();
+                pendingInSyncConfirmedAt = pendingInSyncConfirmedAt.or(batch.inSyncConfirmedAt());
+                pendingUpserts.clear();
+                pendingDeletions.clear();
+                for (SyncedData<Task> upsert : batch.upserts()) {
+                    queueUpsert(upsert);
+                }
+                for (Id id : batch.deletions()) {
+                    queueDeletion(id);
+                }
+                for (SyncedData<Task> upsert : newerUpserts.values()) {
+                    queueUpsert(upsert);
+                }
+                for (Id id : newerDeletions) {
+                    queueDeletion(id);
+                }
+            }
+            failedWrites = Math.min(failedWrites + 1, MAX_WRITE_ATTEMPTS);
+            if (failedWrites < MAX_WRITE_ATTEMPTS) {
+                LOGGER.log(Level.WARNING, "Couldn't write the tasks, attempt " + failedWrites + " of " + MAX_WRITE_ATTEMPTS,
+                        error);
+                rescheduleFlush(batchWindow << failedWrites);
+            } else {
+                LOGGER.log(Level.SEVERE, "Couldn't write the tasks after " + MAX_WRITE_ATTEMPTS + " attempts, "
+                        + "waiting for the next write", error);
+            }
+        }
+    }
+
+}
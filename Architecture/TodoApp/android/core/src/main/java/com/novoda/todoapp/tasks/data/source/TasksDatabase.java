@@ -0,0 +1,25 @@
+package com.novoda.todoapp.tasks.data.source;
+
+import com.novoda.data.SyncedData;
+import com.novoda.todoapp.task.data.model.Task;
+
+import java.util.List;
+
+/**
+ * Where {@link SqliteLocalTaskDataSource} keeps tasks, using the schema in {@link TasksTable}.
+ */
+public interface TasksDatabase {
+
+    List<SyncedData<Task>> loadTasks();
+
+    /**
+     * @return {@link com.novoda.todoapp.tasks.data.model.Tasks#NEVER_CONFIRMED} if it was never written
+     */
+    long loadInSyncConfirmedAt();
+
+    /**
+     * Applies the whole batch in one transaction.
+     */
+    void write(TasksWriteBatch batch);
+
+}
@@ -0,0 +1,98 @@
+package com.novoda.todoapp.tasks.data.source;
+
+import com.google.common.base.Optional;
+import com.novoda.data.SyncState;
+import com.novoda.data.SyncedData;
+import com.novoda.todoapp.task.data.model.Id;
+import com.novoda.todoapp.task.data.model.Task;
+
+/**
+ * SQLite schema and statements shared by every {@link TasksDatabase}.
+ */
+public final class TasksTable {
+
+    public static final String NAME = "tasks";
+
+    public static final String COLUMN_ID = "id";
+    public static final String COLUMN_TITLE = "title";
+    public static final String COLUMN_DESCRIPTION = "description";
+    public static final String COLUMN_COMPLETED = "completed";
+    public static final String COLUMN_SYNC_STATE = "sync_state";
+    public static final String COLUMN_LAST_SYNC_ACTION = "last_sync_action";
+
+    public static final String CREATE = "CREATE TABLE IF NOT EXISTS " + NAME + " ("
+            + COLUMN_ID + " TEXT PRIMARY KEY NOT NULL, "
+            + COLUMN_TITLE + " TEXT, "
+            + COLUMN_DESCRIPTION + " TEXT, "
+            + COLUMN_COMPLETED + " INTEGER NOT NULL, "
+            + COLUMN_SYNC_STATE + " TEXT NOT NULL, "
+            + COLUMN_LAST_SYNC_ACTION + " INTEGER NOT NULL)";
+
+    public static final String SELECT_ALL = "SELECT "
+            + COLUMN_ID + ", "
+            + COLUMN_TITLE + ", "
+            + COLUMN_DESCRIPTION + ", "
+            + COLUMN_COMPLETED + ", "
+            + COLUMN_SYNC_STATE + ", "
+            + COLUMN_LAST_SYNC_ACTION
+            + " FROM " + NAME;
+
+    public static final String UPSERT = "INSERT OR REPLACE INTO " + NAME + " ("
+            + COLUMN_ID + ", "
+            + COLUMN_TITLE + ", "
+            + COLUMN_DESCRIPTION + ", "
+            + COLUMN_COMPLETED + ", "
+            + COLUMN_SYNC_STATE + ", "
+            + COLUMN_LAST_SYNC_ACTION
+            + ") VALUES (?, ?, ?, ?, ?, ?)";
+
+    public static final String DELETE = "DELETE FROM " + NAME + " WHERE " + COLUMN_ID + " = ?";
+
+    public static final String DELETE_ALL = "DELETE FROM " + NAME;
+
+    public static final String SYNC_NAME = "tasks_sync";
+
+    public static final String COLUMN_SYNC_ROW = "row";
+    public static final String COLUMN_IN_SYNC_CONFIRMED_AT = "in_sync_confirmed_at";
+
+    public static final String CREATE_SYNC = "CREATE TABLE IF NOT EXISTS " + SYNC_NAME + " ("
+            + COLUMN_SYNC_ROW + " INTEGER PRIMARY KEY CHECK (" + COLUMN_SYNC_ROW + " = 0), "
+            + COLUMN_IN_SYNC_CONFIRMED_AT + " INTEGER NOT NULL)";
+
+    public static final String SELECT_IN_SYNC_CONFIRMED_AT = "SELECT " + COLUMN_IN_SYNC_CONFIRMED_AT + " FROM " + SYNC_NAME;
+
+    public static final String UPSERT_IN_SYNC_CONFIRMED_AT = "INSERT OR REPLACE INTO " + SYNC_NAME + " ("
+            + COLUMN_SYNC_ROW + ", "
+            + COLUMN_IN_SYNC_CONFIRMED_AT
+            + ") VALUES (0, ?)";
+
+    private TasksTable() {
+        throw new IllegalStateException("NonInstantiableClassException");
+    }
+
+    /**
+     * @return the arguments of {@link #UPSERT}, each a {@link String}, a {@link Long} or null
+     */
+    public static Object[] toRow(SyncedData<Task> syncedTask) {
+        Task task = syncedTask.data();
+        return new Object[]{
+                task.id().value(),
+                task.title().orNull(),
+                task.description().orNull(),
+                task.isCompleted() ? 1L : 0L,
+                syncedTask.syncState().name(),
+                syncedTask.lastSyncAction()
+        };
+    }
+
+    public static SyncedData<Task> fromRow(String id, String title, String description, long completed, String syncState, long lastSyncAction) {
+        Task task = Task.builder()
+                .id(Id.from(id))
+                .title(Optional.fromNullable(title))
+                .description(Optional.fromNullable(description))
+                .isCompleted(completed != 0)
+                .build();
+        return SyncedData.from(task, SyncState.valueOf(syncState), lastSyncAction);
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.novoda.todoapp.tasks.data.source;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.novoda.data.SyncedData;
+import com.novoda.todoapp.task.data.model.Id;
+import com.novoda.todoapp.task.data.model.Task;
+import com.novoda.todoapp.tasks.data.model.Tasks;
+
+@AutoValue
+public abstract class TasksWriteBatch {
+
+    public static TasksWriteBatch from(Optional<Tasks> replacement, ImmutableList<SyncedData<Task>> upserts) {
+        return from(replacement, upserts, ImmutableSet.<Id>of());
+    }
+
+    public static TasksWriteBatch from(Optional<Tasks> replacement, ImmutableList<SyncedData<Task>> upserts, ImmutableSet<Id> deletions) {
+        return from(replacement, upserts, deletions, Optional.<Long>absent());
+    }
+
+    public static TasksWriteBatch from(
+            Optional<Tasks> replacement,
+            ImmutableList<SyncedData<Task>> upserts,
+            ImmutableSet<Id> deletions,
+            Optional<Long> inSyncConfirmedAt) {
+        return new AutoValue_TasksWriteBatch(replacement, upserts, deletions, inSyncConfirmedAt);
+    }
+
+    TasksWriteBatch() {
+        // AutoValue best practices https://github.com/google/auto/blob/master/value/userguide/practices.md
+    }
+
+    /**
+     * Tasks replacing everything stored, if present.
+     */
+    public abstract Optional<Tasks> replacement();
+
+    /**
+     * Tasks inserted or updated by id after the replacement.
+     */
+    public abstract ImmutableList<SyncedData<Task>> upserts();
+
+    /**
+     * Ids of the tasks deleted after the replacement, none of them being among the upserts.
+     */
+    public abstract ImmutableSet<Id> deletions();
+
+    /**
+     * The new {@link Tasks#inSyncConfirmedAt()}, if it changed.
+     */
+    public abstract Optional<Long> inSyncConfirmedAt();
+
+}
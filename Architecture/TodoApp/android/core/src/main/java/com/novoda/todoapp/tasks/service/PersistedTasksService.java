@@ -1,17 +1,21 @@
 package com.novoda.todoapp.tasks.service;
 
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.jakewharton.rxrelay.BehaviorRelay;
 import com.novoda.data.SyncState;
 import com.novoda.data.SyncedData;
-import com.novoda.data.SyncedDataCreator;
 import com.novoda.event.Event;
+import com.novoda.event.Status;
 import com.novoda.todoapp.rx.IfThenFlatMap;
+import com.novoda.todoapp.rx.SharedStream;
 import com.novoda.todoapp.task.data.model.Id;
 import com.novoda.todoapp.task.data.model.Task;
 import com.novoda.todoapp.tasks.data.TasksDataFreshnessChecker;
+import com.novoda.todoapp.tasks.data.model.TaskChanges;
 import com.novoda.todoapp.tasks.data.model.Tasks;
+import com.novoda.todoapp.tasks.data.model.VersionedTasks;
 import com.novoda.todoapp.tasks.data.source.LocalTasksDataSource;
 import com.novoda.todoapp.tasks.data.source.RemoteTasksDataSource;
 
@@ -19,10 +23,10 @@ import java.util.List;
 
 import rx.Observable;
 import rx.functions.Action0;
+import rx.functions.Action1;
 import rx.functions.Func0;
 import rx.functions.Func1;
 
-import static com.novoda.data.SyncFunctions.asSyncedAction;
 import static com.novoda.event.EventFunctions.*;
 import static com.novoda.todoapp.rx.RxFunctions.ifThenMap;
 
@@ -32,8 +36,14 @@ public class PersistedTasksService implements TasksService {
     private final RemoteTasksDataSource remoteDataSource;
     private final TasksDataFreshnessChecker tasksDataFreshnessChecker;
     private final Clock clock;
+    private final TasksSyncQueue syncQueue;
+
+    private volatile Optional<String> remoteVersion = Optional.absent();
 
     private final BehaviorRelay<Event<Tasks>> taskRelay = BehaviorRelay.create(Event.idle(noEmptyTasks()));
+    private final SharedStream<Event<Tasks>> tasksEvents;
+    private final SharedStream<Event<Tasks>> activeTasksEvents;
+    private final SharedStream<Event<Tasks>> completedTasksEvents;
 
     private static Predicate<Tasks> noEmptyTasks() {
         return new NoEmptyTasksPredicate();
@@ -44,17 +54,41 @@ public class PersistedTasksService implements TasksService {
             RemoteTasksDataSource remoteDataSource,
             TasksDataFreshnessChecker tasksDataFreshnessChecker,
             Clock clock) {
+        this(localDataSource, remoteDataSource, tasksDataFreshnessChecker, clock, TasksSyncQueue.newInstance(remoteDataSource, clock));
+    }
+
+    public PersistedTasksService(
+            LocalTasksDataSource localDataSource,
+            RemoteTasksDataSource remoteDataSource,
+            TasksDataFreshnessChecker tasksDataFreshnessChecker,
+            Clock clock,
+            TasksSyncQueue syncQueue) {
         this.localDataSource = localDataSource;
         this.remoteDataSource = remoteDataSource;
         this.tasksDataFreshnessChecker = tasksDataFreshnessChecker;
         this.clock = clock;
+        this.syncQueue = syncQueue;
+        this.tasksEvents = SharedStream.replayingLatest(
+                taskRelay.asObservable()
+                        .startWith(initialiseSubject())
+                        .distinctUntilChanged()
+        );
+        this.activeTasksEvents = SharedStream.replayingLatest(
+                tasksEvents.asObservable()
+                        .map(filterTasks(onlyActives()))
+        );
+        this.completedTasksEvents = SharedStream.replayingLatest(
+                tasksEvents.asObservable()
+                        .map(filterTasks(onlyCompleted()))
+        );
+        syncQueue.getResults()
+                .compose(updateAndPersistIfMostRecentAction())
+                .subscribe();
     }
 
     @Override
     public Observable<Event<Tasks>> getTasksEvents() {
-        return taskRelay.asObservable()
-                .startWith(initialiseSubject())
-                .distinctUntilChanged();
+        return tasksEvents.asObservable();
     }
 
     @Override
@@ -64,8 +98,7 @@ public class PersistedTasksService implements TasksService {
 
     @Override
     public Observable<Event<Tasks>> getCompletedTasksEvents() {
-        return getTasksEvents()
-                .map(filterTasks(onlyCompleted()));
+        return completedTasksEvents.asObservable();
     }
 
     private static Func1<Event<Tasks>, Event<Tasks>> filterTasks(final Function<Tasks, Tasks> filter) {
@@ -93,8 +126,7 @@ public class PersistedTasksService implements TasksService {
 
     @Override
     public Observable<Event<Tasks>> getActiveTasksEvents() {
-        return getTasksEvents()
-                .map(filterTasks(onlyActives()));
+        return activeTasksEvents.asObservable();
     }
 
     private static Function<Tasks, Tasks> onlyActives() {
@@ -111,6 +143,28 @@ public class PersistedTasksService implements TasksService {
         return getActiveTasksEvents().compose(asData(Tasks.class));
     }
 
+    /**
+     * Subscribers to {@link #getTasksEvents()}, the active and the completed streams counting as one each.
+     */
+    public Observable<Integer> getTasksSubscriberCount() {
+        return tasksEvents.getSubscriberCount();
+    }
+
+    public Observable<Integer> getActiveTasksSubscriberCount() {
+        return activeTasksEvents.getSubscriberCount();
+    }
+
+    public Observable<Integer> getCompletedTasksSubscriberCount() {
+        return completedTasksEvents.getSubscriberCount();
+    }
+
+    /**
+     * How the sync of the saved tasks to the remote is doing, see {@link TasksSyncQueue#getMetrics()}.
+     */
+    public Observable<SyncQueueMetrics> getSyncQueueMetrics() {
+        return syncQueue.getMetrics();
+    }
+
     private Observable<Event<Tasks>> initialiseSubject() {
         return Observable.defer(new Func0<Observable<Event<Tasks>>>() {
             @Override
@@ -120,32 +174,95 @@ public class PersistedTasksService implements TasksService {
                 }
                 return localDataSource.getTasks()
                         .flatMap(fetchFromRemoteIfOutOfDate())
-                        .switchIfEmpty(fetchFromRemote())
+                        .switchIfEmpty(fetchFromRemote(Optional.<Tasks>absent()))
                         .compose(asEvent(taskRelay.getValue()))
-                        .doOnNext(taskRelay); //TODO fix issue with unsubscribe before completion. Either revert or persist request.
+                        .doOnNext(taskRelay) //TODO fix issue with unsubscribe before completion. Either revert or persist request.
+                        .doOnNext(enqueueUnsyncedOnceLoaded());
             }
         });
     }
 
+    private Action1<Event<Tasks>> enqueueUnsyncedOnceLoaded() {
+        return new Action1<Event<Tasks>>() {
+            @Override
+            public void call(Event<Tasks> event) {
+                if (event.state() != Status.LOADING) {
+                    enqueueUnsynced(event.data());
+                }
+            }
+        };
+    }
+
+    private void enqueueUnsynced(Optional<Tasks> tasks) {
+        if (tasks.isPresent()) {
+            syncQueue.enqueueUnsynced(tasks.get());
+        }
+    }
+
     private Func1<Tasks, Observable<Tasks>> fetchFromRemoteIfOutOfDate() {
         return new Func1<Tasks, Observable<Tasks>>() {
             @Override
-            public Observable<Tasks> call(Tasks tasks) {
+            public Observable<Tasks> call(final Tasks tasks) {
                 if (tasksDataFreshnessChecker.isFresh(tasks)) {
                     return Observable.just(tasks);
                 }
-                return fetchFromRemote().startWith(tasks);
+                if (tasksDataFreshnessChecker.isExpired(tasks)) {
+                    return fetchFromRemote(Optional.of(tasks))
+                            .switchIfEmpty(Observable.just(tasks))
+                            .onErrorResumeNext(new Func1<Throwable, Observable<Tasks>>() {
+                                @Override
+                                public Observable<Tasks> call(Throwable throwable) {
+                                    return Observable.just(tasks).concatWith(Observable.<Tasks>error(throwable));
+                                }
+                            });
+                }
+                return fetchFromRemote(Optional.of(tasks)).startWith(tasks);
             }
         };
     }
 
-    private Observable<Tasks> fetchFromRemote() {
-        return remoteDataSource.getTasks()
-                .map(asSyncedTasksNow())
-                .flatMap(persistTasks());
+    /**
+     * Fetches only the changes since the version last fetched when it can, merging them into the local tasks.
+     */
+    private Observable<Tasks> fetchFromRemote(final Optional<Tasks> heldTasks) {
+        return Observable.defer(new Func0<Observable<Tasks>>() {
+            @Override
+            public Observable<Tasks> call() {
+                Optional<String> knownVersion = remoteVersion;
+                if (heldTasks.isPresent() && knownVersion.isPresent()) {
+                    return remoteDataSource.getChangesSince(knownVersion.get())
+                            .flatMap(mergeAndPersistChanges());
+                }
+                return remoteDataSource.getTasksIfChanged(knownVersion)
+                        .map(asReplacingChanges())
+                        .flatMap(mergeAndPersistChanges());
+            }
+        });
+    }
+
+    /**
+     * When nothing changed, the local data source only confirms the tasks it holds as in sync now.
+     */
+    private Func1<TaskChanges, Observable<Tasks>> mergeAndPersistChanges() {
+        return new Func1<TaskChanges, Observable<Tasks>>() {
+            @Override
+            public Observable<Tasks> call(TaskChanges changes) {
+                remoteVersion = Optional.of(changes.cursor());
+                return localDataSource.mergeChanges(changes, clock.timeInMillis());
+            }
+        };
+    }
+
+    private static Func1<VersionedTasks, TaskChanges> asReplacingChanges() {
+        return new Func1<VersionedTasks, TaskChanges>() {
+            @Override
+            public TaskChanges call(VersionedTasks versionedTasks) {
+                return TaskChanges.replacingAll(versionedTasks.tasks(), versionedTasks.version());
+            }
+        };
     }
 
-    private Func1<List<Task>, Tasks> asSyncedTasksNow() {
+    private Func1<List<Task>, Tasks> asSyncedListNow() {
         return new Func1<List<Task>, Tasks>() {
             @Override
             public Tasks call(List<Task> tasks) {
@@ -190,8 +307,10 @@ public class PersistedTasksService implements TasksService {
         return new Action0() {
             @Override
             public void call() {
-                fetchFromRemote()
-                        .compose(asEvent(taskRelay.getValue()))
+                Event<Tasks> currentEvent = taskRelay.getValue();
+                enqueueUnsynced(currentEvent.data());
+                fetchFromRemote(currentEvent.data())
+                        .compose(asEvent(currentEvent))
                         .subscribe(taskRelay);
             }
         };
@@ -203,7 +322,7 @@ public class PersistedTasksService implements TasksService {
             @Override
             public void call() {
                 remoteDataSource.clearCompletedTasks()
-                        .map(asSyncedTasksNow())
+                        .map(asSyncedListNow())
                         .flatMap(persistTasks())
                         .compose(asEvent(taskRelay.getValue()))
                         .subscribe(taskRelay);
@@ -254,37 +373,15 @@ public class PersistedTasksService implements TasksService {
         return new Action0() {
             @Override
             public void call() {
-                final long actionTimestamp = clock.timeInMillis();
-                remoteDataSource.saveTask(updatedTask)
-                        .compose(startAheadThenConfirmOrMarkAsError(updatedTask, actionTimestamp))
+                SyncedData<Task> aheadTask = SyncedData.from(updatedTask, SyncState.AHEAD, clock.timeInMillis());
+                Observable.just(aheadTask)
                         .compose(updateAndPersistIfMostRecentAction())
                         .subscribe();
+                syncQueue.enqueue(aheadTask);
             }
         };
     }
 
-    private static Observable.Transformer<Task, SyncedData<Task>> startAheadThenConfirmOrMarkAsError(
-            final Task updatedTask,
-            final long actionTimestamp
-    ) {
-        return asSyncedAction(new SyncedDataCreator<Task>() {
-            @Override
-            public SyncedData<Task> startWith() {
-                return SyncedData.from(updatedTask, SyncState.AHEAD, actionTimestamp);
-            }
-
-            @Override
-            public SyncedData<Task> onConfirmed(Task taskFromRemote) {
-                return SyncedData.from(taskFromRemote, SyncState.IN_SYNC, actionTimestamp);
-            }
-
-            @Override
-            public SyncedData<Task> onError() {
-                return SyncedData.from(updatedTask, SyncState.SYNC_ERROR, actionTimestamp); //TODO add a retry logic for all Sync_Error states
-            }
-        });
-    }
-
     private Observable.Transformer<SyncedData<Task>, SyncedData<Task>> updateAndPersistIfMostRecentAction() {
         return new Observable.Transformer<SyncedData<Task>, SyncedData<Task>>() {
             @Override
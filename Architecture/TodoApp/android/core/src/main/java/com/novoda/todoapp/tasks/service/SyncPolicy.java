@@ -0,0 +1,67 @@
+package com.novoda.todoapp.tasks.service;
+
+import com.google.auto.value.AutoValue;
+
+import java.util.concurrent.TimeUnit;
+
+@AutoValue
+public abstract class SyncPolicy {
+
+    public static Builder builder() {
+        return new AutoValue_SyncPolicy.Builder()
+                .maxBatchSize(50)
+                .maxBatchesInFlight(2)
+                .initialRetryDelayMillis(TimeUnit.SECONDS.toMillis(1))
+                .maxRetryDelayMillis(TimeUnit.MINUTES.toMillis(1))
+                .maxAttempts(8);
+    }
+
+    SyncPolicy() {
+        // AutoValue best practices https://github.com/google/auto/blob/master/value/userguide/practices.md
+    }
+
+    /**
+     * Most tasks sent in one {@code saveTasks} call.
+     */
+    public abstract int maxBatchSize();
+
+    /**
+     * Most {@code saveTasks} calls waiting for the remote at the same time.
+     */
+    public abstract int maxBatchesInFlight();
+
+    public abstract long initialRetryDelayMillis();
+
+    public abstract long maxRetryDelayMillis();
+
+    /**
+     * Times a task is sent before it's left in {@link com.novoda.data.SyncState#SYNC_ERROR}.
+     */
+    public abstract int maxAttempts();
+
+    /**
+     * Delay before sending a task again after {@code failedAttempts} failures, doubling up to the max delay.
+     */
+    public long retryDelayMillis(int failedAttempts) {
+        int doublings = Math.min(failedAttempts - 1, 30);
+        return Math.min(initialRetryDelayMillis() << doublings, maxRetryDelayMillis());
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+
+        public abstract Builder maxBatchSize(int maxBatchSize);
+
+        public abstract Builder maxBatchesInFlight(int maxBatchesInFlight);
+
+        public abstract Builder initialRetryDelayMillis(long initialRetryDelayMillis);
+
+        public abstract Builder maxRetryDelayMillis(long maxRetryDelayMillis);
+
+        public abstract Builder maxAttempts(int maxAttempts);
+
+        public abstract SyncPolicy build();
+
+    }
+
+}
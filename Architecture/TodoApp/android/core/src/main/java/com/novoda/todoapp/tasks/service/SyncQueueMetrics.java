@@ -0,0 +1,55 @@
+package com.novoda.todoapp.tasks.service;
+
+import com.google.auto.value.AutoValue;
+
+@AutoValue
+public abstract class SyncQueueMetrics {
+
+    public static SyncQueueMetrics empty() {
+        return from(0, 0, 0, 0, 0, 0);
+    }
+
+    static SyncQueueMetrics from(
+            int queueDepth,
+            int batchesInFlight,
+            long flushCount,
+            long failedFlushCount,
+            long lastFlushLatencyMillis,
+            long totalFlushLatencyMillis) {
+        return new AutoValue_SyncQueueMetrics(
+                queueDepth,
+                batchesInFlight,
+                flushCount,
+                failedFlushCount,
+                lastFlushLatencyMillis,
+                totalFlushLatencyMillis
+        );
+    }
+
+    SyncQueueMetrics() {
+        // AutoValue best practices https://github.com/google/auto/blob/master/value/userguide/practices.md
+    }
+
+    /**
+     * Tasks waiting to be sent, including the ones waiting to be retried.
+     */
+    public abstract int queueDepth();
+
+    public abstract int batchesInFlight();
+
+    /**
+     * Batches the remote answered, successfully or not.
+     */
+    public abstract long flushCount();
+
+    public abstract long failedFlushCount();
+
+    public abstract long lastFlushLatencyMillis();
+
+    public abstract long totalFlushLatencyMillis();
+
+    public long averageFlushLatencyMillis() {
+        return flushCount() == 0 ? 0 : totalFlushLatencyMillis() / flushCount();
+    }
+
+}
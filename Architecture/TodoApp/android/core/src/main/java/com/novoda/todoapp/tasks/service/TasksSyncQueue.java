@@ -0,0 +1,265 @@
+package com.novoda.todoapp.tasks.service;
+
+import com.jakewharton.rxrelay.BehaviorRelay;
+import com.jakewharton.rxrelay.PublishRelay;
+import com.jakewharton.rxrelay.SerializedRelay;
+import com.novoda.data.SyncState;
+import com.novoda.data.SyncedData;
+import com.novoda.todoapp.task.data.model.Id;
+import com.novoda.todoapp.task.data.model.Task;
+import com.novoda.todoapp.tasks.data.model.Tasks;
+import com.novoda.todoapp.tasks.data.source.RemoteTasksDataSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+
+/**
+ * Sends the tasks saved locally to the remote in batches, retrying the ones that fail.
+ */
+public class TasksSyncQueue {
+
+    private final RemoteTasksDataSource remoteDataSource;
+    private final Clock clock;
+    private final Scheduler.Worker retryWorker;
+    private final SyncPolicy policy;
+
+    private final SerializedRelay<SyncedData<Task>, SyncedData<Task>> resultsRelay = PublishRelay.<SyncedData<Task>>create().toSerialized();
+    private final SerializedRelay<SyncQueueMetrics, SyncQueueMetrics> metricsRelay = BehaviorRelay.create(SyncQueueMetrics.empty()).toSerialized();
+
+    private final Object lock = new Object();
+    private final Map<Id, PendingSync> pending = new LinkedHashMap<>();
+    private final Map<Id, PendingSync> waitingForRetry = new HashMap<>();
+    private final Set<Id> inFlight = new HashSet<>();
+    private int batchesInFlight;
+    private long flushCount;
+    private long failedFlushCount;
+    private long lastFlushLatencyMillis;
+    private long totalFlushLatencyMillis;
+
+    public static TasksSyncQueue newInstance(RemoteTasksDataSource remoteDataSource, Clock clock) {
+        return new TasksSyncQueue(remoteDataSource, clock, Schedulers.computation(), SyncPolicy.builder().build());
+    }
+
+    public TasksSyncQueue(RemoteTasksDataSource remoteDataSource, Clock clock, Scheduler retryScheduler, SyncPolicy policy) {
+        this.remoteDataSource = remoteDataSource;
+        this.clock = clock;
+        this.retryWorker = retryScheduler.createWorker();
+        this.policy = policy;
+    }
+
+    public Observable<SyncedData<Task>> getResults() {
+        return resultsRelay.asObservable();
+    }
+
+    public Observable<SyncQueueMetrics> getMetrics() {
+        return metricsRelay.asObservable();
+    }
+
+    /**
+     * Queues a task to be sent, replacing any earlier edit of the same task still waiting.
+     */
+    public void enqueue(SyncedData<Task> syncedTask) {
+        synchronized (lock) {
+            Id id = syncedTask.data().id();
+            waitingForRetry.remove(id);
+            pending.put(id, new PendingSync(syncedTask, 0));
+        }
+        drain();
+    }
+
+    /**
+     * Queues the tasks not in sync that aren't already waiting to be sent, such as the ones loaded after a restart.
+     */
+    public void enqueueUnsynced(Tasks tasks) {
+        synchronized (lock) {
+            for (SyncedData<Task> syncedTask : tasks.all()) {
+                Id id = syncedTask.data().id();
+                if (syncedTask.syncState() != SyncState.IN_SYNC && !isQueued(id)) {
+                    pending.put(id, new PendingSync(syncedTask, 0));
+                }
+            }
+        }
+        drain();
+    }
+
+    private boolean isQueued(Id id) {
+        return isEditedAgain(id) || inFlight.contains(id);
+    }
+
+    private void drain() {
+        List<List<PendingSync>> batches = new ArrayList<>();
+        synchronized (lock) {
+            while (batchesInFlight < policy.maxBatchesInFlight()) {
+                List<PendingSync> batch = takeBatch();
+                if (batch.isEmpty()) {
+                    break;
+                }
+                batchesInFlight++;
+                batches.add(batch);
+            }
+        }
+        publishMetrics();
+        for (List<PendingSync> batch : batches) {
+            send(batch);
+        }
+    }
+
+    private List<PendingSync> takeBatch() {
+        List<PendingSync> batch = new ArrayList<>();
+        Iterator<Map.Entry<Id, PendingSync>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext() && batch.size() < policy.maxBatchSize()) {
+            Map.Entry<Id, PendingSync> entry = iterator.next();
+            if (inFlight.add(entry.getKey())) {
+                batch.add(entry.getValue());
+                iterator.remove();
+            }
+        }
+        return batch;
+    }
+
+    private void send(final List<PendingSync> batch) {
+        final long startTime = clock.timeInMillis();
+        List<Task> tasks = new ArrayList<>(batch.size());
+        for (PendingSync pendingSync : batch) {
+            tasks.add(pendingSync.syncedTask.data());
+        }
+        remoteDataSource.saveTasks(tasks).subscribe(new Subscriber<List<Task>>() {
+
+            private List<Task> confirmedTasks = new ArrayList<>();
+
+            @Override
+            public void onNext(List<Task> tasks) {
+                confirmedTasks = tasks;
+            }
+
+            @Override
+            public void onCompleted() {
+                onBatchSaved(batch, confirmedTasks, startTime);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                onBatchFailed(batch, startTime);
+            }
+        });
+    }
+
+    private void onBatchSaved(List<PendingSync> batch, List<Task> confirmedTasks, long startTime) {
+        Map<Id, Task> confirmedById = new HashMap<>(confirmedTasks.size());
+        for (Task task : confirmedTasks) {
+            confirmedById.put(task.id(), task);
+        }
+        List<SyncedData<Task>> results = new ArrayList<>(batch.size());
+        synchronized (lock) {
+            onBatchAnswered(batch, startTime);
+            for (PendingSync pendingSync : batch) {
+                SyncedData<Task> syncedTask = pendingSync.syncedTask;
+                Id id = syncedTask.data().id();
+                if (!isEditedAgain(id)) {
+                    Task confirmedTask = confirmedById.containsKey(id) ? confirmedById.get(id) : syncedTask.data();
+                    results.add(SyncedData.from(confirmedTask, SyncState.IN_SYNC, syncedTask.lastSyncAction()));
+                }
+            }
+        }
+        publish(results);
+        drain();
+    }
+
+    private void onBatchFailed(List<PendingSync> batch, long startTime) {
+        List<SyncedData<Task>> results = new ArrayList<>(batch.size());
+        synchronized (lock) {
+            failedFlushCount++;
+            onBatchAnswered(batch, startTime);
+            for (PendingSync pendingSync : batch) {
+                SyncedData<Task> syncedTask = pendingSync.syncedTask;
+                Id id = syncedTask.data().id();
+                if (!isEditedAgain(id)) {
+                    results.add(SyncedData.from(syncedTask.data(), SyncState.SYNC_ERROR, syncedTask.lastSyncAction()));
+                    retryLater(id, new PendingSync(syncedTask, pendingSync.failedAttempts + 1));
+                }
+            }
+        }
+        publish(results);
+        drain();
+    }
+
+    private void onBatchAnswered(List<PendingSync> batch, long startTime) {
+        batchesInFlight--;
+        for (PendingSync pendingSync : batch) {
+            inFlight.remove(pendingSync.syncedTask.data().id());
+        }
+        flushCount++;
+        lastFlushLatencyMillis = clock.timeInMillis() - startTime;
+        totalFlushLatencyMillis += lastFlushLatencyMillis;
+    }
+
+    private boolean isEditedAgain(Id id) {
+        return pending.containsKey(id) || waitingForRetry.containsKey(id);
+    }
+
+    private void retryLater(final Id id, final PendingSync retry) {
+        if (retry.failedAttempts >= policy.maxAttempts()) {
+            return;
+        }
+        waitingForRetry.put(id, retry);
+        retryWorker.schedule(new Action0() {
+            @Override
+            public void call() {
+                synchronized (lock) {
+                    if (waitingForRetry.get(id) != retry) {
+                        return;
+                    }
+                    waitingForRetry.remove(id);
+                    pending.put(id, retry);
+                }
+                drain();
+            }
+        }, policy.retryDelayMillis(retry.failedAttempts), TimeUnit.MILLISECONDS);
+    }
+
+    private void publish(List<SyncedData<Task>> results) {
+        for (SyncedData<Task> result : results) {
+            resultsRelay.call(result);
+        }
+    }
+
+    private void publishMetrics() {
+        SyncQueueMetrics metrics;
+        synchronized (lock) {
+            metrics = SyncQueueMetrics.from(
+                    pending.size() + waitingForRetry.size(),
+                    batchesInFlight,
+                    flushCount,
+                    failedFlushCount,
+                    lastFlushLatencyMillis,
+                    totalFlushLatencyMillis
+            );
+        }
+        metricsRelay.call(metrics);
+    }
+
+    private static final class PendingSync {
+
+        final SyncedData<Task> syncedTask;
+        final int failedAttempts;
+
+        PendingSync(SyncedData<Task> syncedTask, int failedAttempts) {
+            this.syncedTask = syncedTask;
+            this.failedAttempts = failedAttempts;
+        }
+    }
+
+}
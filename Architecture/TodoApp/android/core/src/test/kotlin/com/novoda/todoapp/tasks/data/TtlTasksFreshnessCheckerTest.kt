@@ -0,0 +1,81 @@
+package com.novoda.todoapp.tasks.data
+
+import com.novoda.data.SyncState
+import com.novoda.data.SyncedData
+import com.novoda.todoapp.task.data.model.Id
+import com.novoda.todoapp.task.data.model.Task
+import com.novoda.todoapp.tasks.data.model.Tasks
+import com.novoda.todoapp.tasks.service.Clock
+import org.junit.Before
+import org.junit.Test
+import org.mockito.Mockito
+import org.mockito.Mockito.`when`
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class TtlTasksFreshnessCheckerTest {
+
+    val SYNC_TIME = 1000L
+
+    var clock = Mockito.mock(Clock::class.java)
+    var checker = TtlTasksFreshnessChecker(clock, 10, 50, TimeUnit.MILLISECONDS)
+
+    @Before
+    fun setUp() {
+        checker = TtlTasksFreshnessChecker(clock, 10, 50, TimeUnit.MILLISECONDS)
+    }
+
+    @Test
+    fun given_TasksSyncedWithinTheTimeToLive_on_Check_it_ShouldBeFresh() {
+        `when`(clock.timeInMillis()).thenReturn(SYNC_TIME + 10)
+
+        assertTrue(checker.isFresh(sampleTasks()))
+        assertFalse(checker.isExpired(sampleTasks()))
+    }
+
+    @Test
+    fun given_TasksSyncedWithinTheStaleWhileRevalidateWindow_on_Check_it_ShouldBeStaleButNotExpired() {
+        `when`(clock.timeInMillis()).thenReturn(SYNC_TIME + 60)
+
+        assertFalse(checker.isFresh(sampleTasks()))
+        assertFalse(checker.isExpired(sampleTasks()))
+    }
+
+    @Test
+    fun given_TasksSyncedBeforeTheStaleWhileRevalidateWindow_on_Check_it_ShouldBeExpired() {
+        `when`(clock.timeInMillis()).thenReturn(SYNC_TIME + 61)
+
+        assertTrue(checker.isExpired(sampleTasks()))
+    }
+
+    @Test
+    fun given_ATaskWithLocalChangesOlderThanTheOthers_on_Check_it_ShouldNotCountIt() {
+        `when`(clock.timeInMillis()).thenReturn(SYNC_TIME + 10)
+        val tasks = sampleTasks().save(SyncedData.from(task("3"), SyncState.SYNC_ERROR, 0))
+
+        assertTrue(checker.isFresh(tasks))
+    }
+
+    @Test
+    fun given_OnlyTasksWithLocalChanges_on_Check_it_ShouldBeStaleButNotExpired() {
+        `when`(clock.timeInMillis()).thenReturn(SYNC_TIME + 1000)
+        val tasks = Tasks.empty()
+                .save(SyncedData.from(task("1"), SyncState.AHEAD, SYNC_TIME))
+                .save(SyncedData.from(task("2"), SyncState.SYNC_ERROR, SYNC_TIME))
+
+        assertFalse(checker.isFresh(tasks))
+        assertFalse(checker.isExpired(tasks))
+    }
+
+    @Test
+    fun given_TasksConfirmedInSyncWithinTheTimeToLive_on_Check_it_ShouldBeFresh() {
+        `when`(clock.timeInMillis()).thenReturn(SYNC_TIME + 1000)
+
+        assertTrue(checker.isFresh(sampleTasks().confirmInSyncTasks(SYNC_TIME + 990)))
+    }
+
+    private fun sampleTasks() = Tasks.asSynced(listOf(task("1"), task("2")), SYNC_TIME)
+
+    private fun task(id: String) = Task.builder().id(Id.from(id)).title("Task " + id).build()
+}
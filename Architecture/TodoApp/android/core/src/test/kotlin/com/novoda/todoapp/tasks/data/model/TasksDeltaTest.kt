@@ -0,0 +1,60 @@
+package com.novoda.todoapp.tasks.data.model
+
+import com.novoda.data.SyncState
+import com.novoda.data.SyncedData
+import com.novoda.todoapp.task.data.model.Id
+import com.novoda.todoapp.task.data.model.Task
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class TasksDeltaTest {
+
+    val TEST_TIME = 123L
+
+    @Test
+    fun given_TheSameTasks_on_Between_it_ShouldBeEmpty() {
+        val tasks = Tasks.asSynced(sampleTasks(100), TEST_TIME)
+
+        assertTrue(TasksDelta.between(tasks, tasks).isEmpty())
+        assertTrue(TasksDelta.between(tasks, Tasks.asSynced(sampleTasks(100), TEST_TIME)).isEmpty())
+    }
+
+    @Test
+    fun given_TasksSavedAndRemoved_on_Between_it_ShouldReturnTheInsertedRemovedAndChangedIds() {
+        val previous = Tasks.asSynced(sampleTasks(100), TEST_TIME)
+        val current = Tasks.from(
+                previous.all().filter { it.data().id() != Id.from("7") }
+        )
+                .save(SyncedData.from(task(100), SyncState.AHEAD, TEST_TIME))
+                .save(SyncedData.from(task(42).complete(), SyncState.AHEAD, TEST_TIME))
+
+        val delta = TasksDelta.between(previous, current)
+
+        assertEquals(setOf(Id.from("100")), delta.inserted())
+        assertEquals(setOf(Id.from("7")), delta.removed())
+        assertEquals(setOf(Id.from("42")), delta.changed())
+    }
+
+    @Test
+    fun given_TheSyncStateOfATaskChanged_on_Between_it_ShouldReturnItAsChanged() {
+        val previous = Tasks.asSynced(sampleTasks(3), TEST_TIME)
+        val current = previous.save(SyncedData.from(task(1), SyncState.SYNC_ERROR, TEST_TIME))
+
+        assertEquals(setOf(Id.from("1")), TasksDelta.between(previous, current).changed())
+    }
+
+    @Test
+    fun given_AnEmptyPreviousTasks_on_Between_it_ShouldReturnEveryTaskAsInserted() {
+        val current = Tasks.asSynced(sampleTasks(3), TEST_TIME)
+
+        val delta = TasksDelta.between(Tasks.empty(), current)
+
+        assertEquals(setOf(Id.from("0"), Id.from("1"), Id.from("2")), delta.inserted())
+        assertTrue(delta.removed().isEmpty())
+    }
+
+    private fun sampleTasks(count: Int) = (0..count - 1).map { task(it) }
+
+    private fun task(index: Int) = Task.builder().id(Id.from(index.toString())).title("Task " + index).build()
+}
@@ -0,0 +1,89 @@
+package com.novoda.todoapp.tasks.data.model
+
+import com.novoda.data.SyncState
+import com.novoda.data.SyncedData
+import com.novoda.todoapp.task.data.model.Id
+import com.novoda.todoapp.task.data.model.Task
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertSame
+
+class TasksTest {
+
+    val TEST_TIME = 123L
+
+    @Test
+    fun given_SomeTasksAreCompleted_on_OnlyActives_it_ShouldReturnTheActiveTasks() {
+        val tasks = Tasks.asSynced(listOf(activeTask(), completedTask()), TEST_TIME)
+
+        assertEquals(Tasks.asSynced(listOf(activeTask()), TEST_TIME), tasks.onlyActives())
+        assertEquals(Tasks.asSynced(listOf(completedTask()), TEST_TIME), tasks.onlyCompleted())
+    }
+
+    @Test
+    fun given_AnActiveTask_on_SaveItCompleted_it_ShouldMoveItToTheCompletedTasks() {
+        val tasks = Tasks.asSynced(listOf(activeTask(), completedTask()), TEST_TIME)
+
+        val saved = tasks.save(SyncedData.from(activeTask().complete(), SyncState.AHEAD, TEST_TIME))
+
+        assertEquals(0, saved.activeCount())
+        assertEquals(2, saved.completedCount())
+        assertEquals(saved, saved.onlyCompleted())
+    }
+
+    @Test
+    fun given_ACompletedTask_on_SaveItActive_it_ShouldMoveItToTheActiveTasks() {
+        val tasks = Tasks.asSynced(listOf(activeTask(), completedTask()), TEST_TIME)
+
+        val saved = tasks.save(SyncedData.from(completedTask().activate(), SyncState.IN_SYNC, TEST_TIME))
+
+        assertEquals(2, saved.activeCount())
+        assertEquals(0, saved.completedCount())
+        assertEquals(Tasks.asSynced(listOf(activeTask(), completedTask().activate()), TEST_TIME), saved.onlyActives())
+    }
+
+    @Test
+    fun given_SomeTasks_on_All_it_ShouldReturnTheSameListEveryTime() {
+        val tasks = Tasks.asSynced(listOf(activeTask(), completedTask()), TEST_TIME)
+
+        assertSame(tasks.all(), tasks.all())
+    }
+
+    @Test
+    fun given_TaskChanges_on_Merge_it_ShouldApplyTheUpsertsAndTombstonesAsInSync() {
+        val tasks = Tasks.asSynced(listOf(activeTask(), completedTask()), TEST_TIME)
+        val newTask = Task.builder().id(Id.from("7")).title("New").build()
+
+        val merged = tasks.merge(TaskChanges.from(listOf(activeTask().complete(), newTask), listOf(completedTask().id()), "2"), 456)
+
+        assertEquals(Tasks.asSynced(listOf(activeTask().complete()), 456).save(SyncedData.from(newTask, SyncState.IN_SYNC, 456)), merged)
+        assertEquals(1, merged.completedCount())
+    }
+
+    @Test
+    fun given_ATaskWithLocalChanges_on_Merge_it_ShouldKeepTheLocalChanges() {
+        val aheadTask = SyncedData.from(activeTask().complete(), SyncState.AHEAD, TEST_TIME)
+        val tasks = Tasks.asSynced(listOf(completedTask()), TEST_TIME).save(aheadTask)
+
+        val merged = tasks.merge(TaskChanges.from(listOf(activeTask()), listOf(completedTask().id()), "2"), 456)
+        val replaced = tasks.merge(TaskChanges.replacingAll(emptyList(), "3"), 456)
+
+        assertEquals(Tasks.empty().save(aheadTask), merged)
+        assertEquals(Tasks.empty().save(aheadTask), replaced)
+    }
+
+    @Test
+    fun given_NoTaskChanges_on_Merge_it_ShouldOnlyConfirmTheTasksInSync() {
+        val tasks = Tasks.asSynced(listOf(activeTask(), completedTask()), TEST_TIME)
+
+        val merged = tasks.merge(TaskChanges.none("2"), 456)
+
+        assertEquals(456, merged.inSyncConfirmedAt())
+        assertEquals(tasks.all(), merged.all())
+        assertEquals(Tasks.NEVER_CONFIRMED, tasks.inSyncConfirmedAt())
+    }
+
+    private fun activeTask() = Task.builder().id(Id.from("24")).title("Bar").build()
+
+    private fun completedTask() = Task.builder().id(Id.from("42")).title("Foo").isCompleted(true).build()
+}
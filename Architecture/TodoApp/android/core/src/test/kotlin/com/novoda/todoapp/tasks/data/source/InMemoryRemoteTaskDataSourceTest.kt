@@ -0,0 +1,57 @@
+package com.novoda.todoapp.tasks.data.source
+
+import com.google.common.base.Optional
+import com.novoda.todoapp.task.data.model.Id
+import com.novoda.todoapp.task.data.model.Task
+import com.novoda.todoapp.tasks.data.model.TaskChanges
+import org.junit.Test
+import kotlin.test.assertEquals
+
+class InMemoryRemoteTaskDataSourceTest {
+
+    val dataSource = InMemoryRemoteTaskDataSource.newEmptyInstance()
+
+    @Test
+    fun given_TasksChangedSinceTheCursor_on_GetChangesSince_it_ShouldReturnOnlyThoseChanges() {
+        dataSource.saveTasks(sampleTasks()).subscribe()
+        val cursor = dataSource.getTasksIfChanged(Optional.absent()).toBlocking().single().version()
+        val newTask = Task.builder().id(Id.from("7")).title("New").build()
+        dataSource.saveTask(sampleTasks()[0].complete()).subscribe()
+        dataSource.saveTask(newTask).subscribe()
+        dataSource.deleteTask(sampleTasks()[1].id()).subscribe()
+
+        val changes = dataSource.getChangesSince(cursor).toBlocking().single()
+
+        assertEquals(setOf(sampleTasks()[0].complete(), newTask), changes.upserts().toSet())
+        assertEquals(setOf(sampleTasks()[1].id()), changes.tombstones())
+        assertEquals(TaskChanges.none(changes.cursor()), dataSource.getChangesSince(changes.cursor()).toBlocking().single())
+    }
+
+    @Test
+    fun given_ACompletedTaskIsCleared_on_GetChangesSince_it_ShouldReturnItsTombstone() {
+        dataSource.saveTasks(listOf(sampleTasks()[0].complete(), sampleTasks()[1])).subscribe()
+        val cursor = dataSource.getTasksIfChanged(Optional.absent()).toBlocking().single().version()
+
+        dataSource.clearCompletedTasks().subscribe()
+
+        assertEquals(
+                TaskChanges.from(emptyList(), listOf(sampleTasks()[0].id()), cursor.toInt().inc().toString()),
+                dataSource.getChangesSince(cursor).toBlocking().single()
+        )
+    }
+
+    @Test
+    fun given_AnUnknownCursor_on_GetChangesSince_it_ShouldReplaceAllTasks() {
+        dataSource.saveTasks(sampleTasks()).subscribe()
+
+        val changes = dataSource.getChangesSince("unknown").toBlocking().single()
+
+        assertEquals(true, changes.replacesAll())
+        assertEquals(sampleTasks().toSet(), changes.upserts().toSet())
+    }
+
+    private fun sampleTasks() = listOf(
+            Task.builder().id(Id.from("42")).title("Foo").build(),
+            Task.builder().id(Id.from("24")).title("Bar").build()
+    )
+}
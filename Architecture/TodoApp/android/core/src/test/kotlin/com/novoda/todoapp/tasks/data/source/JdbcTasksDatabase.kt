@@ -0,0 +1,102 @@
+package com.novoda.todoapp.tasks.data.source
+
+import com.novoda.data.SyncedData
+import com.novoda.todoapp.task.data.model.Task
+import com.novoda.todoapp.tasks.data.model.Tasks
+import java.sql.Connection
+import java.sql.DriverManager
+import java.sql.PreparedStatement
+import java.util.*
+
+/**
+ * Runs the statements of [TasksTable] through the JVM SQLite driver, the way the app does on the device.
+ */
+class JdbcTasksDatabase(val connection: Connection = DriverManager.getConnection("jdbc:sqlite::memory:")) : TasksDatabase {
+
+    var writeCount = 0
+    var failingWrites = 0
+    var beforeWrite: () -> Unit = {}
+
+    init {
+        execute(TasksTable.CREATE)
+        execute(TasksTable.CREATE_SYNC)
+    }
+
+    override fun loadTasks(): List<SyncedData<Task>> {
+        val statement = connection.createStatement()
+        try {
+            val resultSet = statement.executeQuery(TasksTable.SELECT_ALL)
+            val tasks = ArrayList<SyncedData<Task>>()
+            while (resultSet.next()) {
+                tasks.add(TasksTable.fromRow(
+                        resultSet.getString(1),
+                        resultSet.getString(2),
+                        resultSet.getString(3),
+                        resultSet.getLong(4),
+                        resultSet.getString(5),
+                        resultSet.getLong(6)
+                ))
+            }
+            return tasks
+        } finally {
+            statement.close()
+        }
+    }
+
+    override fun loadInSyncConfirmedAt(): Long {
+        val statement = connection.createStatement()
+        try {
+            val resultSet = statement.executeQuery(TasksTable.SELECT_IN_SYNC_CONFIRMED_AT)
+            return if (resultSet.next()) resultSet.getLong(1) else Tasks.NEVER_CONFIRMED
+        } finally {
+            statement.close()
+        }
+    }
+
+    override fun write(batch: TasksWriteBatch) {
+        writeCount++
+        beforeWrite()
+        if (failingWrites > 0) {
+            failingWrites--
+            throw IllegalStateException("Disk I/O error")
+        }
+        connection.autoCommit = false
+        val upsert = connection.prepareStatement(TasksTable.UPSERT)
+        val delete = connection.prepareStatement(TasksTable.DELETE)
+        val confirm = connection.prepareStatement(TasksTable.UPSERT_IN_SYNC_CONFIRMED_AT)
+        try {
+            if (batch.replacement().isPresent) {
+                execute(TasksTable.DELETE_ALL)
+                batch.replacement().get().all().forEach { execute(upsert, TasksTable.toRow(it)) }
+            }
+            batch.upserts().forEach { execute(upsert, TasksTable.toRow(it)) }
+            batch.deletions().forEach { execute(delete, arrayOf(it.value())) }
+            if (batch.inSyncConfirmedAt().isPresent) {
+                execute(confirm, arrayOf(batch.inSyncConfirmedAt().get()))
+            }
+            connection.commit()
+        } catch (e: Exception) {
+            connection.rollback()
+            throw e
+        } finally {
+            upsert.close()
+            delete.close()
+            confirm.close()
+            connection.autoCommit = true
+        }
+    }
+
+    fun execute(sql: String) {
+        val statement = connection.createStatement()
+        try {
+            statement.execute(sql)
+        } finally {
+            statement.close()
+        }
+    }
+
+    private fun execute(statement: PreparedStatement, row: Array<Any?>) {
+        row.forEachIndexed { i, value -> statement.setObject(i + 1, value) }
+        statement.executeUpdate()
+    }
+}
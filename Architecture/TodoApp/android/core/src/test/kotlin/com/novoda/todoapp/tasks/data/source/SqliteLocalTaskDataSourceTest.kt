@@ -0,0 +1,207 @@
+package com.novoda.todoapp.tasks.data.source
+
+import com.novoda.data.SyncState
+import com.novoda.data.SyncedData
+import com.novoda.todoapp.task.data.model.Id
+import com.novoda.todoapp.task.data.model.Task
+import com.novoda.todoapp.tasks.data.model.Tasks
+import com.novoda.todoapp.tasks.data.model.TaskChanges
+import org.junit.Test
+import rx.observers.TestObserver
+import rx.schedulers.TestScheduler
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+
+class SqliteLocalTaskDataSourceTest {
+
+    val TEST_TIME = 123L
+    val BATCH_WINDOW = 200L
+
+    val database = JdbcTasksDatabase()
+    val scheduler = TestScheduler()
+    val dataSource = SqliteLocalTaskDataSource(database, scheduler, BATCH_WINDOW, TimeUnit.MILLISECONDS)
+
+    @Test
+    fun given_TheDatabaseIsEmpty_on_GetTasks_it_ShouldReturnNothing() {
+        val testObserver = TestObserver<Tasks>()
+
+        dataSource.tasks.subscribe(testObserver)
+
+        testObserver.assertReceivedOnNext(emptyList())
+        assertEquals(1, testObserver.onCompletedEvents.size)
+    }
+
+    @Test
+    fun given_TasksWereSaved_on_GetTasksFromANewDataSource_it_ShouldLoadThemFromTheDatabase() {
+        val tasks = Tasks.asSynced(sampleTasks(), TEST_TIME)
+        val testObserver = TestObserver<Tasks>()
+        dataSource.saveTasks(tasks).subscribe()
+        dataSource.saveTask(SyncedData.from(sampleTasks()[0].complete(), SyncState.AHEAD, TEST_TIME)).subscribe()
+        scheduler.advanceTimeBy(BATCH_WINDOW, TimeUnit.MILLISECONDS)
+
+        SqliteLocalTaskDataSource(database, scheduler, BATCH_WINDOW, TimeUnit.MILLISECONDS).tasks.subscribe(testObserver)
+
+        testObserver.assertReceivedOnNext(listOf(
+                tasks.save(SyncedData.from(sampleTasks()[0].complete(), SyncState.AHEAD, TEST_TIME))
+        ))
+    }
+
+    @Test
+    fun given_SavesWithinTheBatchWindow_on_BatchWindowElapsed_it_ShouldWriteThemInOneBatch() {
+        dataSource.saveTask(SyncedData.from(sampleTasks()[0], SyncState.AHEAD, TEST_TIME)).subscribe()
+        dataSource.saveTask(SyncedData.from(sampleTasks()[0].complete(), SyncState.AHEAD, TEST_TIME)).subscribe()
+        dataSource.saveTask(SyncedData.from(sampleTasks()[1], SyncState.AHEAD, TEST_TIME)).subscribe()
+
+        scheduler.advanceTimeBy(BATCH_WINDOW, TimeUnit.MILLISECONDS)
+
+        assertEquals(1, database.writeCount)
+        assertEquals(setOf(
+                SyncedData.from(sampleTasks()[0].complete(), SyncState.AHEAD, TEST_TIME),
+                SyncedData.from(sampleTasks()[1], SyncState.AHEAD, TEST_TIME)
+        ), database.loadTasks().toSet())
+    }
+
+    @Test
+    fun given_ASaveWaitingForTheBatchWindow_on_GetTasks_it_ShouldReturnTheSavedTask() {
+        val syncedTask = SyncedData.from(sampleTasks()[0], SyncState.AHEAD, TEST_TIME)
+        val testObserver = TestObserver<Tasks>()
+        dataSource.saveTask(syncedTask).subscribe()
+
+        dataSource.tasks.subscribe(testObserver)
+
+        testObserver.assertReceivedOnNext(listOf(Tasks.empty().save(syncedTask)))
+        assertEquals(0, database.writeCount)
+    }
+
+    @Test
+    fun given_TasksWereSaved_on_DeleteAllTasks_it_ShouldEmptyTheDatabase() {
+        dataSource.saveTasks(Tasks.asSynced(sampleTasks(), TEST_TIME)).subscribe()
+        scheduler.advanceTimeBy(BATCH_WINDOW, TimeUnit.MILLISECONDS)
+
+        dataSource.deleteAllTasks().subscribe()
+        scheduler.advanceTimeBy(BATCH_WINDOW, TimeUnit.MILLISECONDS)
+
+        assertEquals(emptyList(), database.loadTasks())
+    }
+
+    @Test
+    fun given_ASaveWaitingForTheBatchWindow_on_Flush_it_ShouldWriteItRightAway() {
+        dataSource.saveTask(SyncedData.from(sampleTasks()[0], SyncState.AHEAD, TEST_TIME)).subscribe()
+
+        dataSource.flush()
+        scheduler.triggerActions()
+
+        assertEquals(listOf(SyncedData.from(sampleTasks()[0], SyncState.AHEAD, TEST_TIME)), database.loadTasks())
+    }
+
+    @Test
+    fun given_AWriteFails_on_RetryDelayElapsed_it_ShouldWriteTheBatchAfterADoublingDelay() {
+        database.failingWrites = 2
+        dataSource.saveTask(SyncedData.from(sampleTasks()[0], SyncState.AHEAD, TEST_TIME)).subscribe()
+
+        scheduler.advanceTimeBy(BATCH_WINDOW, TimeUnit.MILLISECONDS)
+        scheduler.advanceTimeBy(BATCH_WINDOW * 2 - 1, TimeUnit.MILLISECONDS)
+        assertEquals(1, database.writeCount)
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS)
+        assertEquals(2, database.writeCount)
+        scheduler.advanceTimeBy(BATCH_WINDOW * 4, TimeUnit.MILLISECONDS)
+
+        assertEquals(3, database.writeCount)
+        assertEquals(listOf(SyncedData.from(sampleTasks()[0], SyncState.AHEAD, TEST_TIME)), database.loadTasks())
+    }
+
+    @Test
+    fun given_ASaveWhileAWriteFails_on_BatchWindowElapsed_it_ShouldStillWaitForTheRetryDelay() {
+        database.failingWrites = 1
+        database.beforeWrite = {
+            database.beforeWrite = {}
+            dataSource.saveTask(SyncedData.from(sampleTasks()[1], SyncState.AHEAD, TEST_TIME)).subscribe()
+        }
+        dataSource.saveTask(SyncedData.from(sampleTasks()[0], SyncState.AHEAD, TEST_TIME)).subscribe()
+
+        scheduler.advanceTimeBy(BATCH_WINDOW, TimeUnit.MILLISECONDS)
+        scheduler.advanceTimeBy(BATCH_WINDOW * 2 - 1, TimeUnit.MILLISECONDS)
+        assertEquals(1, database.writeCount)
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS)
+
+        assertEquals(2, database.writeCount)
+        assertEquals(setOf(
+                SyncedData.from(sampleTasks()[0], SyncState.AHEAD, TEST_TIME),
+                SyncedData.from(sampleTasks()[1], SyncState.AHEAD, TEST_TIME)
+        ), database.loadTasks().toSet())
+    }
+
+    @Test
+    fun given_WritesKeepFailing_on_MaxAttemptsReached_it_ShouldWaitForTheNextWrite() {
+        database.failingWrites = Int.MAX_VALUE
+        dataSource.saveTask(SyncedData.from(sampleTasks()[0], SyncState.AHEAD, TEST_TIME)).subscribe()
+
+        scheduler.advanceTimeBy(1, TimeUnit.HOURS)
+        assertEquals(SqliteLocalTaskDataSource.MAX_WRITE_ATTEMPTS, database.writeCount)
+
+        database.failingWrites = 0
+        dataSource.saveTask(SyncedData.from(sampleTasks()[1], SyncState.AHEAD, TEST_TIME)).subscribe()
+        scheduler.advanceTimeBy(BATCH_WINDOW, TimeUnit.MILLISECONDS)
+
+        assertEquals(setOf(
+                SyncedData.from(sampleTasks()[0], SyncState.AHEAD, TEST_TIME),
+                SyncedData.from(sampleTasks()[1], SyncState.AHEAD, TEST_TIME)
+        ), database.loadTasks().toSet())
+    }
+
+    @Test
+    fun given_TasksWereSaved_on_MergeChanges_it_ShouldOnlyWriteTheChangedTasks() {
+        dataSource.saveTasks(Tasks.asSynced(sampleTasks(), TEST_TIME)).subscribe()
+        scheduler.advanceTimeBy(BATCH_WINDOW, TimeUnit.MILLISECONDS)
+        val newTask = Task.builder().id(Id.from("7")).title("New").build()
+        database.execute("UPDATE " + TasksTable.NAME + " SET " + TasksTable.COLUMN_TITLE + " = 'Untouched'")
+
+        dataSource.mergeChanges(TaskChanges.from(listOf(newTask), listOf(sampleTasks()[1].id()), "1"), TEST_TIME).subscribe()
+        scheduler.advanceTimeBy(BATCH_WINDOW, TimeUnit.MILLISECONDS)
+
+        assertEquals(setOf(
+                SyncedData.from(sampleTasks()[0].toBuilder().title("Untouched").build(), SyncState.IN_SYNC, TEST_TIME),
+                SyncedData.from(newTask, SyncState.IN_SYNC, TEST_TIME)
+        ), database.loadTasks().toSet())
+    }
+
+    @Test
+    fun given_NoChanges_on_MergeChanges_it_ShouldOnlyWriteTheConfirmation() {
+        val tasks = Tasks.asSynced(sampleTasks(), TEST_TIME)
+        val testObserver = TestObserver<Tasks>()
+        dataSource.saveTasks(tasks).subscribe()
+        scheduler.advanceTimeBy(BATCH_WINDOW, TimeUnit.MILLISECONDS)
+        database.execute("UPDATE " + TasksTable.NAME + " SET " + TasksTable.COLUMN_TITLE + " = 'Untouched'")
+
+        dataSource.mergeChanges(TaskChanges.none("1"), 456).subscribe()
+        scheduler.advanceTimeBy(BATCH_WINDOW, TimeUnit.MILLISECONDS)
+
+        assertEquals(456, database.loadInSyncConfirmedAt())
+        SqliteLocalTaskDataSource(database, scheduler, BATCH_WINDOW, TimeUnit.MILLISECONDS).tasks.subscribe(testObserver)
+        testObserver.assertReceivedOnNext(listOf(
+                Tasks.asSynced(sampleTasks().map { it.toBuilder().title("Untouched").build() }, TEST_TIME).confirmInSyncTasks(456)
+        ))
+    }
+
+    @Test
+    fun given_ATaskSavedWhileTheRemoteAnswers_on_MergeChanges_it_ShouldKeepIt() {
+        val testObserver = TestObserver<Tasks>()
+        dataSource.saveTasks(Tasks.asSynced(sampleTasks(), TEST_TIME)).subscribe()
+        val newTask = Task.builder().id(Id.from("7")).title("New").build()
+        dataSource.saveTask(SyncedData.from(newTask, SyncState.AHEAD, 456)).subscribe()
+
+        dataSource.mergeChanges(TaskChanges.from(listOf(sampleTasks()[0].complete()), emptyList(), "1"), 456).subscribe(testObserver)
+        scheduler.advanceTimeBy(BATCH_WINDOW, TimeUnit.MILLISECONDS)
+
+        val expected = Tasks.asSynced(listOf(sampleTasks()[0].complete(), sampleTasks()[1]), TEST_TIME)
+                .save(SyncedData.from(sampleTasks()[0].complete(), SyncState.IN_SYNC, 456))
+                .save(SyncedData.from(newTask, SyncState.AHEAD, 456))
+        testObserver.assertReceivedOnNext(listOf(expected))
+        assertEquals(expected.all().toSet(), database.loadTasks().toSet())
+    }
+
+    private fun sampleTasks() = listOf(
+            Task.builder().id(Id.from("42")).title("Foo").build(),
+            Task.builder().id(Id.from("24")).title("Bar").description("Baz").build()
+    )
+}
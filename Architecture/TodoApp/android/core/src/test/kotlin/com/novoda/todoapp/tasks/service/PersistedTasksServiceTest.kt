@@ -1,12 +1,15 @@
 package com.novoda.todoapp.tasks.service
 
+import com.google.common.base.Optional
 import com.novoda.data.SyncState
 import com.novoda.data.SyncedData
 import com.novoda.event.Event
 import com.novoda.todoapp.task.data.model.Id
 import com.novoda.todoapp.task.data.model.Task
 import com.novoda.todoapp.tasks.data.TasksDataFreshnessChecker
+import com.novoda.todoapp.tasks.data.model.TaskChanges
 import com.novoda.todoapp.tasks.data.model.Tasks
+import com.novoda.todoapp.tasks.data.model.VersionedTasks
 import com.novoda.todoapp.tasks.data.source.LocalTasksDataSource
 import com.novoda.todoapp.tasks.data.source.RemoteTasksDataSource
 import org.junit.Before
@@ -15,36 +18,51 @@ import org.mockito.Mockito
 import org.mockito.Mockito.*
 import rx.Observable
 import rx.observers.TestObserver
+import rx.schedulers.TestScheduler
 import rx.subjects.BehaviorSubject
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
 import kotlin.test.assertTrue
 
 class PersistedTasksServiceTest {
 
     val TEST_TIME = 123L
+    val REMOTE_VERSION = "1"
 
     var taskRemoteDataSubject: BehaviorSubject<List<Task>> = BehaviorSubject.create()
     var taskLocalDataSubject: BehaviorSubject<Tasks> = BehaviorSubject.create()
+    var storedTasks = Tasks.empty()
 
     var remoteDataSource = Mockito.mock(RemoteTasksDataSource::class.java)
     var localDataSource = Mockito.mock(LocalTasksDataSource::class.java)
     var freshnessChecker = Mockito.mock(TasksDataFreshnessChecker::class.java)
     var clock = Mockito.mock(Clock::class.java)
+    var retryScheduler = TestScheduler()
+    var syncQueue = TasksSyncQueue(remoteDataSource, clock, retryScheduler, SyncPolicy.builder().build())
 
-    var service: TasksService = PersistedTasksService(localDataSource, remoteDataSource, freshnessChecker, clock)
+    var service: TasksService = PersistedTasksService(localDataSource, remoteDataSource, freshnessChecker, clock, syncQueue)
 
     @Before
     fun setUp() {
         setUpService()
-        service = PersistedTasksService(localDataSource, remoteDataSource, freshnessChecker, clock)
+        syncQueue = TasksSyncQueue(remoteDataSource, clock, retryScheduler, SyncPolicy.builder().build())
+        service = PersistedTasksService(localDataSource, remoteDataSource, freshnessChecker, clock, syncQueue)
         Mockito.doAnswer {
-            Observable.just(it.arguments[0])
+            storedTasks = it.arguments[0] as Tasks
+            Observable.just(storedTasks)
         }.`when`(localDataSource).saveTasks(any())
         Mockito.doAnswer {
+            @Suppress("UNCHECKED_CAST")
+            storedTasks = storedTasks.save(it.arguments[0] as SyncedData<Task>)
             Observable.just(it.arguments[0])
         }.`when`(localDataSource).saveTask(any())
+        Mockito.doAnswer {
+            storedTasks = storedTasks.merge(it.arguments[0] as TaskChanges, it.arguments[1] as Long)
+            Observable.just(storedTasks)
+        }.`when`(localDataSource).mergeChanges(any(), anyLong())
         Mockito.doAnswer {
             Observable.just(it.arguments[0])
-        }.`when`(remoteDataSource).saveTask(any())
+        }.`when`(remoteDataSource).saveTasks(any())
         `when`(clock.timeInMillis()).thenReturn(TEST_TIME)
     }
 
@@ -72,7 +90,7 @@ class PersistedTasksServiceTest {
 
         service.getTasks().subscribe(testObserver)
 
-        verify(localDataSource).saveTasks(Tasks.asSynced(tasks, TEST_TIME))
+        verify(localDataSource).mergeChanges(TaskChanges.replacingAll(tasks, REMOTE_VERSION), TEST_TIME)
     }
 
     @Test
@@ -120,7 +138,61 @@ class PersistedTasksServiceTest {
 
         service.getTasks().subscribe(testObserver)
 
-        verify(localDataSource).saveTasks(Tasks.asSynced(remoteTasks, TEST_TIME))
+        verify(localDataSource).mergeChanges(TaskChanges.replacingAll(remoteTasks, REMOTE_VERSION), TEST_TIME)
+    }
+
+    @Test
+    fun given_TheLocalDataHasTasksNotInSync_on_GetTasks_it_ShouldKeepThemWhenTheRemoteTasksArrive() {
+        val remoteTasks = sampleRemoteTasks()
+        val aheadTask = SyncedData.from(Task.builder().id(Id.from("7")).title("Local").build(), SyncState.AHEAD, TEST_TIME)
+        val localTasks = Tasks.from(listOf(aheadTask))
+        val testObserver = TestObserver<Tasks>()
+        taskRemoteDataSubject.onNext(remoteTasks)
+        taskRemoteDataSubject.onCompleted()
+        taskLocalDataSubject.onNext(localTasks)
+        taskLocalDataSubject.onCompleted()
+        `when`(freshnessChecker.isFresh(localTasks)).thenReturn(false)
+        `when`(remoteDataSource.saveTasks(any())).thenReturn(Observable.never())
+
+        service.getTasks().subscribe(testObserver)
+
+        testObserver.assertReceivedOnNext(listOf(localTasks, Tasks.asSynced(remoteTasks, TEST_TIME).save(aheadTask)))
+        assertEquals(Tasks.asSynced(remoteTasks, TEST_TIME).save(aheadTask), storedTasks)
+    }
+
+    @Test
+    fun given_TheLocalDataHasTasksAndTasksAreTooOldToShow_on_GetTasks_it_ShouldOnlyReturnTasksFromTheRemote() {
+        val remoteTasks = sampleRemoteTasks()
+        val localTasks = sampleLocalTasks()
+        val testObserver = TestObserver<Tasks>()
+        taskRemoteDataSubject.onNext(remoteTasks)
+        taskRemoteDataSubject.onCompleted()
+        taskLocalDataSubject.onNext(localTasks)
+        taskLocalDataSubject.onCompleted()
+        `when`(freshnessChecker.isExpired(localTasks)).thenReturn(true)
+
+        service.getTasks().subscribe(testObserver)
+
+        testObserver.assertReceivedOnNext(listOf(Tasks.asSynced(remoteTasks, TEST_TIME)))
+    }
+
+    @Test
+    fun given_TheLocalDataHasTasksTooOldToShowAndRemoteFails_on_GetTasksEvents_it_ShouldReturnErrorWithTheLocalData() {
+        val localTasks = sampleLocalTasks()
+        val testObserver = TestObserver<Event<Tasks>>()
+        val throwable = Throwable()
+        taskRemoteDataSubject.onError(throwable)
+        taskLocalDataSubject.onNext(localTasks)
+        taskLocalDataSubject.onCompleted()
+        `when`(freshnessChecker.isExpired(localTasks)).thenReturn(true)
+
+        service.getTasksEvents().subscribe(testObserver)
+
+        testObserver.assertReceivedOnNext(listOf(
+                Event.loading<Tasks>(noEmptyTasks()),
+                Event.loading<Tasks>(noEmptyTasks()).updateData(localTasks),
+                Event.error<Tasks>(throwable).updateData(localTasks).toBuilder().dataValidator(noEmptyTasks()).build()
+        ))
     }
 
     @Test
@@ -355,6 +427,70 @@ class PersistedTasksServiceTest {
         testObserver.assertReceivedOnNext(listOf(Tasks.asSynced(tasks, TEST_TIME)))
     }
 
+    @Test
+    fun given_TheRemoteAnswersNotModified_on_RefreshTasks_it_ShouldConfirmTheTasksAsInSyncNow() {
+        val tasks = sampleRemoteTasks()
+        val testObserver = TestObserver<Tasks>()
+        taskRemoteDataSubject.onNext(tasks)
+        taskRemoteDataSubject.onCompleted()
+        taskLocalDataSubject.onCompleted()
+        service.getTasks().subscribe(testObserver)
+        `when`(remoteDataSource.getChangesSince(REMOTE_VERSION)).thenReturn(Observable.just(TaskChanges.none(REMOTE_VERSION)))
+        `when`(clock.timeInMillis()).thenReturn(456)
+
+        service.refreshTasks().call()
+
+        testObserver.assertReceivedOnNext(listOf(Tasks.asSynced(tasks, TEST_TIME), Tasks.asSynced(tasks, TEST_TIME).confirmInSyncTasks(456)))
+        verify(localDataSource).mergeChanges(TaskChanges.none(REMOTE_VERSION), 456)
+        verify(localDataSource, never()).saveTasks(Tasks.asSynced(tasks, TEST_TIME).confirmInSyncTasks(456))
+    }
+
+    @Test
+    fun given_TheRemoteHasChangesSinceTheVersionFetched_on_RefreshTasks_it_ShouldOnlyMergeAndPersistThoseChanges() {
+        val tasks = sampleRemoteTasks()
+        val newTask = Task.builder().id(Id.from("424")).title("New").build()
+        val testObserver = TestObserver<Tasks>()
+        taskRemoteDataSubject.onNext(tasks)
+        taskRemoteDataSubject.onCompleted()
+        taskLocalDataSubject.onCompleted()
+        service.getTasks().subscribe(testObserver)
+        `when`(remoteDataSource.getChangesSince(REMOTE_VERSION)).thenReturn(Observable.just(
+                TaskChanges.from(listOf(newTask), listOf(tasks[1].id()), "2")
+        ))
+        `when`(clock.timeInMillis()).thenReturn(456)
+
+        service.refreshTasks().call()
+
+        val mergedTasks = Tasks.asSynced(listOf(tasks[0]), TEST_TIME).save(SyncedData.from(newTask, SyncState.IN_SYNC, 456))
+        testObserver.assertReceivedOnNext(listOf(Tasks.asSynced(tasks, TEST_TIME), mergedTasks))
+        verify(localDataSource).mergeChanges(TaskChanges.from(listOf(newTask), listOf(tasks[1].id()), "2"), 456)
+        verify(localDataSource, never()).saveTasks(mergedTasks)
+    }
+
+    @Test
+    fun given_ATaskIsSavedWhileTheRemoteAnswers_on_RefreshTasks_it_ShouldKeepItInTheMergedTasks() {
+        val tasks = sampleRemoteTasks()
+        val savedTask = SyncedData.from(tasks[0].complete(), SyncState.AHEAD, 456)
+        val remoteChanges = BehaviorSubject.create<TaskChanges>()
+        val testObserver = TestObserver<Tasks>()
+        taskRemoteDataSubject.onNext(tasks)
+        taskRemoteDataSubject.onCompleted()
+        taskLocalDataSubject.onCompleted()
+        service.getTasks().subscribe(testObserver)
+        `when`(remoteDataSource.getChangesSince(REMOTE_VERSION)).thenReturn(remoteChanges)
+        `when`(clock.timeInMillis()).thenReturn(456)
+        service.refreshTasks().call()
+
+        localDataSource.saveTask(savedTask)
+        remoteChanges.onNext(TaskChanges.none(REMOTE_VERSION))
+        remoteChanges.onCompleted()
+
+        assertEquals(
+                Tasks.asSynced(tasks, TEST_TIME).save(savedTask).confirmInSyncTasks(456),
+                testObserver.onNextEvents.last()
+        )
+    }
+
     @Test
     fun given_remoteDataSourceDataHasChanged_on_RefreshTasks_it_ShouldPersistNewDataToLocalDatasitory() {
         val tasks = sampleRemoteTasks()
@@ -370,7 +506,7 @@ class PersistedTasksServiceTest {
 
         service.refreshTasks().call()
 
-        verify(localDataSource).saveTasks(Tasks.asSynced(tasksRefreshed, TEST_TIME))
+        verify(localDataSource).mergeChanges(TaskChanges.replacingAll(tasksRefreshed, REMOTE_VERSION), TEST_TIME)
     }
 
     @Test
@@ -454,8 +590,8 @@ class PersistedTasksServiceTest {
         `when`(freshnessChecker.isFresh(localTasks)).thenReturn(true)
         `when`(clock.timeInMillis()).thenReturn(321);
         Mockito.doAnswer {
-            Observable.error<Task>(Throwable())
-        }.`when`(remoteDataSource).saveTask(any())
+            Observable.error<List<Task>>(Throwable())
+        }.`when`(remoteDataSource).saveTasks(any())
         service.getTasks().subscribe(testObserver)
 
         service.complete(task).call()
@@ -524,8 +660,8 @@ class PersistedTasksServiceTest {
         `when`(freshnessChecker.isFresh(localTasks)).thenReturn(true)
         `when`(clock.timeInMillis()).thenReturn(321);
         Mockito.doAnswer {
-            Observable.error<Task>(Throwable())
-        }.`when`(remoteDataSource).saveTask(any())
+            Observable.error<List<Task>>(Throwable())
+        }.`when`(remoteDataSource).saveTasks(any())
         service.getTasks().subscribe(testObserver)
 
         service.activate(task).call()
@@ -596,8 +732,8 @@ class PersistedTasksServiceTest {
         `when`(freshnessChecker.isFresh(localTasks)).thenReturn(true)
         `when`(clock.timeInMillis()).thenReturn(321);
         Mockito.doAnswer {
-            Observable.error<Task>(Throwable())
-        }.`when`(remoteDataSource).saveTask(any())
+            Observable.error<List<Task>>(Throwable())
+        }.`when`(remoteDataSource).saveTasks(any())
         service.getTasks().subscribe(testObserver)
 
         val newTask = task.toBuilder().description("NewDesc").build()
@@ -635,7 +771,7 @@ class PersistedTasksServiceTest {
 
         service.getActiveTasks().subscribe(testObserver)
 
-        verify(localDataSource).saveTasks(Tasks.asSynced(tasks, TEST_TIME))
+        verify(localDataSource).mergeChanges(TaskChanges.replacingAll(tasks, REMOTE_VERSION), TEST_TIME)
     }
 
     @Test
@@ -683,7 +819,7 @@ class PersistedTasksServiceTest {
 
         service.getActiveTasks().subscribe(testObserver)
 
-        verify(localDataSource).saveTasks(Tasks.asSynced(remoteTasks, TEST_TIME))
+        verify(localDataSource).mergeChanges(TaskChanges.replacingAll(remoteTasks, REMOTE_VERSION), TEST_TIME)
     }
 
     @Test
@@ -917,6 +1053,105 @@ class PersistedTasksServiceTest {
         ))
     }
 
+    @Test
+    fun given_AnActiveTasksSubscriber_on_GetActiveTasksEvents_it_ShouldShareTheStreamAndReplayTheLatestEvent() {
+        val tasks = sampleLocalSomeCompletedTasks()
+        val firstObserver = TestObserver<Event<Tasks>>()
+        val secondObserver = TestObserver<Event<Tasks>>()
+        taskRemoteDataSubject.onCompleted()
+        taskLocalDataSubject.onNext(tasks)
+        taskLocalDataSubject.onCompleted()
+        service.getActiveTasksEvents().subscribe(firstObserver)
+
+        service.getActiveTasksEvents().subscribe(secondObserver)
+
+        verify(localDataSource, times(1)).getTasks()
+        secondObserver.assertReceivedOnNext(listOf(
+                Event.idle<Tasks>(noEmptyTasks()).updateData(sampleLocalActivatedTasks())
+        ))
+    }
+
+    @Test
+    fun given_SubscribersComeAndGo_on_GetSubscriberCounts_it_ShouldReturnTheCurrentCounts() {
+        val persistedService = service as PersistedTasksService
+        val tasksCountObserver = TestObserver<Int>()
+        val activeCountObserver = TestObserver<Int>()
+        taskRemoteDataSubject.onCompleted()
+        taskLocalDataSubject.onCompleted()
+        persistedService.getTasksSubscriberCount().subscribe(tasksCountObserver)
+        persistedService.getActiveTasksSubscriberCount().subscribe(activeCountObserver)
+
+        val first = service.getActiveTasksEvents().subscribe()
+        val second = service.getActiveTasks().subscribe()
+        first.unsubscribe()
+        second.unsubscribe()
+
+        tasksCountObserver.assertReceivedOnNext(listOf(0, 1, 0))
+        activeCountObserver.assertReceivedOnNext(listOf(0, 1, 2, 1, 0))
+    }
+
+    @Test
+    fun given_TheLocalDataHasTasksNotInSync_on_GetTasks_it_ShouldSendThemAgain() {
+        val task = Task.builder().id(Id.from("24")).title("Bar").build()
+        val localTasks = Tasks.from(listOf(SyncedData.from(task, SyncState.AHEAD, TEST_TIME)))
+        val testObserver = TestObserver<Tasks>()
+        taskRemoteDataSubject.onCompleted()
+        taskLocalDataSubject.onNext(localTasks)
+        taskLocalDataSubject.onCompleted()
+        `when`(freshnessChecker.isFresh(localTasks)).thenReturn(true)
+
+        service.getTasks().subscribe(testObserver)
+
+        verify(remoteDataSource).saveTasks(listOf(task))
+        testObserver.assertReceivedOnNext(listOf(
+                localTasks,
+                Tasks.from(listOf(SyncedData.from(task, SyncState.IN_SYNC, TEST_TIME)))
+        ))
+    }
+
+    @Test
+    fun given_ATaskRanOutOfAttempts_on_RefreshTasks_it_ShouldSendItAgain() {
+        val localTasks = sampleLocalCompletedTasks()
+        val task = localTasks.all().get(0).data().toBuilder().description("NewDesc").build()
+        taskRemoteDataSubject.onCompleted()
+        taskLocalDataSubject.onNext(localTasks)
+        taskLocalDataSubject.onCompleted()
+        `when`(freshnessChecker.isFresh(localTasks)).thenReturn(true)
+        syncQueue = TasksSyncQueue(remoteDataSource, clock, retryScheduler, SyncPolicy.builder().maxAttempts(1).build())
+        service = PersistedTasksService(localDataSource, remoteDataSource, freshnessChecker, clock, syncQueue)
+        Mockito.doAnswer {
+            Observable.error<List<Task>>(Throwable())
+        }.`when`(remoteDataSource).saveTasks(any())
+        service.getTasks().subscribe(TestObserver<Tasks>())
+        service.save(task).call()
+        retryScheduler.advanceTimeBy(1, TimeUnit.DAYS)
+
+        service.refreshTasks().call()
+
+        verify(remoteDataSource, times(2)).saveTasks(listOf(task))
+    }
+
+    @Test
+    fun given_RemoteIsFailingUpdates_on_GetSyncQueueMetrics_it_ShouldCountTheFailedFlush() {
+        val localTasks = sampleLocalCompletedTasks()
+        val metricsObserver = TestObserver<SyncQueueMetrics>()
+        taskRemoteDataSubject.onCompleted()
+        taskLocalDataSubject.onNext(localTasks)
+        taskLocalDataSubject.onCompleted()
+        `when`(freshnessChecker.isFresh(localTasks)).thenReturn(true)
+        Mockito.doAnswer {
+            Observable.error<List<Task>>(Throwable())
+        }.`when`(remoteDataSource).saveTasks(any())
+        (service as PersistedTasksService).getSyncQueueMetrics().subscribe(metricsObserver)
+
+        service.save(localTasks.all().get(0).data().toBuilder().description("NewDesc").build()).call()
+
+        val metrics = metricsObserver.onNextEvents.last()
+        assertEquals(1, metrics.flushCount())
+        assertEquals(1, metrics.failedFlushCount())
+        assertEquals(0, metrics.batchesInFlight())
+    }
+
     @Test
     fun given_TheLocalDataIsEmpty_on_GetCompletedTasks_it_ShouldReturnTasksFromTheRemote() {
         val tasks = sampleRemoteCompletedTasks()
@@ -941,7 +1176,7 @@ class PersistedTasksServiceTest {
 
         service.getCompletedTasks().subscribe(testObserver)
 
-        verify(localDataSource).saveTasks(Tasks.asSynced(tasks, TEST_TIME))
+        verify(localDataSource).mergeChanges(TaskChanges.replacingAll(tasks, REMOTE_VERSION), TEST_TIME)
     }
 
     @Test
@@ -989,7 +1224,7 @@ class PersistedTasksServiceTest {
 
         service.getCompletedTasks().subscribe(testObserver)
 
-        verify(localDataSource).saveTasks(Tasks.asSynced(remoteTasks, TEST_TIME))
+        verify(localDataSource).mergeChanges(TaskChanges.replacingAll(remoteTasks, REMOTE_VERSION), TEST_TIME)
     }
 
     @Test
@@ -1266,6 +1501,8 @@ class PersistedTasksServiceTest {
         tasksApiReplay.connect()
         tasksLocalDataReplay.connect()
         `when`(remoteDataSource.getTasks()).thenReturn(tasksApiReplay)
-        `when`(localDataSource.getTasks()).thenReturn(tasksLocalDataReplay)
+        `when`(remoteDataSource.getTasksIfChanged(any())).thenReturn(tasksApiReplay.map { VersionedTasks.from(it, REMOTE_VERSION) })
+        `when`(remoteDataSource.getChangesSince(any())).thenReturn(tasksApiReplay.map { TaskChanges.replacingAll(it, REMOTE_VERSION) })
+        `when`(localDataSource.getTasks()).thenReturn(tasksLocalDataReplay.doOnNext { storedTasks = it })
     }
 }
@@ -0,0 +1,203 @@
+package com.novoda.todoapp.tasks.service
+
+import com.novoda.data.SyncState
+import com.novoda.data.SyncedData
+import com.novoda.todoapp.task.data.model.Id
+import com.novoda.todoapp.task.data.model.Task
+import com.novoda.todoapp.tasks.data.model.Tasks
+import com.novoda.todoapp.tasks.data.source.RemoteTasksDataSource
+import org.junit.Before
+import org.junit.Test
+import org.mockito.Mockito
+import org.mockito.Mockito.*
+import rx.Observable
+import rx.observers.TestObserver
+import rx.schedulers.TestScheduler
+import rx.subjects.PublishSubject
+import java.util.*
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertEquals
+
+class TasksSyncQueueTest {
+
+    val TEST_TIME = 123L
+
+    var remoteDataSource = Mockito.mock(RemoteTasksDataSource::class.java)
+    var clock = Mockito.mock(Clock::class.java)
+    var retryScheduler = TestScheduler()
+    val sentBatches = ArrayList<List<Task>>()
+    val remoteAnswers = LinkedList<PublishSubject<List<Task>>>()
+
+    @Before
+    fun setUp() {
+        Mockito.doAnswer {
+            @Suppress("UNCHECKED_CAST")
+            sentBatches.add(it.arguments[0] as List<Task>)
+            val answer = PublishSubject.create<List<Task>>()
+            remoteAnswers.add(answer)
+            answer
+        }.`when`(remoteDataSource).saveTasks(any())
+        `when`(clock.timeInMillis()).thenReturn(TEST_TIME)
+    }
+
+    @Test
+    fun given_ABatchIsInFlight_on_Enqueue_it_ShouldSendTheLatestEditOfEachTaskInTheNextBatch() {
+        val queue = queueWith(SyncPolicy.builder().maxBatchesInFlight(1).build())
+        queue.enqueue(ahead(task("1", "First")))
+        queue.enqueue(ahead(task("2", "Second")))
+        queue.enqueue(ahead(task("3", "Third")))
+        queue.enqueue(ahead(task("2", "Second edited")))
+
+        answerNextBatch()
+
+        assertEquals(listOf(
+                listOf(task("1", "First")),
+                listOf(task("2", "Second edited"), task("3", "Third"))
+        ), sentBatches)
+    }
+
+    @Test
+    fun given_RemoteAcceptsTheBatch_on_Enqueue_it_ShouldReturnTheTasksInSync() {
+        val queue = queueWith(SyncPolicy.builder().build())
+        val testObserver = TestObserver<SyncedData<Task>>()
+        queue.getResults().subscribe(testObserver)
+        queue.enqueue(ahead(task("1", "First")))
+
+        answerNextBatch()
+
+        testObserver.assertReceivedOnNext(listOf(
+                SyncedData.from(task("1", "First"), SyncState.IN_SYNC, TEST_TIME)
+        ))
+    }
+
+    @Test
+    fun given_TheTaskIsEditedAgainWhileInFlight_on_BatchAnswered_it_ShouldOnlyReturnTheLatestEdit() {
+        val queue = queueWith(SyncPolicy.builder().build())
+        val testObserver = TestObserver<SyncedData<Task>>()
+        queue.getResults().subscribe(testObserver)
+        queue.enqueue(ahead(task("1", "First")))
+        queue.enqueue(ahead(task("1", "First edited")))
+
+        answerNextBatch()
+        answerNextBatch()
+
+        assertEquals(listOf(listOf(task("1", "First")), listOf(task("1", "First edited"))), sentBatches)
+        testObserver.assertReceivedOnNext(listOf(
+                SyncedData.from(task("1", "First edited"), SyncState.IN_SYNC, TEST_TIME)
+        ))
+    }
+
+    @Test
+    fun given_TooManyBatchesInFlight_on_Enqueue_it_ShouldWaitForOneToBeAnswered() {
+        val queue = queueWith(SyncPolicy.builder().maxBatchSize(1).maxBatchesInFlight(2).build())
+        queue.enqueue(ahead(task("1", "First")))
+        queue.enqueue(ahead(task("2", "Second")))
+        queue.enqueue(ahead(task("3", "Third")))
+
+        assertEquals(2, sentBatches.size)
+
+        answerNextBatch()
+
+        assertEquals(listOf(task("3", "Third")), sentBatches[2])
+    }
+
+    @Test
+    fun given_RemoteFailsTheBatch_on_RetryDelayElapsed_it_ShouldSendTheTasksAgain() {
+        val queue = queueWith(SyncPolicy.builder().initialRetryDelayMillis(1000).build())
+        val testObserver = TestObserver<SyncedData<Task>>()
+        queue.getResults().subscribe(testObserver)
+        queue.enqueue(ahead(task("1", "First")))
+        failNextBatch()
+
+        retryScheduler.advanceTimeBy(999, TimeUnit.MILLISECONDS)
+        assertEquals(1, sentBatches.size)
+        retryScheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS)
+        answerNextBatch()
+
+        testObserver.assertReceivedOnNext(listOf(
+                SyncedData.from(task("1", "First"), SyncState.SYNC_ERROR, TEST_TIME),
+                SyncedData.from(task("1", "First"), SyncState.IN_SYNC, TEST_TIME)
+        ))
+    }
+
+    @Test
+    fun given_RemoteKeepsFailing_on_Enqueue_it_ShouldStopAfterTheMaxAttempts() {
+        val queue = queueWith(SyncPolicy.builder().initialRetryDelayMillis(1000).maxAttempts(3).build())
+        queue.enqueue(ahead(task("1", "First")))
+
+        failNextBatch()
+        retryScheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS)
+        failNextBatch()
+        retryScheduler.advanceTimeBy(2000, TimeUnit.MILLISECONDS)
+        failNextBatch()
+        retryScheduler.advanceTimeBy(1, TimeUnit.DAYS)
+
+        assertEquals(3, sentBatches.size)
+    }
+
+    @Test
+    fun given_ATaskRanOutOfAttempts_on_EnqueueUnsynced_it_ShouldSendItAgain() {
+        val queue = queueWith(SyncPolicy.builder().maxAttempts(1).build())
+        queue.enqueue(ahead(task("1", "First")))
+        failNextBatch()
+
+        queue.enqueueUnsynced(Tasks.from(listOf(SyncedData.from(task("1", "First"), SyncState.SYNC_ERROR, TEST_TIME))))
+
+        assertEquals(listOf(listOf(task("1", "First")), listOf(task("1", "First"))), sentBatches)
+    }
+
+    @Test
+    fun given_TasksAlreadyQueuedOrInSync_on_EnqueueUnsynced_it_ShouldOnlySendTheOthers() {
+        val queue = queueWith(SyncPolicy.builder().build())
+        queue.enqueue(ahead(task("1", "First")))
+
+        queue.enqueueUnsynced(Tasks.from(listOf(
+                ahead(task("1", "First")),
+                SyncedData.from(task("2", "Second"), SyncState.IN_SYNC, TEST_TIME),
+                SyncedData.from(task("3", "Third"), SyncState.SYNC_ERROR, TEST_TIME)
+        )))
+
+        assertEquals(listOf(listOf(task("1", "First")), listOf(task("3", "Third"))), sentBatches)
+    }
+
+    @Test
+    fun given_ABatchWasAnswered_on_GetMetrics_it_ShouldReturnTheQueueDepthAndFlushLatency() {
+        val queue = queueWith(SyncPolicy.builder().maxBatchSize(1).maxBatchesInFlight(1).build())
+        val testObserver = TestObserver<SyncQueueMetrics>()
+        queue.enqueue(ahead(task("1", "First")))
+        queue.enqueue(ahead(task("2", "Second")))
+        `when`(clock.timeInMillis()).thenReturn(TEST_TIME + 250)
+
+        answerNextBatch()
+        queue.getMetrics().subscribe(testObserver)
+
+        val metrics = testObserver.onNextEvents.last()
+        assertEquals(0, metrics.queueDepth())
+        assertEquals(1, metrics.batchesInFlight())
+        assertEquals(1, metrics.flushCount())
+        assertEquals(250, metrics.lastFlushLatencyMillis())
+    }
+
+    @Test
+    fun given_TheDefaultPolicy_on_RetryDelayMillis_it_ShouldDoubleUpToTheMaxDelay() {
+        val policy = SyncPolicy.builder().initialRetryDelayMillis(1000).maxRetryDelayMillis(5000).build()
+
+        assertEquals(listOf(1000L, 2000L, 4000L, 5000L, 5000L), (1..5).map { policy.retryDelayMillis(it) })
+    }
+
+    private fun queueWith(policy: SyncPolicy) = TasksSyncQueue(remoteDataSource, clock, retryScheduler, policy)
+
+    private fun answerNextBatch() {
+        val answer = remoteAnswers.removeFirst()
+        answer.onNext(sentBatches[sentBatches.size - remoteAnswers.size - 1])
+        answer.onCompleted()
+    }
+
+    private fun failNextBatch() {
+        remoteAnswers.removeFirst().onError(Throwable())
+    }
+
+    private fun ahead(task: Task) = SyncedData.from(task, SyncState.AHEAD, TEST_TIME)
+
+    private fun task(id: String, title: String) = Task.builder().id(Id.from(id)).title(title).build()
+}
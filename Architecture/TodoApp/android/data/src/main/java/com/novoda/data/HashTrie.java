@@ -0,0 +1,573 @@
+package com.novoda.data;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Hash array mapped trie backing {@link ImmutableMapWithCopy}, updates sharing all but the changed path.
+ */
+final class HashTrie {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    static final HashTrie EMPTY = new HashTrie(null, 0);
+
+    final Node root;
+    final int size;
+
+    HashTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    Object get(Object key) {
+        return root == null ? null : root.find(0, hash(key), key);
+    }
+
+    HashTrie put(Edit edit, Object key, Object value) {
+        Change change = new Change();
+        Node node = root == null ? BitmapNode.EMPTY : root;
+        Node updated = node.put(edit, 0, hash(key), key, value, change);
+        if (updated == root && edit == null) {
+            return this;
+        }
+        return new HashTrie(updated, change.added ? size + 1 : size);
+    }
+
+    HashTrie remove(Edit edit, Object key) {
+        if (root == null) {
+            return this;
+        }
+        Change change = new Change();
+        Node updated = root.remove(edit, 0, hash(key), key, change);
+        if (!change.removed) {
+            return this;
+        }
+        return new HashTrie(updated, size - 1);
+    }
+
+    Iterator<Map.Entry<Object, Object>> iterator() {
+        return new EntryIterator(root);
+    }
+
+    /**
+     * Skips the subtrees the two tries share.
+     */
+    boolean sameEntriesAs(HashTrie other) {
+        return size == other.size && sameEntries(root, other.root, 0);
+    }
+
+    private static boolean sameEntries(Node node, Node other, int shift) {
+        if (node == other) {
+            return true;
+        }
+        if (node == null || other == null) {
+            return false;
+        }
+        if (node instanceof BitmapNode && other instanceof BitmapNode) {
+            BitmapNode bitmapNode = (BitmapNode) node;
+            BitmapNode otherBitmapNode = (BitmapNode) other;
+            if (bitmapNode.bitmap == otherBitmapNode.bitmap) {
+                return sameSlots(bitmapNode, otherBitmapNode, shift);
+            }
+        }
+        return containsEntriesOf(other, node, shift) && count(node) == count(other);
+    }
+
+    private static boolean sameSlots(BitmapNode node, BitmapNode other, int shift) {
+        int slots = Integer.bitCount(node.bitmap);
+        for (int i = 0; i < slots; i++) {
+            Object key = node.array[2 * i];
+            Object value = node.array[2 * i + 1];
+            Object otherKey = other.array[2 * i];
+            Object otherValue = other.array[2 * i + 1];
+            boolean same;
+            if (key == null && otherKey == null) {
+                same = sameEntries((Node) value, (Node) otherValue, shift + BITS);
+            } else if (key != null && otherKey != null) {
+                same = key.equals(otherKey) && value.equals(otherValue);
+            } else {
+                Node slot = key == null ? (Node) value : single(key, value);
+                Node otherSlot = otherKey == null ? (Node) otherValue : single(otherKey, otherValue);
+                same = containsEntriesOf(otherSlot, slot, shift + BITS) && count(slot) == count(otherSlot);
+            }
+            if (!same) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reports how this trie differs from {@code previous}, skipping the subtrees they share.
+     */
+    void diff(HashTrie previous, Diff diff) {
+        diff(orEmpty(previous.root), orEmpty(root), 0, diff);
+    }
+
+    private static Node orEmpty(Node node) {
+        return node == null ? BitmapNode.EMPTY : node;
+    }
+
+    private static void diff(Node previous, Node current, int shift, Diff diff) {
+        if (previous == current) {
+            return;
+        }
+        if (!(previous instanceof BitmapNode && current instanceof BitmapNode)) {
+            diffEntries(previous, current, shift, diff);
+            return;
+        }
+        BitmapNode previousNode = (BitmapNode) previous;
+        BitmapNode currentNode = (BitmapNode) current;
+        int bits = previousNode.bitmap | currentNode.bitmap;
+        while (bits != 0) {
+            int bit = Integer.lowestOneBit(bits);
+            bits &= ~bit;
+            if (previousNode.sharesSlotWith(currentNode, bit)) {
+                continue;
+            }
+            Node previousSlot = previousNode.slotFor(bit);
+            Node currentSlot = currentNode.slotFor(bit);
+            if (previousSlot == null) {
+                diffEntries(BitmapNode.EMPTY, currentSlot, shift + BITS, diff);
+            } else if (currentSlot == null) {
+                diffEntries(previousSlot, BitmapNode.EMPTY, shift + BITS, diff);
+            } else {
+                diff(previousSlot, currentSlot, shift + BITS, diff);
+            }
+        }
+    }
+
+    private static void diffEntries(Node previous, Node current, int shift, Diff diff) {
+        Iterator<Map.Entry<Object, Object>> previousEntries = new EntryIterator(previous);
+        while (previousEntries.hasNext()) {
+            Map.Entry<Object, Object> entry = previousEntries.next();
+            Object key = entry.getKey();
+            Object previousValue = entry.getValue();
+            Object currentValue = current.find(shift, hash(key), key);
+            if (currentValue == null) {
+                diff.removed(key, previousValue);
+            } else if (currentValue != previousValue && !currentValue.equals(previousValue)) {
+                diff.changed(key, previousValue, currentValue);
+            }
+        }
+        Iterator<Map.Entry<Object, Object>> currentEntries = new EntryIterator(current);
+        while (currentEntries.hasNext()) {
+            Map.Entry<Object, Object> entry = currentEntries.next();
+            Object key = entry.getKey();
+            if (previous.find(shift, hash(key), key) == null) {
+                diff.added(key, entry.getValue());
+            }
+        }
+    }
+
+    private static Node single(Object key, Object value) {
+        return new CollisionNode(null, hash(key), new Object[]{key, value});
+    }
+
+    private static boolean containsEntriesOf(Node container, Node node, int shift) {
+        Iterator<Map.Entry<Object, Object>> entries = new EntryIterator(node);
+        while (entries.hasNext()) {
+            Map.Entry<Object, Object> entry = entries.next();
+            if (!entry.getValue().equals(container.find(shift, hash(entry.getKey()), entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int count(Node node) {
+        int count = 0;
+        Iterator<Map.Entry<Object, Object>> entries = new EntryIterator(node);
+        while (entries.hasNext()) {
+            entries.next();
+            count++;
+        }
+        return count;
+    }
+
+    static int hash(Object key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static Node pairOf(Edit edit, int shift, Object key, Object value, int otherHash, Object otherKey, Object otherValue) {
+        int hash = hash(key);
+        if (hash == otherHash) {
+            return new CollisionNode(edit, hash, new Object[]{key, value, otherKey, otherValue});
+        }
+        Change change = new Change();
+        return BitmapNode.EMPTY
+                .put(edit, shift, hash, key, value, change)
+                .put(edit, shift, otherHash, otherKey, otherValue, change);
+    }
+
+    /**
+     * Receives the differences found by {@link #diff(HashTrie, Diff)}.
+     */
+    interface Diff {
+
+        void added(Object key, Object value);
+
+        void removed(Object key, Object value);
+
+        void changed(Object key, Object previousValue, Object currentValue);
+    }
+
+    /**
+     * Identifies the builder a node was created by.
+     */
+    static final class Edit {
+    }
+
+    private static final class Change {
+        boolean added;
+        boolean removed;
+    }
+
+    abstract static class Node {
+
+        abstract Object find(int shift, int hash, Object key);
+
+        abstract Node put(Edit edit, int shift, int hash, Object key, Object value, Change change);
+
+        /**
+         * @return the node without the key, or null if nothing is left in it
+         */
+        abstract Node remove(Edit edit, int shift, int hash, Object key, Change change);
+
+        abstract int slots();
+
+        /**
+         * @return the key in the slot, or null if the slot holds a child node
+         */
+        abstract Object keyAt(int slot);
+
+        /**
+         * @return the value in the slot, or the child node if {@link #keyAt(int)} is null
+         */
+        abstract Object valueAt(int slot);
+    }
+
+    /**
+     * Keeps one slot for each five bit hash fragment in use, the bitmap saying which.
+     */
+    private static final class BitmapNode extends Node {
+
+        static final BitmapNode EMPTY = new BitmapNode(null, 0, new Object[0]);
+
+        final Edit edit;
+        int bitmap;
+        Object[] array;
+
+        BitmapNode(Edit edit, int bitmap, Object[] array) {
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        boolean sharesSlotWith(BitmapNode other, int bit) {
+            if ((bitmap & bit) == 0 || (other.bitmap & bit) == 0) {
+                return false;
+            }
+            int index = 2 * index(bit);
+            int otherIndex = 2 * other.index(bit);
+            return array[index] == other.array[otherIndex] && array[index + 1] == other.array[otherIndex + 1];
+        }
+
+        /**
+         * @return the slot for the hash fragment as a node of its own, or null if no key has the fragment
+         */
+        Node slotFor(int bit) {
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int index = index(bit);
+            Object keyOrNull = array[2 * index];
+            Object valueOrNode = array[2 * index + 1];
+            return keyOrNull == null ? (Node) valueOrNode : single(keyOrNull, valueOrNode);
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int index = index(bit);
+            Object keyOrNull = array[2 * index];
+            Object valueOrNode = array[2 * index + 1];
+            if (keyOrNull == null) {
+                return ((Node) valueOrNode).find(shift + BITS, hash, key);
+            }
+            return key.equals(keyOrNull) ? valueOrNode : null;
+        }
+
+        @Override
+        Node put(Edit edit, int shift, int hash, Object key, Object value, Change change) {
+            int bit = bit(hash, shift);
+            int index = index(bit);
+            if ((bitmap & bit) != 0) {
+                Object keyOrNull = array[2 * index];
+                Object valueOrNode = array[2 * index + 1];
+                if (keyOrNull == null) {
+                    Node child = (Node) valueOrNode;
+                    Node updated = child.put(edit, shift + BITS, hash, key, value, change);
+                    return updated == child ? this : editAndSet(edit, 2 * index + 1, updated);
+                }
+                if (key.equals(keyOrNull)) {
+                    return valueOrNode == value ? this : editAndSet(edit, 2 * index + 1, value);
+                }
+                change.added = true;
+                Node pair = pairOf(edit, shift + BITS, keyOrNull, valueOrNode, hash, key, value);
+                BitmapNode editable = editable(edit);
+                editable.array[2 * index] = null;
+                editable.array[2 * index + 1] = pair;
+                return editable;
+            }
+            change.added = true;
+            int slots = Integer.bitCount(bitmap);
+            if (edit != null && edit == this.edit && 2 * slots < array.length) {
+                System.arraycopy(array, 2 * index, array, 2 * (index + 1), 2 * (slots - index));
+                array[2 * index] = key;
+                array[2 * index + 1] = value;
+                bitmap |= bit;
+                return this;
+            }
+            int spare = edit == null ? 0 : 2;
+            Object[] inserted = new Object[2 * (slots + 1 + spare)];
+            System.arraycopy(array, 0, inserted, 0, 2 * index);
+            inserted[2 * index] = key;
+            inserted[2 * index + 1] = value;
+            System.arraycopy(array, 2 * index, inserted, 2 * (index + 1), 2 * (slots - index));
+            return new BitmapNode(edit, bitmap | bit, inserted);
+        }
+
+        @Override
+        Node remove(Edit edit, int shift, int hash, Object key, Change change) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = index(bit);
+            Object keyOrNull = array[2 * index];
+            Object valueOrNode = array[2 * index + 1];
+            if (keyOrNull == null) {
+                Node child = (Node) valueOrNode;
+                Node updated = child.remove(edit, shift + BITS, hash, key, change);
+                if (updated == child) {
+                    return this;
+                }
+                if (updated != null) {
+                    return editAndSet(edit, 2 * index + 1, updated);
+                }
+            } else if (!key.equals(keyOrNull)) {
+                return this;
+            } else {
+                change.removed = true;
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            return withoutSlot(edit, bit, index);
+        }
+
+        private Node withoutSlot(Edit edit, int bit, int index) {
+            int slots = Integer.bitCount(bitmap);
+            if (edit != null && edit == this.edit) {
+                System.arraycopy(array, 2 * (index + 1), array, 2 * index, 2 * (slots - index - 1));
+                array[2 * (slots - 1)] = null;
+                array[2 * (slots - 1) + 1] = null;
+                bitmap ^= bit;
+                return this;
+            }
+            Object[] removed = new Object[2 * (slots - 1)];
+            System.arraycopy(array, 0, removed, 0, 2 * index);
+            System.arraycopy(array, 2 * (index + 1), removed, 2 * index, 2 * (slots - index - 1));
+            return new BitmapNode(edit, bitmap ^ bit, removed);
+        }
+
+        private BitmapNode editAndSet(Edit edit, int i, Object value) {
+            BitmapNode editable = editable(edit);
+            editable.array[i] = value;
+            return editable;
+        }
+
+        private BitmapNode editable(Edit edit) {
+            if (edit != null && edit == this.edit) {
+                return this;
+            }
+            return new BitmapNode(edit, bitmap, array.clone());
+        }
+
+        @Override
+        int slots() {
+            return Integer.bitCount(bitmap);
+        }
+
+        @Override
+        Object keyAt(int slot) {
+            return array[2 * slot];
+        }
+
+        @Override
+        Object valueAt(int slot) {
+            return array[2 * slot + 1];
+        }
+    }
+
+    /**
+     * Keys whose whole hashes are equal, kept in a flat array.
+     */
+    private static final class CollisionNode extends Node {
+
+        final Edit edit;
+        final int hash;
+        Object[] array;
+
+        CollisionNode(Edit edit, int hash, Object[] array) {
+            this.edit = edit;
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int i = indexOf(key);
+            return i < 0 ? null : array[i + 1];
+        }
+
+        @Override
+        Node put(Edit edit, int shift, int hash, Object key, Object value, Change change) {
+            if (hash != this.hash) {
+                Object[] wrapped = new Object[]{null, this};
+                return new BitmapNode(edit, bit(this.hash, shift), wrapped).put(edit, shift, hash, key, value, change);
+            }
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+                Object[] replaced = array.clone();
+                replaced[i + 1] = value;
+                return new CollisionNode(edit, hash, replaced);
+            }
+            change.added = true;
+            Object[] appended = new Object[array.length + 2];
+            System.arraycopy(array, 0, appended, 0, array.length);
+            appended[array.length] = key;
+            appended[array.length + 1] = value;
+            return new CollisionNode(edit, hash, appended);
+        }
+
+        @Override
+        Node remove(Edit edit, int shift, int hash, Object key, Change change) {
+            int i = indexOf(key);
+            if (i < 0) {
+                return this;
+            }
+            change.removed = true;
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] removed = new Object[array.length - 2];
+            System.arraycopy(array, 0, removed, 0, i);
+            System.arraycopy(array, i + 2, removed, i, array.length - i - 2);
+            return new CollisionNode(edit, hash, removed);
+        }
+
+        @Override
+        int slots() {
+            return array.length / 2;
+        }
+
+        @Override
+        Object keyAt(int slot) {
+            return array[2 * slot];
+        }
+
+        @Override
+        Object valueAt(int slot) {
+            return array[2 * slot + 1];
+        }
+    }
+
+    /**
+     * Walks the trie depth first, keeping the nodes still being visited on a stack.
+     */
+    private static final class EntryIterator implements Iterator<Map.Entry<Object, Object>> {
+
+        private final Deque<Node> nodes = new ArrayDeque<>();
+        private final Deque<Integer> slots = new ArrayDeque<>();
+        private Map.Entry<Object, Object> next;
+
+        EntryIterator(Node root) {
+            if (root != null) {
+                nodes.push(root);
+                slots.push(0);
+            }
+            next = advance();
+        }
+
+        private Map.Entry<Object, Object> advance() {
+            while (!nodes.isEmpty()) {
+                Node node = nodes.peek();
+                int slot = slots.pop();
+                if (slot == node.slots()) {
+                    nodes.pop();
+                    continue;
+                }
+                slots.push(slot + 1);
+                Object key = node.keyAt(slot);
+                if (key != null) {
+                    return new AbstractMap.SimpleImmutableEntry<>(key, node.valueAt(slot));
+                }
+                nodes.push((Node) node.valueAt(slot));
+                slots.push(0);
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<Object, Object> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<Object, Object> current = next;
+            next = advance();
+            return current;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -1,101 +1,338 @@
 package com.novoda.data;
 
-import com.google.auto.value.AutoValue;
 import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Iterators;
 
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
-@AutoValue
-public abstract class ImmutableMapWithCopy<K, V> {
+/**
+ * Immutable map whose updates return a new map sharing all but the changed path with this one.
+ */
+public final class ImmutableMapWithCopy<K, V> {
 
+    private static final ImmutableMapWithCopy<Object, Object> EMPTY = new ImmutableMapWithCopy<>(HashTrie.EMPTY);
+
+    private final ImmutableMapWithCopy<K, V> unfiltered;
+    private final Predicate<Map.Entry<K, V>> predicate;
+
+    private volatile HashTrie trie;
+    private int hashCode;
+
+    @SuppressWarnings("unchecked")
     public static <K, V> ImmutableMapWithCopy<K, V> empty() {
-        return from(ImmutableMap.<K, V>of());
+        return (ImmutableMapWithCopy<K, V>) EMPTY;
     }
 
     public static <K, V> ImmutableMapWithCopy<K, V> from(Map<K, V> map) {
-        return new AutoValue_ImmutableMapWithCopy<>(ImmutableMap.copyOf(map));
+        return ImmutableMapWithCopy.<K, V>builder().putAll(map).build();
+    }
+
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>(HashTrie.EMPTY);
     }
 
-    ImmutableMapWithCopy() {
-        // AutoValue best practices https://github.com/google/auto/blob/master/value/userguide/practices.md
+    private ImmutableMapWithCopy(HashTrie trie) {
+        this.trie = trie;
+        this.unfiltered = null;
+        this.predicate = null;
     }
 
-    abstract ImmutableMap<K, V> internalMap();
+    private ImmutableMapWithCopy(ImmutableMapWithCopy<K, V> unfiltered, Predicate<Map.Entry<K, V>> predicate) {
+        this.unfiltered = unfiltered;
+        this.predicate = predicate;
+    }
+
+    private HashTrie trie() {
+        HashTrie current = trie;
+        if (current == null) {
+            Builder<K, V> builder = builder();
+            Iterator<Map.Entry<K, V>> entries = entryIterator();
+            while (entries.hasNext()) {
+                Map.Entry<K, V> entry = entries.next();
+                builder.put(entry.getKey(), entry.getValue());
+            }
+            current = builder.trie;
+            trie = current;
+        }
+        return current;
+    }
+
+    private boolean isUnbuiltView() {
+        return trie == null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Iterator<Map.Entry<K, V>> entryIterator() {
+        if (isUnbuiltView()) {
+            return Iterators.filter(unfiltered.entryIterator(), predicate);
+        }
+        return (Iterator<Map.Entry<K, V>>) (Iterator<?>) trie.iterator();
+    }
+
+    public Builder<K, V> toBuilder() {
+        return new Builder<>(trie());
+    }
 
     public int size() {
-        return internalMap().size();
+        return trie().size;
     }
 
     public boolean isEmpty() {
-        return internalMap().isEmpty();
+        if (isUnbuiltView()) {
+            return !entryIterator().hasNext();
+        }
+        return trie.size == 0;
     }
 
     public boolean containsKey(Object key) {
-        return internalMap().containsKey(key);
+        return get(key) != null;
     }
 
     public boolean containsValue(Object value) {
-        return internalMap().containsValue(value);
+        Iterator<Map.Entry<K, V>> entries = entryIterator();
+        while (entries.hasNext()) {
+            if (entries.next().getValue().equals(value)) {
+                return true;
+            }
+        }
+        return false;
     }
 
+    @SuppressWarnings("unchecked")
     public V get(Object key) {
-        return internalMap().get(key);
+        if (key == null) {
+            return null;
+        }
+        if (isUnbuiltView()) {
+            V value = unfiltered.get(key);
+            if (value == null || !predicate.apply(new AbstractMap.SimpleImmutableEntry<>((K) key, value))) {
+                return null;
+            }
+            return value;
+        }
+        return (V) trie.get(key);
     }
 
     public ImmutableMapWithCopy<K, V> put(K key, V value) {
-        Map<K, V> mutableMap = extractMutableMap();
-        mutableMap.put(key, value);
-        return from(mutableMap);
+        Preconditions.checkNotNull(key);
+        Preconditions.checkNotNull(value);
+        HashTrie current = trie();
+        HashTrie updated = current.put(null, key, value);
+        return updated == current ? this : new ImmutableMapWithCopy<K, V>(updated);
     }
 
     public ImmutableMapWithCopy<K, V> remove(Object key) {
-        Map<K, V> mutableMap = extractMutableMap();
-        mutableMap.remove(key);
-        return from(mutableMap);
+        if (key == null) {
+            return this;
+        }
+        HashTrie current = trie();
+        HashTrie updated = current.remove(null, key);
+        return updated == current ? this : new ImmutableMapWithCopy<K, V>(updated);
     }
 
     public ImmutableMapWithCopy<K, V> putAll(Map<? extends K, ? extends V> m) {
-        Map<K, V> mutableMap = extractMutableMap();
-        mutableMap.putAll(m);
-        return from(mutableMap);
+        if (m.isEmpty()) {
+            return this;
+        }
+        return toBuilder().putAll(m).build();
     }
 
     public Set<K> keySet() {
-        return internalMap().keySet();
+        return new AbstractSet<K>() {
+            @Override
+            public Iterator<K> iterator() {
+                return Iterators.transform(entryIterator(), new Function<Map.Entry<K, V>, K>() {
+                    @Override
+                    public K apply(Map.Entry<K, V> entry) {
+                        return entry.getKey();
+                    }
+                });
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return containsKey(key);
+            }
+
+            @Override
+            public int size() {
+                return ImmutableMapWithCopy.this.size();
+            }
+        };
     }
 
     public Collection<V> values() {
-        return internalMap().values();
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return Iterators.transform(entryIterator(), new Function<Map.Entry<K, V>, V>() {
+                    @Override
+                    public V apply(Map.Entry<K, V> entry) {
+                        return entry.getValue();
+                    }
+                });
+            }
+
+            @Override
+            public int size() {
+                return ImmutableMapWithCopy.this.size();
+            }
+        };
     }
 
     public Set<Map.Entry<K, V>> entrySet() {
-        return internalMap().entrySet();
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return entryIterator();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Map.Entry)) {
+                    return false;
+                }
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+                V value = get(entry.getKey());
+                return value != null && value.equals(entry.getValue());
+            }
+
+            @Override
+            public int size() {
+                return ImmutableMapWithCopy.this.size();
+            }
+        };
     }
 
     public <K2, V2> ImmutableMapWithCopy<K2, V2> transformEntries(Function<Map.Entry<K, V>, Map.Entry<K2, V2>> transformer) {
-        ImmutableMap.Builder<K2, V2> builder = ImmutableMap.builder();
-        for (Map.Entry<K, V> entry : internalMap().entrySet()) {
-            builder.put(transformer.apply(entry));
+        Builder<K2, V2> builder = builder();
+        Iterator<Map.Entry<K, V>> entries = entryIterator();
+        while (entries.hasNext()) {
+            Map.Entry<K2, V2> transformed = transformer.apply(entries.next());
+            builder.put(transformed.getKey(), transformed.getValue());
         }
-        return from(builder.build());
+        return builder.build();
     }
 
-    private Map<K, V> extractMutableMap() {
-        Map<K, V> mutableMap = new HashMap<>();
-        for (Map.Entry<K, V> entry : internalMap().entrySet()) {
-            mutableMap.put(entry.getKey(), entry.getValue());
+    public ImmutableMapWithCopy<K, V> filter(Predicate<Map.Entry<K, V>> predicate) {
+        return new ImmutableMapWithCopy<>(this, predicate);
+    }
+
+    /**
+     * Reports the entries added, removed or changed since {@code previous}.
+     */
+    @SuppressWarnings("unchecked")
+    public void diff(ImmutableMapWithCopy<K, V> previous, final Differences<K, V> differences) {
+        trie().diff(previous.trie(), new HashTrie.Diff() {
+            @Override
+            public void added(Object key, Object value) {
+                differences.onAdded((K) key, (V) value);
+            }
+
+            @Override
+            public void removed(Object key, Object value) {
+                differences.onRemoved((K) key, (V) value);
+            }
+
+            @Override
+            public void changed(Object key, Object previousValue, Object currentValue) {
+                differences.onChanged((K) key, (V) previousValue, (V) currentValue);
+            }
+        });
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ImmutableMapWithCopy)) {
+            return false;
         }
-        return mutableMap;
+        ImmutableMapWithCopy<?, ?> that = (ImmutableMapWithCopy<?, ?>) o;
+        return trie().sameEntriesAs(that.trie());
     }
 
-    public ImmutableMapWithCopy<K, V> filter(Predicate<Map.Entry<K, V>> predicate) {
-        return from(Maps.filterEntries(internalMap(), predicate));
+    @Override
+    public int hashCode() {
+        int h = hashCode;
+        if (h == 0) {
+            Iterator<Map.Entry<K, V>> entries = entryIterator();
+            while (entries.hasNext()) {
+                h += entries.next().hashCode();
+            }
+            hashCode = h;
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("ImmutableMapWithCopy{");
+        Iterator<Map.Entry<K, V>> entries = entryIterator();
+        while (entries.hasNext()) {
+            Map.Entry<K, V> entry = entries.next();
+            builder.append(entry.getKey()).append('=').append(entry.getValue());
+            if (entries.hasNext()) {
+                builder.append(", ");
+            }
+        }
+        return builder.append('}').toString();
+    }
+
+    public interface Differences<K, V> {
+
+        void onAdded(K key, V value);
+
+        void onRemoved(K key, V value);
+
+        void onChanged(K key, V previousValue, V currentValue);
     }
 
+    /**
+     * Applies updates in place to the nodes it created itself, so a batch only copies each path once.
+     */
+    public static final class Builder<K, V> {
+
+        private HashTrie.Edit edit = new HashTrie.Edit();
+        private HashTrie trie;
+
+        private Builder(HashTrie trie) {
+            this.trie = trie;
+        }
+
+        public Builder<K, V> put(K key, V value) {
+            Preconditions.checkNotNull(key);
+            Preconditions.checkNotNull(value);
+            trie = trie.put(edit, key, value);
+            return this;
+        }
+
+        public Builder<K, V> putAll(Map<? extends K, ? extends V> map) {
+            for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+                put(entry.getKey(), entry.getValue());
+            }
+            return this;
+        }
+
+        public Builder<K, V> remove(Object key) {
+            if (key != null) {
+                trie = trie.remove(edit, key);
+            }
+            return this;
+        }
+
+        public ImmutableMapWithCopy<K, V> build() {
+            edit = new HashTrie.Edit();
+            return new ImmutableMapWithCopy<>(trie);
+        }
+    }
 }
@@ -0,0 +1,160 @@
+package com.novoda.data
+
+import com.google.common.base.Predicate
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNotEquals
+import kotlin.test.assertNull
+
+class ImmutableMapWithCopyTest {
+
+    @Test
+    fun given_ManyEntries_on_PutAndRemove_it_ShouldHoldTheSameEntriesAsAHashMap() {
+        var map = ImmutableMapWithCopy.empty<Key, Int>()
+        val expected = hashMapOf<Key, Int>()
+        for (i in 0 until 2000) {
+            map = map.put(key(i), i)
+            expected[key(i)] = i
+        }
+        for (i in 0 until 2000 step 3) {
+            map = map.remove(key(i))
+            expected.remove(key(i))
+        }
+
+        assertEquals(expected.size, map.size())
+        assertEquals(expected.entries, entriesOf(map))
+        assertEquals(1999, map.get(key(1999)))
+        assertNull(map.get(key(0)))
+    }
+
+    @Test
+    fun given_KeysWithTheSameHash_on_PutAndRemove_it_ShouldKeepThemApart() {
+        val map = ImmutableMapWithCopy.empty<Key, Int>()
+                .put(Key("a", 7), 1)
+                .put(Key("b", 7), 2)
+                .put(Key("c", 7), 3)
+                .put(Key("d", 39), 4)
+
+        val removed = map.remove(Key("b", 7))
+
+        assertEquals(4, map.size())
+        assertEquals(2, map.get(Key("b", 7)))
+        assertEquals(mapOf(Key("a", 7) to 1, Key("c", 7) to 3, Key("d", 39) to 4).entries, entriesOf(removed))
+        assertNull(removed.get(Key("b", 7)))
+        assertEquals(removed, removed.remove(Key("e", 7)))
+    }
+
+    @Test
+    fun given_AMapWasBuilt_on_UpdatingTheBuilderAgain_it_ShouldLeaveTheBuiltMapAsItWas() {
+        val builder = ImmutableMapWithCopy.builder<Key, Int>()
+        for (i in 0 until 100) {
+            builder.put(key(i), i)
+        }
+        val built = builder.build()
+
+        builder.put(key(0), -1).put(key(100), 100).remove(key(1))
+
+        assertEquals(100, built.size())
+        assertEquals(0, built.get(key(0)))
+        assertEquals(1, built.get(key(1)))
+        assertFalse(built.containsKey(key(100)))
+        assertEquals(-1, builder.build().get(key(0)))
+    }
+
+    @Test
+    fun given_AMap_on_ToBuilder_it_ShouldLeaveTheMapAsItWas() {
+        val map = ImmutableMapWithCopy.from(mapOf(key(1) to 1, key(2) to 2))
+
+        map.toBuilder().put(key(1), -1).remove(key(2)).build()
+
+        assertEquals(mapOf(key(1) to 1, key(2) to 2).entries, entriesOf(map))
+    }
+
+    @Test
+    fun given_AFilter_on_ReadingIt_it_ShouldOnlyShowTheMatchingEntries() {
+        val map = ImmutableMapWithCopy.from((0 until 10).associate { key(it) to it })
+
+        val evens = map.filter(Predicate { it!!.value % 2 == 0 })
+
+        assertEquals(2, evens.get(key(2)))
+        assertNull(evens.get(key(3)))
+        assertEquals(5, evens.size())
+        assertEquals((0 until 10 step 2).associate { key(it) to it }.entries, entriesOf(evens))
+        assertEquals(ImmutableMapWithCopy.from((0 until 10 step 2).associate { key(it) to it }), evens)
+        assertEquals(6, evens.put(key(11), 11).size())
+    }
+
+    @Test
+    fun given_TheSameEntriesReachedDifferently_on_Equals_it_ShouldBeEqualWithTheSameHashCode() {
+        val built = ImmutableMapWithCopy.from((0 until 500).associate { key(it) to it })
+        var updated = ImmutableMapWithCopy.empty<Key, Int>()
+        for (i in 499 downTo -10) {
+            updated = updated.put(key(i), i)
+        }
+        for (i in -10 until 0) {
+            updated = updated.remove(key(i))
+        }
+
+        assertEquals(built, updated)
+        assertEquals(built.hashCode(), updated.hashCode())
+        assertNotEquals(built, updated.put(key(7), -7))
+        assertNotEquals(built, updated.remove(key(7)))
+    }
+
+    @Test
+    fun given_AMapDerivedByUpdates_on_Diff_it_ShouldReportOnlyTheUpdates() {
+        val previous = ImmutableMapWithCopy.from((0 until 1000).associate { key(it) to it })
+        val current = previous
+                .put(key(5), -5)
+                .remove(key(6))
+                .put(key(1000), 1000)
+                .put(Key("collides with 7", key(7).hashCode()), 7)
+
+        val differences = RecordingDifferences()
+        current.diff(previous, differences)
+
+        assertEquals(listOf(key(1000) to 1000, Key("collides with 7", key(7).hashCode()) to 7).toSet(), differences.added.toSet())
+        assertEquals(listOf(key(6) to 6), differences.removed)
+        assertEquals(listOf(Triple(key(5), 5, -5)), differences.changed)
+    }
+
+    @Test
+    fun given_TwoUnrelatedMaps_on_Diff_it_ShouldReportEveryDifference() {
+        val previous = ImmutableMapWithCopy.from(mapOf(key(1) to 1, key(2) to 2))
+        val current = ImmutableMapWithCopy.from(mapOf(key(2) to 20, key(3) to 3))
+
+        val differences = RecordingDifferences()
+        current.diff(previous, differences)
+
+        assertEquals(listOf(key(3) to 3), differences.added)
+        assertEquals(listOf(key(1) to 1), differences.removed)
+        assertEquals(listOf(Triple(key(2), 2, 20)), differences.changed)
+    }
+
+    private fun key(i: Int) = Key("key$i", i * 31)
+
+    private fun <K, V> entriesOf(map: ImmutableMapWithCopy<K, V>) = map.entrySet().map { it.key to it.value }.toMap().entries
+
+    data class Key(val name: String, val hash: Int) {
+        override fun hashCode() = hash
+    }
+
+    class RecordingDifferences : ImmutableMapWithCopy.Differences<Key, Int> {
+        val added = mutableListOf<Pair<Key, Int>>()
+        val removed = mutableListOf<Pair<Key, Int>>()
+        val changed = mutableListOf<Triple<Key, Int, Int>>()
+
+        override fun onAdded(key: Key, value: Int) {
+            added.add(key to value)
+        }
+
+        override fun onRemoved(key: Key, value: Int) {
+            removed.add(key to value)
+        }
+
+        override fun onChanged(key: Key, previousValue: Int, currentValue: Int) {
+            changed.add(Triple(key, previousValue, currentValue))
+        }
+    }
+}
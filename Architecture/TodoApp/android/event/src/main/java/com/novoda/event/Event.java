@@ -1,65 +1,88 @@
 package com.novoda.event;
 
-import com.google.auto.value.AutoValue;
 import com.google.common.base.Function;
+import com.google.common.base.Objects;
 import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 
-@AutoValue
-public abstract class Event<T> {
-
+/**
+ * State of a stream of data along with the latest data it delivered.
+ */
+public final class Event<T> {
+
+    private static final Event<Object> IDLE = new Event<>(
+            Status.IDLE,
+            Optional.absent(),
+            Optional.<Throwable>absent(),
+            Predicates.alwaysTrue()
+    );
+
+    private static final Event<Object> LOADING = new Event<>(
+            Status.LOADING,
+            Optional.absent(),
+            Optional.<Throwable>absent(),
+            Predicates.alwaysTrue()
+    );
+
+    private final Status state;
+    private final Optional<T> data;
+    private final Optional<Throwable> error;
+    private final Predicate<T> dataValidator;
+    private int hashCode;
+
+    @SuppressWarnings("unchecked")
     public static <T> Event<T> idle() {
-        return Event.<T>builder()
-                .state(Status.IDLE)
-                .build();
+        return (Event<T>) IDLE;
     }
 
     public static <T> Event<T> idle(Predicate<T> dataValidator) {
-        return Event.<T>builder()
-                .state(Status.IDLE)
-                .dataValidator(dataValidator)
-                .build();
+        return new Event<>(Status.IDLE, Optional.<T>absent(), Optional.<Throwable>absent(), dataValidator);
     }
 
+    @SuppressWarnings("unchecked")
     public static <T> Event<T> loading() {
-        return Event.<T>builder()
-                .state(Status.LOADING)
-                .build();
+        return (Event<T>) LOADING;
     }
 
     public static <T> Event<T> loading(Predicate<T> dataValidator) {
-        return Event.<T>builder()
-                .state(Status.LOADING)
-                .dataValidator(dataValidator)
-                .build();
+        return new Event<>(Status.LOADING, Optional.<T>absent(), Optional.<Throwable>absent(), dataValidator);
     }
 
     public static <T> Event<T> error(Throwable throwable) {
-        return Event.<T>builder()
-                .state(Status.ERROR)
-                .error(Optional.of(throwable))
-                .build();
+        return new Event<>(Status.ERROR, Optional.<T>absent(), Optional.of(throwable), Predicates.<T>alwaysTrue());
     }
 
     public static <T> Builder<T> builder() {
-        return new AutoValue_Event.Builder<T>()
+        return new Builder<T>()
                 .data(Optional.<T>absent())
                 .error(Optional.<Throwable>absent())
                 .dataValidator(Predicates.<T>alwaysTrue());
     }
 
-    Event() {
-        // AutoValue best practices https://github.com/google/auto/blob/master/value/userguide/practices.md
+    private Event(Status state, Optional<T> data, Optional<Throwable> error, Predicate<T> dataValidator) {
+        this.state = state;
+        this.data = data;
+        this.error = error;
+        this.dataValidator = dataValidator;
     }
 
-    public abstract Status state();
+    public Status state() {
+        return state;
+    }
 
-    public abstract Optional<T> data();
+    public Optional<T> data() {
+        return data;
+    }
 
-    public abstract Optional<Throwable> error();
+    public Optional<Throwable> error() {
+        return error;
+    }
 
-    protected abstract Predicate<T> dataValidator();
+    Predicate<T> dataValidator() {
+        return dataValidator;
+    }
 
     public Optional<String> errorMessage() {
         return error().transform(
@@ -75,84 +98,135 @@ public abstract class Event<T> {
         );
     }
 
-    public abstract Builder<T> toBuilder();
+    public Builder<T> toBuilder() {
+        return new Builder<T>()
+                .state(state)
+                .data(data)
+                .error(error)
+                .dataValidator(dataValidator);
+    }
 
     public Event<T> asError(Throwable error) {
-        return toBuilder()
-                .state(Status.ERROR)
-                .error(Optional.fromNullable(error))
-                .build();
+        return with(Status.ERROR, data, Optional.fromNullable(error));
     }
 
     public Event<T> asIdle() {
-        return toBuilder()
-                .state(Status.IDLE)
-                .error(Optional.<Throwable>absent())
-                .build();
+        return with(Status.IDLE, data, Optional.<Throwable>absent());
     }
 
     public Event<T> updateData(T value) {
-        return toBuilder()
-                .data(validateData(value))
-                .build();
+        return with(state, validateData(value), error);
     }
 
     public Event<T> updateData(Optional<T> data) {
-        return toBuilder()
-                .data(data.transform(validateData()).or(Optional.<T>absent()))
-                .build();
-    }
-
-    private Function<T, Optional<T>> validateData() {
-        return new Function<T, Optional<T>>() {
-            @Override
-            public Optional<T> apply(T input) {
-                return validateData(input);
-            }
-        };
+        if (data.isPresent()) {
+            return updateData(data.get());
+        }
+        return removeData();
     }
 
     public Event<T> removeData() {
-        return toBuilder()
-                .data(Optional.<T>absent())
-                .build();
+        return with(state, Optional.<T>absent(), error);
     }
 
     public Event<T> asLoading() {
-        return toBuilder()
-                .state(Status.LOADING)
-                .error(Optional.<Throwable>absent())
-                .build();
+        return with(Status.LOADING, data, Optional.<Throwable>absent());
     }
 
     public Event<T> asLoadingWithData(T value) {
-        return toBuilder()
-                .state(Status.LOADING)
-                .data(validateData(value))
-                .error(Optional.<Throwable>absent())
-                .build();
+        return with(Status.LOADING, validateData(value), Optional.<Throwable>absent());
     }
 
     private Optional<T> validateData(T value) {
-        if (dataValidator().apply(value)) {
-            return Optional.of(value);
-        } else {
+        if (!dataValidator.apply(value)) {
             return Optional.absent();
         }
+        if (data.isPresent() && data.get() == value) {
+            return data;
+        }
+        return Optional.of(value);
+    }
+
+    private Event<T> with(Status state, Optional<T> data, Optional<Throwable> error) {
+        boolean sameData = data == this.data || !data.isPresent() && !this.data.isPresent();
+        if (state == this.state && sameData && error.equals(this.error)) {
+            return this;
+        }
+        return new Event<>(state, sameData ? this.data : data, error, dataValidator);
+    }
+
+    /**
+     * Data held by both events is only compared when it isn't the same instance.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Event)) {
+            return false;
+        }
+        Event<?> that = (Event<?>) o;
+        return state == that.state
+                && (data == that.data || data.equals(that.data))
+                && error.equals(that.error)
+                && (dataValidator == that.dataValidator || dataValidator.equals(that.dataValidator));
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hashCode;
+        if (h == 0) {
+            h = Objects.hashCode(state, data, error, dataValidator);
+            hashCode = h;
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "Event{"
+                + "state=" + state + ", "
+                + "data=" + data + ", "
+                + "error=" + error + ", "
+                + "dataValidator=" + dataValidator
+                + "}";
     }
 
-    @AutoValue.Builder
-    public abstract static class Builder<T> {
+    public static final class Builder<T> {
 
-        public abstract Builder<T> state(Status state);
+        private Status state;
+        private Optional<T> data;
+        private Optional<Throwable> error;
+        private Predicate<T> dataValidator;
 
-        public abstract Builder<T> data(Optional<T> data);
+        Builder() {
+        }
+
+        public Builder<T> state(Status state) {
+            this.state = Preconditions.checkNotNull(state);
+            return this;
+        }
+
+        public Builder<T> data(Optional<T> data) {
+            this.data = Preconditions.checkNotNull(data);
+            return this;
+        }
 
-        public abstract Builder<T> error(Optional<Throwable> error);
+        public Builder<T> error(Optional<Throwable> error) {
+            this.error = Preconditions.checkNotNull(error);
+            return this;
+        }
 
-        public abstract Builder<T> dataValidator(Predicate<T> dataValidator);
+        public Builder<T> dataValidator(Predicate<T> dataValidator) {
+            this.dataValidator = Preconditions.checkNotNull(dataValidator);
+            return this;
+        }
 
-        public abstract Event<T> build();
+        public Event<T> build() {
+            Preconditions.checkState(state != null, "Missing required properties: state");
+            return new Event<>(state, data, error, dataValidator);
+        }
 
     }
 
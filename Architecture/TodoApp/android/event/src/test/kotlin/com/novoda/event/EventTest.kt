@@ -0,0 +1,78 @@
+package com.novoda.event
+
+import com.google.common.base.Optional
+import com.google.common.base.Predicate
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNotEquals
+import kotlin.test.assertSame
+
+class EventTest {
+
+    val nonEmpty = Predicate<String> { !it.isNullOrEmpty() }
+
+    @Test
+    fun given_NoValidator_on_IdleOrLoading_it_ShouldReturnSharedEvents() {
+        assertSame<Any>(Event.idle<String>(), Event.idle<Int>())
+        assertSame<Any>(Event.loading<String>(), Event.loading<Int>())
+    }
+
+    @Test
+    fun given_AnEvent_on_ATransitionChangingNothing_it_ShouldReturnTheSameEvent() {
+        val data = "data"
+        val event = Event.idle(nonEmpty).updateData(data)
+
+        assertSame(event, event.asIdle())
+        assertSame(event, event.updateData(data))
+        assertSame(event, event.updateData(Optional.of(data)))
+        assertSame(Event.loading<String>(), Event.loading<String>().asLoading())
+    }
+
+    @Test
+    fun given_AValidator_on_UpdateDataWithInvalidData_it_ShouldRemoveTheData() {
+        val event = Event.idle(nonEmpty).updateData("data")
+
+        val updated = event.updateData("")
+
+        assertEquals(Optional.absent(), updated.data())
+        assertEquals(Optional.absent(), Event.loading(nonEmpty).asLoadingWithData("").data())
+    }
+
+    @Test
+    fun given_AnEventWithData_on_StateTransitions_it_ShouldKeepTheData() {
+        val error = IllegalStateException("Broken")
+        val event = Event.idle(nonEmpty).updateData("data")
+
+        val failed = event.asLoading().asError(error)
+
+        assertEquals(Status.ERROR, failed.state())
+        assertEquals(Optional.of("data"), failed.data())
+        assertEquals(Optional.of("Broken"), failed.errorMessage())
+        assertEquals(Optional.absent(), failed.asIdle().error())
+    }
+
+    @Test
+    fun given_EqualDataInDifferentInstances_on_Equals_it_ShouldCompareTheData() {
+        val event = Event.idle(nonEmpty).updateData(String(charArrayOf('a', 'b')))
+        val sameData = Event.builder<String>().state(Status.IDLE).data(Optional.of("ab")).dataValidator(nonEmpty).build()
+
+        assertEquals(event, sameData)
+        assertEquals(event.hashCode(), sameData.hashCode())
+        assertNotEquals(event, sameData.updateData("ba"))
+        assertNotEquals(event, sameData.asLoading())
+    }
+
+    @Test
+    fun given_AnErrorWithoutAMessage_on_ErrorMessage_it_ShouldReturnADefaultMessage() {
+        val event = Event.error<String>(IllegalStateException())
+
+        assertEquals(Optional.of("Something went wrong"), event.errorMessage())
+    }
+
+    @Test
+    fun given_AnEvent_on_ToBuilder_it_ShouldBuildAnEqualEvent() {
+        val event = Event.loading(nonEmpty).updateData("data")
+
+        assertEquals(event, event.toBuilder().build())
+    }
+}
@@ -1,25 +1,54 @@
 package com.novoda.todoapp;
 
 import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
 
-import com.novoda.todoapp.tasks.data.AlwaysOutOfDateTasksFreshnessChecker;
-import com.novoda.todoapp.tasks.data.source.InMemoryLocalTaskDataSource;
+import com.novoda.todoapp.tasks.data.TtlTasksFreshnessChecker;
 import com.novoda.todoapp.tasks.data.source.InMemoryRemoteTaskDataSource;
+import com.novoda.todoapp.tasks.data.source.SQLiteTasksDatabase;
+import com.novoda.todoapp.tasks.data.source.SqliteLocalTaskDataSource;
 import com.novoda.todoapp.tasks.service.Clock;
 import com.novoda.todoapp.tasks.service.PersistedTasksService;
 import com.novoda.todoapp.tasks.service.TasksService;
 import com.novoda.todoapp.tasks.service.TasksServiceAsync;
 
+import java.util.concurrent.TimeUnit;
+
 public class TodoApplication extends Application {
 
+    private static final long TASKS_TIME_TO_LIVE_MINUTES = 5;
+    private static final long TASKS_STALE_WHILE_REVALIDATE_MINUTES = TimeUnit.DAYS.toMinutes(1);
+
+    private SqliteLocalTaskDataSource localTaskDataSource;
+    private TasksService tasksService;
+
     //TODO use proper dependency injection
-    public static final TasksService TASKS_SERVICE = new TasksServiceAsync(
-            new PersistedTasksService(
-                    InMemoryLocalTaskDataSource.newInstance(),
-                    InMemoryRemoteTaskDataSource.newInstance(),
-                    new AlwaysOutOfDateTasksFreshnessChecker(),
-                    new Clock()
-            )
-    );
+    public static TasksService tasksService(Context context) {
+        return ((TodoApplication) context.getApplicationContext()).tasksService;
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        Clock clock = new Clock();
+        localTaskDataSource = SqliteLocalTaskDataSource.newInstance(new SQLiteTasksDatabase(this));
+        tasksService = new TasksServiceAsync(
+                new PersistedTasksService(
+                        localTaskDataSource,
+                        InMemoryRemoteTaskDataSource.newInstance(),
+                        new TtlTasksFreshnessChecker(clock, TASKS_TIME_TO_LIVE_MINUTES, TASKS_STALE_WHILE_REVALIDATE_MINUTES, TimeUnit.MINUTES),
+                        clock
+                )
+        );
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            localTaskDataSource.flush();
+        }
+    }
 
 }
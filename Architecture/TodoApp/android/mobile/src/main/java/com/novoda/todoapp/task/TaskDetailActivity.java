@@ -21,7 +21,7 @@ public class TaskDetailActivity extends BaseActivity {
         Id taskId = Id.from(getIntent().getStringExtra(AndroidNavigator.EXTRA_TASK_ID));
         taskPresenter = new TaskPresenter(
                 taskId,
-                TodoApplication.TASKS_SERVICE,
+                TodoApplication.tasksService(this),
                 ((TaskDisplayer) findViewById(R.id.content)),
                 new AndroidNavigator(this)
         );
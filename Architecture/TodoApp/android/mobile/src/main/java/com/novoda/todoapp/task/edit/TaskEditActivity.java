@@ -23,7 +23,7 @@ public class TaskEditActivity extends BaseActivity {
         Id taskId = getTaskIdFromExtras();
         taskPresenter = new TaskEditPresenter(
                 taskId,
-                TodoApplication.TASKS_SERVICE,
+                TodoApplication.tasksService(this),
                 ((TaskEditDisplayer) findViewById(R.id.content)),
                 new AndroidNavigator(this)
         );
@@ -27,7 +27,7 @@ public class TasksActivity extends BaseActivity {
         setContentView(R.layout.tasks_activity);
         tasksView = Views.findById(this, R.id.content);
         presenter = new TasksPresenter(
-                TodoApplication.TASKS_SERVICE,
+                TodoApplication.tasksService(this),
                 tasksView,
                 new AndroidTasksLoadingDisplayer(tasksView.getLoadingView(), tasksView.getContentView()),
                 new AndroidNavigator(this)
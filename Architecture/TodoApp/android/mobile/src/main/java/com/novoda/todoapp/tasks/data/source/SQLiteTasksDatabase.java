@@ -0,0 +1,133 @@
+package com.novoda.todoapp.tasks.data.source;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import com.novoda.data.SyncedData;
+import com.novoda.todoapp.task.data.model.Id;
+import com.novoda.todoapp.task.data.model.Task;
+import com.novoda.todoapp.tasks.data.model.Tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SQLiteTasksDatabase extends SQLiteOpenHelper implements TasksDatabase {
+
+    private static final String DATABASE_NAME = "tasks.db";
+    private static final int DATABASE_VERSION = 2;
+
+    public SQLiteTasksDatabase(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL(TasksTable.CREATE);
+        db.execSQL(TasksTable.CREATE_SYNC);
+    }
+
+    /**
+     * Migrates the tables in place, the tasks may hold writes the remote hasn't seen yet.
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            db.execSQL(TasksTable.CREATE_SYNC);
+        }
+    }
+
+    @Override
+    public List<SyncedData<Task>> loadTasks() {
+        Cursor cursor = getReadableDatabase().rawQuery(TasksTable.SELECT_ALL, null);
+        try {
+            List<SyncedData<Task>> tasks = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                tasks.add(TasksTable.fromRow(
+                        cursor.getString(0),
+                        cursor.getString(1),
+                        cursor.getString(2),
+                        cursor.getLong(3),
+                        cursor.getString(4),
+                        cursor.getLong(5)
+                ));
+            }
+            return tasks;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public long loadInSyncConfirmedAt() {
+        Cursor cursor = getReadableDatabase().rawQuery(TasksTable.SELECT_IN_SYNC_CONFIRMED_AT, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : Tasks.NEVER_CONFIRMED;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public void write(TasksWriteBatch batch) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        SQLiteStatement upsert = null;
+        SQLiteStatement delete = null;
+        SQLiteStatement confirm = null;
+        try {
+            upsert = db.compileStatement(TasksTable.UPSERT);
+            if (batch.replacement().isPresent()) {
+                db.execSQL(TasksTable.DELETE_ALL);
+                for (SyncedData<Task> task : batch.replacement().get().all()) {
+                    execute(upsert, TasksTable.toRow(task));
+                }
+            }
+            for (SyncedData<Task> task : batch.upserts()) {
+                execute(upsert, TasksTable.toRow(task));
+            }
+            if (!batch.deletions().isEmpty()) {
+                delete = db.compileStatement(TasksTable.DELETE);
+                for (Id id : batch.deletions()) {
+                    delete.bindString(1, id.value());
+                    delete.executeUpdateDelete();
+                }
+            }
+            if (batch.inSyncConfirmedAt().isPresent()) {
+                confirm = db.compileStatement(TasksTable.UPSERT_IN_SYNC_CONFIRMED_AT);
+                confirm.bindLong(1, batch.inSyncConfirmedAt().get());
+                confirm.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            close(upsert);
+            close(delete);
+            close(confirm);
+            db.endTransaction();
+        }
+    }
+
+    private static void close(SQLiteStatement statement) {
+        if (statement != null) {
+            statement.close();
+        }
+    }
+
+    private static void execute(SQLiteStatement statement, Object[] row) {
+        statement.clearBindings();
+        for (int i = 0; i < row.length; i++) {
+            Object value = row[i];
+            if (value == null) {
+                statement.bindNull(i + 1);
+            } else if (value instanceof Long) {
+                statement.bindLong(i + 1, (Long) value);
+            } else {
+                statement.bindString(i + 1, (String) value);
+            }
+        }
+        statement.executeInsert();
+    }
+
+}
@@ -4,15 +4,24 @@ import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.ViewGroup;
 
+import com.google.common.collect.ImmutableList;
+import com.novoda.data.SyncedData;
 import com.novoda.todoapp.R;
+import com.novoda.todoapp.task.data.model.Id;
+import com.novoda.todoapp.task.data.model.Task;
 import com.novoda.todoapp.tasks.data.model.Tasks;
+import com.novoda.todoapp.tasks.data.model.TasksDelta;
 import com.novoda.todoapp.tasks.displayer.TasksActionListener;
 
+/**
+ * Binds rows from the snapshot of the tasks it was last updated with, only notifying the rows that changed.
+ */
 public class TasksAdapter extends RecyclerView.Adapter<TaskViewHolder> {
 
     private final LayoutInflater layoutInflater;
 
     private Tasks tasks = Tasks.empty();
+    private ImmutableList<SyncedData<Task>> snapshot = ImmutableList.of();
     private TasksActionListener tasksActionListener;
 
     public TasksAdapter(LayoutInflater layoutInflater) {
@@ -25,8 +34,63 @@ public class TasksAdapter extends RecyclerView.Adapter<TaskViewHolder> {
     }
 
     public void update(Tasks tasks) {
+        TasksDelta delta = TasksDelta.between(this.tasks, tasks);
+        ImmutableList<SyncedData<Task>> previousSnapshot = snapshot;
         this.tasks = tasks;
-        notifyDataSetChanged();
+        this.snapshot = tasks.all();
+        if (delta.isEmpty()) {
+            return;
+        }
+        if (keepsOrderOfRemainingTasks(previousSnapshot, snapshot, delta)) {
+            notifyItemsChanged(previousSnapshot, delta);
+        } else {
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Tasks are listed in the order of their ids' hashes, tasks with colliding hashes in the order they were added.
+     */
+    private static boolean keepsOrderOfRemainingTasks(
+            ImmutableList<SyncedData<Task>> previousSnapshot,
+            ImmutableList<SyncedData<Task>> snapshot,
+            TasksDelta delta) {
+        int position = 0;
+        for (SyncedData<Task> previousTask : previousSnapshot) {
+            Id id = previousTask.data().id();
+            if (delta.removed().contains(id)) {
+                continue;
+            }
+            while (delta.inserted().contains(snapshot.get(position).data().id())) {
+                position++;
+            }
+            if (!id.equals(snapshot.get(position).data().id())) {
+                return false;
+            }
+            position++;
+        }
+        return true;
+    }
+
+    private void notifyItemsChanged(ImmutableList<SyncedData<Task>> previousSnapshot, TasksDelta delta) {
+        if (!delta.removed().isEmpty()) {
+            for (int position = previousSnapshot.size() - 1; position >= 0; position--) {
+                if (delta.removed().contains(previousSnapshot.get(position).data().id())) {
+                    notifyItemRemoved(position);
+                }
+            }
+        }
+        if (delta.inserted().isEmpty() && delta.changed().isEmpty()) {
+            return;
+        }
+        for (int position = 0; position < snapshot.size(); position++) {
+            Id id = snapshot.get(position).data().id();
+            if (delta.inserted().contains(id)) {
+                notifyItemInserted(position);
+            } else if (delta.changed().contains(id)) {
+                notifyItemChanged(position);
+            }
+        }
     }
 
     @Override
@@ -36,12 +100,12 @@ public class TasksAdapter extends RecyclerView.Adapter<TaskViewHolder> {
 
     @Override
     public void onBindViewHolder(TaskViewHolder holder, int position) {
-        holder.bind(tasks.all().get(position), tasksActionListener);
+        holder.bind(snapshot.get(position), tasksActionListener);
     }
 
     @Override
     public int getItemCount() {
-        return tasks.size();
+        return snapshot.size();
     }
 
 }
@@ -0,0 +1,156 @@
+package com.novoda.comparereports.benchmark;
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.novoda.comparereports.CheckstyleReader;
+import com.novoda.comparereports.IssueDiff;
+import com.novoda.comparereports.IssueIndex;
+import com.novoda.comparereports.IssueKey;
+import com.novoda.comparereports.PathProcessor;
+import com.novoda.comparereports.bean.FixedIssues;
+import com.novoda.comparereports.bean.IntroducedIssues;
+import com.novoda.comparereports.bean.Report;
+import com.novoda.comparereports.bean.ReportIssue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import groovy.lang.Closure;
+
+/**
+ * Measures each phase of a comparison on its own: streaming a report, making its paths relative, diffing it against
+ * the main branch index and writing the result back out as a checkstyle report.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompareReportsBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int issueCount;
+
+    @Param({"1", "20", "200"})
+    public int issuesPerFile;
+
+    private File mainBranchReport;
+    private File currentBranchReport;
+    private PathProcessor currentPathProcessor;
+    private String[] currentAbsolutePaths;
+
+    private IssueIndex mainBranchIndex;
+    private List<IssueKey> currentKeys;
+    private List<ReportIssue> currentIssues;
+
+    private Report currentAsReport;
+    private XmlMapper mapper;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        mainBranchReport = File.createTempFile("checkstyle-main", ".xml");
+        currentBranchReport = File.createTempFile("checkstyle-current", ".xml");
+        SyntheticReports.writeMainBranch(mainBranchReport, issueCount, issuesPerFile);
+        SyntheticReports.writeCurrentBranch(currentBranchReport, issueCount, issuesPerFile);
+
+        currentPathProcessor = new PathProcessor(SyntheticReports.CURRENT_BASE_DIR);
+        currentAbsolutePaths = new String[issueCount];
+        for (int i = 0; i < issueCount; i++) {
+            currentAbsolutePaths[i] = SyntheticReports.absolutePathOf(SyntheticReports.CURRENT_BASE_DIR, i / issuesPerFile);
+        }
+
+        CheckstyleReader reader = new CheckstyleReader();
+        mainBranchIndex = reader.index(mainBranchReport, new PathProcessor(SyntheticReports.MAIN_BASE_DIR));
+        currentKeys = new ArrayList<IssueKey>(issueCount);
+        currentIssues = new ArrayList<ReportIssue>(issueCount);
+        reader.read(currentBranchReport, currentPathProcessor, new Collector(currentKeys, currentIssues));
+
+        currentAsReport = new Report(new FixedIssues(), new IntroducedIssues(currentIssues));
+        mapper = new XmlMapper();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mainBranchReport.delete();
+        currentBranchReport.delete();
+    }
+
+    @Benchmark
+    public int parse(Blackhole blackhole) {
+        return new CheckstyleReader().read(currentBranchReport, currentPathProcessor, new Consumer(blackhole));
+    }
+
+    @Benchmark
+    public void relativize(Blackhole blackhole) {
+        for (String absolutePath : currentAbsolutePaths) {
+            blackhole.consume(currentPathProcessor.relativize(absolutePath));
+        }
+    }
+
+    @Benchmark
+    public Report diff() {
+        IssueDiff diff = new IssueDiff(mainBranchIndex);
+        for (int i = 0; i < currentKeys.size(); i++) {
+            diff.accept(currentKeys.get(i), currentIssues.get(i));
+        }
+        return new Report(diff.fixedIssues(), diff.getIntroducedIssues());
+    }
+
+    @Benchmark
+    public String serialize() throws Exception {
+        return mapper.writeValueAsString(currentAsReport.introducedCheckstyle());
+    }
+
+    private static class Consumer extends Closure<Void> {
+
+        private final Blackhole blackhole;
+
+        Consumer(Blackhole blackhole) {
+            super(null);
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public Void call(Object... args) {
+            blackhole.consume(args[1]);
+            return null;
+        }
+    }
+
+    private static class Collector extends Closure<Void> {
+
+        private final List<IssueKey> keys;
+        private final List<ReportIssue> issues;
+
+        Collector(List<IssueKey> keys, List<ReportIssue> issues) {
+            super(null);
+            this.keys = keys;
+            this.issues = issues;
+        }
+
+        @Override
+        public Void call(Object... args) {
+            keys.add((IssueKey) args[0]);
+            issues.add((ReportIssue) args[1]);
+            return null;
+        }
+    }
+
+}
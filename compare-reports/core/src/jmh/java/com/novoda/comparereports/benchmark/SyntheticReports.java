@@ -0,0 +1,99 @@
+package com.novoda.comparereports.benchmark;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Writes checkstyle reports made up of a given number of issues spread over files holding a given number of issues
+ * each. A main branch and a current branch report written with the same size and density share most of their issues,
+ * the current branch one having moved, added or dropped a few of them, like a typical feature branch does.
+ */
+final class SyntheticReports {
+
+    static final String MAIN_BASE_DIR = "/synthetic/main";
+    static final String CURRENT_BASE_DIR = "/synthetic/current";
+
+    private static final int CHURN_EVERY = 10;
+    private static final long SEED = 42L;
+
+    private static final String[] SEVERITIES = {"error", "warning", "info"};
+    private static final String[] SOURCES = {
+            "com.puppycrawl.tools.checkstyle.checks.whitespace.WhitespaceAroundCheck",
+            "com.puppycrawl.tools.checkstyle.checks.sizes.LineLengthCheck",
+            "com.puppycrawl.tools.checkstyle.checks.javadoc.JavadocMethodCheck",
+            "com.puppycrawl.tools.checkstyle.checks.coding.MagicNumberCheck",
+            "com.puppycrawl.tools.checkstyle.checks.imports.UnusedImportsCheck",
+            "com.puppycrawl.tools.checkstyle.checks.naming.MemberNameCheck"
+    };
+
+    private SyntheticReports() {
+        throw new IllegalStateException("NonInstantiableClassException");
+    }
+
+    static void writeMainBranch(File report, int issueCount, int issuesPerFile) throws IOException {
+        write(report, MAIN_BASE_DIR, issueCount, issuesPerFile, false);
+    }
+
+    static void writeCurrentBranch(File report, int issueCount, int issuesPerFile) throws IOException {
+        write(report, CURRENT_BASE_DIR, issueCount, issuesPerFile, true);
+    }
+
+    static String absolutePathOf(String baseDir, int fileIndex) {
+        return baseDir + "/src/main/java/com/novoda/synthetic/package" + (fileIndex % 50) + "/Synthetic" + fileIndex + ".java";
+    }
+
+    private static void write(File report, String baseDir, int issueCount, int issuesPerFile, boolean withChurn) throws IOException {
+        OutputStream output = new BufferedOutputStream(new FileOutputStream(report));
+        try {
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output, "UTF-8");
+            writeDocument(writer, baseDir, issueCount, issuesPerFile, withChurn);
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static void writeDocument(XMLStreamWriter writer, String baseDir, int issueCount, int issuesPerFile, boolean withChurn)
+            throws XMLStreamException {
+        Random random = new Random(SEED);
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.writeStartElement("checkstyle");
+        writer.writeAttribute("version", "5.7");
+        for (int issue = 0; issue < issueCount; issue++) {
+            if (issue % issuesPerFile == 0) {
+                if (issue > 0) {
+                    writer.writeEndElement();
+                }
+                writer.writeStartElement("file");
+                writer.writeAttribute("name", absolutePathOf(baseDir, issue / issuesPerFile));
+            }
+            int line = 1 + issue % issuesPerFile * 3;
+            int column = 1 + random.nextInt(120);
+            int check = random.nextInt(SOURCES.length);
+            if (withChurn && issue % CHURN_EVERY == 0) {
+                line += 1;
+            }
+            writer.writeEmptyElement("error");
+            writer.writeAttribute("line", String.valueOf(line));
+            writer.writeAttribute("column", String.valueOf(column));
+            writer.writeAttribute("severity", SEVERITIES[check % SEVERITIES.length]);
+            writer.writeAttribute("message", "Synthetic issue " + (issue % 1000) + " raised by check " + check + ".");
+            writer.writeAttribute("source", SOURCES[check]);
+        }
+        if (issueCount > 0) {
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+        writer.writeEndDocument();
+    }
+
+}
@@ -0,0 +1,193 @@
+package com.novoda.comparereports
+
+import com.novoda.comparereports.bean.ReportFile
+import com.novoda.comparereports.bean.ReportIssue
+
+/**
+ * Keeps the main branch issue indexes on disk, keyed by the commit they were generated from and the settings they were
+ * checked with, so that the main branch only needs to be fetched and checked again when either changes.
+ *
+ * The file starts with a table of every distinct string in the indexes (report names, paths, messages, severities and
+ * sources), after which each issue is written as a handful of var-ints pointing into that table.
+ */
+class BaselineCache {
+
+    private static final int MAGIC = 0x43524243 // CRBC
+    private static final int VERSION = 2
+    private static final String CHARSET = 'UTF-8'
+
+    final java.io.File file
+
+    BaselineCache(java.io.File file) {
+        this.file = file
+    }
+
+    /**
+     * A file that can't be decoded, because it was truncated or corrupted, counts as nothing cached.
+     *
+     * @return the indexes keyed by report file name, or {@code null} if nothing was cached for that key
+     */
+    Map<String, IssueIndex> read(String key) {
+        if (!file.isFile()) {
+            return null
+        }
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))
+        try {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION || readString(input) != key) {
+                return null
+            }
+            readIndexes(input)
+        } catch (Exception ignored) {
+            null
+        } finally {
+            input.close()
+        }
+    }
+
+    void write(String key, Map<String, IssueIndex> indexes) {
+        file.parentFile.mkdirs()
+        java.io.File tempFile = new java.io.File(file.parentFile, file.name + '.tmp')
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))
+        try {
+            output.writeInt(MAGIC)
+            output.writeInt(VERSION)
+            writeString(output, key)
+            writeIndexes(output, indexes)
+        } finally {
+            output.close()
+        }
+        file.delete()
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Couldn't move $tempFile to $file")
+        }
+    }
+
+    private static Map<String, IssueIndex> readIndexes(DataInputStream input) {
+        String[] strings = new String[readCount(input) + 1]
+        for (int i = 1; i < strings.length; i++) {
+            strings[i] = readString(input)
+        }
+
+        Map<String, ReportFile> reportFiles = new HashMap<String, ReportFile>()
+        Map<String, IssueIndex> indexes = new LinkedHashMap<String, IssueIndex>()
+        int reportCount = readCount(input)
+        for (int i = 0; i < reportCount; i++) {
+            IssueIndex index = new IssueIndex()
+            indexes.put(strings[readVarInt(input)], index)
+            int issueCount = readCount(input)
+            for (int j = 0; j < issueCount; j++) {
+                String fileName = strings[readVarInt(input)]
+                ReportFile reportFile = reportFiles.get(fileName)
+                if (reportFile == null) {
+                    reportFile = new ReportFile(fileName)
+                    reportFiles.put(fileName, reportFile)
+                }
+                Integer line = readOptionalInt(input)
+                Integer column = readOptionalInt(input)
+                String severity = strings[readVarInt(input)]
+                String message = strings[readVarInt(input)]
+                String source = strings[readVarInt(input)]
+                index.add(new ReportIssue(reportFile, line, column, severity, message, source))
+            }
+        }
+        indexes
+    }
+
+    private static void writeIndexes(DataOutputStream output, Map<String, IssueIndex> indexes) {
+        Map<String, Integer> stringIds = new LinkedHashMap<String, Integer>()
+        indexes.each { String reportName, IssueIndex index ->
+            idOf(stringIds, reportName)
+            index.eachIssue { ReportIssue issue ->
+                idOf(stringIds, issue.file.name)
+                idOf(stringIds, issue.severity)
+                idOf(stringIds, issue.message)
+                idOf(stringIds, issue.source)
+            }
+        }
+
+        writeVarInt(output, stringIds.size())
+        stringIds.keySet().each { String string -> writeString(output, string) }
+
+        writeVarInt(output, indexes.size())
+        indexes.each { String reportName, IssueIndex index ->
+            writeVarInt(output, idOf(stringIds, reportName))
+            writeVarInt(output, index.size())
+            index.eachIssue { ReportIssue issue ->
+                writeVarInt(output, idOf(stringIds, issue.file.name))
+                writeOptionalInt(output, issue.line)
+                writeOptionalInt(output, issue.column)
+                writeVarInt(output, idOf(stringIds, issue.severity))
+                writeVarInt(output, idOf(stringIds, issue.message))
+                writeVarInt(output, idOf(stringIds, issue.source))
+            }
+        }
+    }
+
+    /**
+     * Id 0 stands for {@code null}, so the ids of the strings in the table start from 1.
+     */
+    private static int idOf(Map<String, Integer> stringIds, String string) {
+        if (string == null) {
+            return 0
+        }
+        Integer id = stringIds.get(string)
+        if (id == null) {
+            id = stringIds.size() + 1
+            stringIds.put(string, id)
+        }
+        id
+    }
+
+    private static Integer readOptionalInt(DataInputStream input) {
+        int value = readVarInt(input)
+        value == 0 ? null : value - 1
+    }
+
+    private static void writeOptionalInt(DataOutputStream output, Number value) {
+        writeVarInt(output, value == null ? 0 : value.intValue() + 1)
+    }
+
+    private static int readVarInt(DataInputStream input) {
+        int value = 0
+        int shift = 0
+        int b
+        while (((b = input.readUnsignedByte()) & 0x80) != 0) {
+            value |= (b & 0x7F) << shift
+            shift += 7
+        }
+        value | (b << shift)
+    }
+
+    private static void writeVarInt(DataOutputStream output, int value) {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80)
+            value >>>= 7
+        }
+        output.writeByte(value)
+    }
+
+    /**
+     * Every item counted takes at least a byte, so a count over what's left of the file means it's corrupt rather than
+     * something worth allocating for.
+     */
+    private static int readCount(DataInputStream input) {
+        int count = readVarInt(input)
+        if (count < 0 || count > input.available()) {
+            throw new IOException("Corrupt baseline cache, $count items left but only ${input.available()} bytes")
+        }
+        count
+    }
+
+    private static String readString(DataInputStream input) {
+        byte[] bytes = new byte[readCount(input)]
+        input.readFully(bytes)
+        new String(bytes, CHARSET)
+    }
+
+    private static void writeString(DataOutputStream output, String string) {
+        byte[] bytes = string.getBytes(CHARSET)
+        writeVarInt(output, bytes.length)
+        output.write(bytes)
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.novoda.comparereports
+
+import com.novoda.comparereports.bean.ReportFile
+import com.novoda.comparereports.bean.ReportIssue
+
+import javax.xml.stream.XMLInputFactory
+import javax.xml.stream.XMLStreamConstants
+import javax.xml.stream.XMLStreamReader
+
+import groovy.transform.CompileStatic
+
+/**
+ * Streams a checkstyle XML report one {@code <file>/<error>} event at a time, handing every issue to a callback
+ * as soon as it is read. Nothing but the issue being read is kept around, so the memory used depends on what the
+ * callback keeps rather than on the size of the report.
+ */
+@CompileStatic
+class CheckstyleReader {
+
+    private static final String ELEMENT_FILE = 'file'
+    private static final String ELEMENT_ERROR = 'error'
+
+    private final XMLInputFactory factory
+
+    CheckstyleReader() {
+        factory = XMLInputFactory.newInstance()
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false)
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false)
+    }
+
+    IssueIndex index(java.io.File report, PathProcessor pathProcessor) {
+        IssueIndex index = new IssueIndex()
+        read(report, pathProcessor) { IssueKey key, ReportIssue issue -> index.add(key, issue) }
+        index
+    }
+
+    /**
+     * Calls {@code onIssue} with the key and the issue for every error in the report, in document order.
+     *
+     * @return the number of issues read
+     */
+    int read(java.io.File report, PathProcessor pathProcessor, Closure onIssue) {
+        InputStream input = new BufferedInputStream(new FileInputStream(report))
+        XMLStreamReader reader = factory.createXMLStreamReader(input)
+        try {
+            readEvents(reader, pathProcessor, onIssue)
+        } finally {
+            reader.close()
+            input.close()
+        }
+    }
+
+    private static int readEvents(XMLStreamReader reader, PathProcessor pathProcessor, Closure onIssue) {
+        Map<String, String> pool = new HashMap<String, String>()
+        ReportFile currentFile = null
+        int count = 0
+        while (reader.hasNext()) {
+            if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                continue
+            }
+            String element = reader.localName
+            if (ELEMENT_FILE == element) {
+                currentFile = new ReportFile(pathProcessor.relativize(reader.getAttributeValue(null, 'name')))
+            } else if (ELEMENT_ERROR == element && currentFile != null) {
+                ReportIssue issue = new ReportIssue(
+                        currentFile,
+                        toInteger(reader.getAttributeValue(null, 'line')),
+                        toInteger(reader.getAttributeValue(null, 'column')),
+                        pooled(pool, reader.getAttributeValue(null, 'severity')),
+                        reader.getAttributeValue(null, 'message'),
+                        pooled(pool, reader.getAttributeValue(null, 'source'))
+                )
+                onIssue.call(IssueKey.of(issue), issue)
+                count++
+            }
+        }
+        count
+    }
+
+    private static Integer toInteger(String value) {
+        value == null ? null : Integer.valueOf(value)
+    }
+
+    /**
+     * Severities and sources come from a handful of checks but are repeated on every issue, so they are shared
+     * instead of keeping one copy per issue.
+     */
+    private static String pooled(Map<String, String> pool, String value) {
+        if (value == null) {
+            return null
+        }
+        String pooled = pool.get(value)
+        if (pooled == null) {
+            pool.put(value, value)
+            return value
+        }
+        pooled
+    }
+
+}
@@ -1,9 +1,6 @@
 package com.novoda.comparereports
 
-import com.fasterxml.jackson.databind.DeserializationFeature
-import com.fasterxml.jackson.databind.ObjectMapper
-import com.fasterxml.jackson.dataformat.xml.XmlMapper
-import com.novoda.comparereports.bean.Checkstyle
+import com.novoda.comparereports.bean.DiffMetrics
 import com.novoda.comparereports.bean.FixedIssues
 import com.novoda.comparereports.bean.IntroducedIssues
 import com.novoda.comparereports.bean.Report
@@ -11,52 +8,102 @@ import org.gradle.api.DefaultTask
 import org.gradle.api.file.RelativePath
 import org.gradle.api.tasks.TaskAction
 
+import java.security.MessageDigest
+
 public class CompareReportsTask extends DefaultTask {
 
     // TODO: this class should be split into smaller separate gradle tasks
 
     private static final String DESTINATION_PATH = "build/reports"
+    private static final String BASELINE_CACHE_PATH = ".gradle/compare-reports"
     public static final String PROPERTY_SHOW_FIXED = 'showFixed'
-
-    final ObjectMapper mapper
+    public static final String PROPERTY_REFRESH_BASELINE = 'refreshBaseline'
 
     ReportsExtension extension
 
-    CompareReportsTask() {
-        mapper = new XmlMapper()
-        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-    }
+    private final DiffMetrics baselineMetrics = new DiffMetrics()
 
     @TaskAction
     def compareReports() {
         String compareReportsDir = "$DESTINATION_PATH/$project.name"
 
-        cleanOldMainReports(compareReportsDir)
-        cloneRepo(compareReportsDir)
-        generateMainBranchReports(compareReportsDir)
+        Map<String, IssueIndex> mainBranchIndexes = getMainBranchIndexes(compareReportsDir)
 
-        def currentBranchFiles = project.fileTree(project.projectDir).exclude(compareReportsDir).include(extension?.checkstyleFiles)
-        def mainBranchFiles = project.fileTree(compareReportsDir).include(extension?.checkstyleFiles)
+        List<File> currentBranchFiles = sortedFiles(project.fileTree(project.projectDir).exclude(compareReportsDir).include(extension?.checkstyleFiles))
 
-        List<Report> reports = currentBranchFiles.collect { File currentBranchFile ->
+        List<Report> reports = workerPool().collect(currentBranchFiles) { File currentBranchFile ->
             String fileName = RelativePath.parse(true, currentBranchFile.absolutePath).lastName
-            File mainBranchFile = mainBranchFiles.find { File mainBranchFile -> mainBranchFile.name.equals(fileName) }
-            generateReport(mainBranchFile, currentBranchFile, compareReportsDir)
+            IssueIndex mainBranchIndex = mainBranchIndexes.get(fileName) ?: new IssueIndex()
+            generateReport(mainBranchIndex, currentBranchFile)
         }
         printHumanReadable(reports)
     }
 
+    /**
+     * The main branch only gets fetched and checked again when its head has moved, or the reports to compare or how they
+     * are checked have changed, since the cached baseline was made.
+     */
+    Map<String, IssueIndex> getMainBranchIndexes(String compareReportsDir) {
+        String remoteUri = getGitRemoteUri()
+        String mainBranchSha = getMainBranchSha(remoteUri)
+        String settingsHash = baselineSettingsHash()
+        BaselineCache cache = new BaselineCache(new File(project.rootDir, "$BASELINE_CACHE_PATH/${project.name}.bin"))
+
+        if (!project.hasProperty(PROPERTY_REFRESH_BASELINE)) {
+            Map<String, IssueIndex> cachedIndexes = baselineMetrics.measure('read baseline cache') { cache.read("$mainBranchSha:$settingsHash") }
+            if (cachedIndexes != null) {
+                logger.info("Reusing the main branch baseline for $mainBranchSha")
+                return cachedIndexes
+            }
+        }
+
+        updateRepo(compareReportsDir, remoteUri)
+        generateMainBranchReports(compareReportsDir)
+
+        Map<String, IssueIndex> mainBranchIndexes = indexMainBranchReports(compareReportsDir)
+        try {
+            cache.write("${getCheckedOutSha(compareReportsDir)}:$settingsHash", mainBranchIndexes)
+        } catch (IOException e) {
+            logger.warn("Couldn't cache the main branch baseline: ${e.message}")
+        }
+        mainBranchIndexes
+    }
+
+    /**
+     * Hashes the report patterns along with the checkstyle version and configuration files of the project.
+     */
+    String baselineSettingsHash() {
+        MessageDigest digest = MessageDigest.getInstance('SHA-1')
+        (extension?.checkstyleFiles ?: []).each { String pattern -> digest.update("$pattern\n".getBytes('UTF-8')) }
+        String toolVersion = project.extensions.findByName('checkstyle')?.toolVersion
+        digest.update("${toolVersion}\n".getBytes('UTF-8'))
+        project.tasks.withType(org.gradle.api.plugins.quality.Checkstyle).each { task ->
+            File configFile = task.configFile
+            if (configFile?.isFile()) {
+                digest.update(configFile.bytes)
+            }
+        }
+        digest.digest().collect { byte b -> String.format('%02x', b) }.join()
+    }
+
+    def updateRepo(String compareReportsDir, String remoteUri) {
+        if (new File(project.file(compareReportsDir), '.git').isDirectory()) {
+            fetchRepo(compareReportsDir)
+        } else {
+            cleanOldMainReports(compareReportsDir)
+            cloneRepo(compareReportsDir, remoteUri)
+        }
+    }
+
     def cleanOldMainReports(compareReportsDir) {
-        // TODO: This could be done in a better way. i.e. git pull instead of just dropping everything
         project.exec {
             commandLine "rm"
             args '-rf', compareReportsDir
         }
     }
 
-    def cloneRepo(compareReportsDir) {
+    def cloneRepo(compareReportsDir, String remoteUri) {
         // TODO: I believe this could be done using a plugin or a lib
-        String remoteUri = getGitRemoteUri()
         project.exec {
             commandLine "git"
             args 'clone', '-q', remoteUri, compareReportsDir
@@ -66,6 +113,19 @@ public class CompareReportsTask extends DefaultTask {
         }
     }
 
+    def fetchRepo(compareReportsDir) {
+        project.exec {
+            workingDir compareReportsDir
+            commandLine "git"
+            args 'fetch', '-q', 'origin', mainBranchRef()
+        }
+        project.exec {
+            workingDir compareReportsDir
+            commandLine "git"
+            args 'checkout', '-q', '-f', 'FETCH_HEAD'
+        }
+    }
+
     String getGitRemoteUri() {
         def stdout = new ByteArrayOutputStream()
         project.exec {
@@ -76,6 +136,31 @@ public class CompareReportsTask extends DefaultTask {
         stdout.toString().readLines()[0]
     }
 
+    String getMainBranchSha(String remoteUri) {
+        def stdout = new ByteArrayOutputStream()
+        project.exec {
+            commandLine "git"
+            args 'ls-remote', remoteUri, mainBranchRef()
+            standardOutput = stdout
+        }
+        stdout.toString().readLines()[0]?.split('\\s+')?.getAt(0)
+    }
+
+    String getCheckedOutSha(compareReportsDir) {
+        def stdout = new ByteArrayOutputStream()
+        project.exec {
+            workingDir compareReportsDir
+            commandLine "git"
+            args 'rev-parse', 'HEAD'
+            standardOutput = stdout
+        }
+        stdout.toString().trim()
+    }
+
+    private String mainBranchRef() {
+        extension.mainBranchName.isEmpty() ? 'HEAD' : "refs/heads/${extension.mainBranchName}"
+    }
+
     def generateMainBranchReports(compareReportsDir) {
         // TODO: This is ugly (running gradle from gradle) but is there another way of doing it?
         project.exec {
@@ -85,15 +170,31 @@ public class CompareReportsTask extends DefaultTask {
         }
     }
 
+    Map<String, IssueIndex> indexMainBranchReports(String compareReportsDir) {
+        List<File> mainBranchFiles = sortedFiles(project.fileTree(compareReportsDir).include(extension?.checkstyleFiles))
+        String mainCheckstyleBaseDir = project.file(compareReportsDir).absolutePath
+
+        List<IssueIndex> mainBranchIndexes = workerPool().collect(mainBranchFiles) { File mainBranchFile ->
+            baselineMetrics.measure('index main') { new CheckstyleReader().index(mainBranchFile, new PathProcessor(mainCheckstyleBaseDir)) }
+        }
+
+        Map<String, IssueIndex> indexes = new LinkedHashMap<String, IssueIndex>()
+        mainBranchFiles.eachWithIndex { File mainBranchFile, int i -> indexes.put(mainBranchFile.name, mainBranchIndexes[i]) }
+        indexes
+    }
+
+    private static List<File> sortedFiles(files) {
+        files.files.sort { File file -> file.absolutePath }
+    }
 
-    Report generateReport(File mainBranchFile, File currentBranchFile, String compareReportsDir) {
-        def mainCheckstyle = mapper.readValue(mainBranchFile, Checkstyle.class)
-        def currentCheckstyle = mapper.readValue(currentBranchFile, Checkstyle.class)
+    private WorkerPool workerPool() {
+        new WorkerPool(extension?.maxParallelReports ?: 1)
+    }
 
+    Report generateReport(IssueIndex mainBranchIndex, File currentBranchFile) {
         String currentCheckstyleBaseDir = project.projectDir.absolutePath
-        String mainCheckstyleBaseDir = new File(project.projectDir, compareReportsDir).absolutePath
 
-        Reporter.generate(mainCheckstyle, currentCheckstyle, mainCheckstyleBaseDir, currentCheckstyleBaseDir)
+        Reporter.generate(mainBranchIndex, currentBranchFile, currentCheckstyleBaseDir)
     }
 
     def printHumanReadable(List<Report> reports) {
@@ -104,8 +205,13 @@ public class CompareReportsTask extends DefaultTask {
             println fixed.forHumans()
         }
         println introduced.forHumans()
+        printMetrics(reports)
     }
 
+    def printMetrics(List<Report> reports) {
+        DiffMetrics metrics = reports.inject(baselineMetrics) { DiffMetrics total, Report report -> total + report.metrics }
+        logger.info(metrics.forHumans())
+    }
 
-}
 
+}
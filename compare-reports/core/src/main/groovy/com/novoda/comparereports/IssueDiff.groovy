@@ -0,0 +1,37 @@
+package com.novoda.comparereports
+
+import com.novoda.comparereports.bean.FixedIssues
+import com.novoda.comparereports.bean.IntroducedIssues
+import com.novoda.comparereports.bean.ReportIssue
+
+import groovy.transform.CompileStatic
+
+/**
+ * Diffs a stream of current branch issues against the main branch index: issues the index doesn't know about are
+ * introduced, and whatever the index holds that never showed up in the stream has been fixed.
+ */
+@CompileStatic
+class IssueDiff {
+
+    private final IssueIndex mainBranchIndex
+    private final Set<IssueKey> matchedKeys = new HashSet<IssueKey>()
+
+    final IntroducedIssues introducedIssues = new IntroducedIssues()
+
+    IssueDiff(IssueIndex mainBranchIndex) {
+        this.mainBranchIndex = mainBranchIndex
+    }
+
+    void accept(IssueKey key, ReportIssue issue) {
+        if (mainBranchIndex.contains(key)) {
+            matchedKeys.add(key)
+        } else {
+            introducedIssues.add(issue)
+        }
+    }
+
+    FixedIssues fixedIssues() {
+        new FixedIssues(mainBranchIndex.issuesExcept(matchedKeys))
+    }
+
+}
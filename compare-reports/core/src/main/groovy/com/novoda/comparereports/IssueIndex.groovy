@@ -0,0 +1,63 @@
+package com.novoda.comparereports
+
+import com.novoda.comparereports.bean.ReportIssue
+
+import groovy.transform.CompileStatic
+
+/**
+ * Hash index of report issues keyed by {@link IssueKey}, so that telling which issues of a report are missing from
+ * another one costs a single pass over each report instead of comparing every issue against every other one.
+ * Insertion order is kept, so the issues come out in the same order they appear in the report.
+ */
+@CompileStatic
+class IssueIndex {
+
+    private final Map<IssueKey, List<ReportIssue>> issuesByKey = new LinkedHashMap<IssueKey, List<ReportIssue>>()
+    private int size
+
+    void add(ReportIssue issue) {
+        add(IssueKey.of(issue), issue)
+    }
+
+    void add(IssueKey key, ReportIssue issue) {
+        List<ReportIssue> issues = issuesByKey.get(key)
+        if (issues == null) {
+            issues = new ArrayList<ReportIssue>(1)
+            issuesByKey.put(key, issues)
+        }
+        issues.add(issue)
+        size++
+    }
+
+    boolean contains(IssueKey key) {
+        issuesByKey.containsKey(key)
+    }
+
+    List<ReportIssue> issuesExcept(Set<IssueKey> keys) {
+        List<ReportIssue> missing = new ArrayList<ReportIssue>()
+        for (Map.Entry<IssueKey, List<ReportIssue>> entry : issuesByKey.entrySet()) {
+            if (!keys.contains(entry.key)) {
+                missing.addAll(entry.value)
+            }
+        }
+        missing
+    }
+
+    void eachIssue(Closure closure) {
+        for (List<ReportIssue> issues : issuesByKey.values()) {
+            issues.each(closure)
+        }
+    }
+
+    int size() {
+        size
+    }
+
+    @Override
+    public String toString() {
+        return "IssueIndex{" +
+                "keys=" + issuesByKey.size() +
+                ", size=" + size +
+                '}';
+    }
+}
@@ -0,0 +1,70 @@
+package com.novoda.comparereports
+
+import com.novoda.comparereports.bean.ReportIssue
+
+import groovy.transform.CompileStatic
+
+/**
+ * Identity of an issue across two reports: the relative file, the check that raised it, its message and its line.
+ * Column and severity are left out so that reformatting a line or tweaking a rule's severity doesn't show up as
+ * one issue fixed and another one introduced.
+ */
+@CompileStatic
+final class IssueKey {
+
+    final String fileName
+    final String source
+    final String message
+    final int line
+
+    private final int hash
+
+    IssueKey(String fileName, String source, String message, int line) {
+        this.fileName = fileName
+        this.source = source
+        this.message = message
+        this.line = line
+        this.hash = computeHash()
+    }
+
+    static IssueKey of(ReportIssue issue) {
+        new IssueKey(issue.file.name, issue.source, issue.message, issue.line == null ? -1 : issue.line.intValue())
+    }
+
+    private int computeHash() {
+        int result = fileName != null ? fileName.hashCode() : 0
+        result = 31 * result + (source != null ? source.hashCode() : 0)
+        result = 31 * result + (message != null ? message.hashCode() : 0)
+        result = 31 * result + line
+        return result
+    }
+
+    boolean equals(o) {
+        if (this.is(o)) return true
+        if (o == null || getClass() != o.class) return false
+
+        IssueKey that = (IssueKey) o
+
+        if (hash != that.hash) return false
+        if (line != that.line) return false
+        if (fileName != that.fileName) return false
+        if (source != that.source) return false
+        if (message != that.message) return false
+
+        return true
+    }
+
+    int hashCode() {
+        return hash
+    }
+
+    @Override
+    public String toString() {
+        return "IssueKey{" +
+                "fileName='" + fileName + '\'' +
+                ", source='" + source + '\'' +
+                ", message='" + message + '\'' +
+                ", line=" + line +
+                '}';
+    }
+}
@@ -1,8 +1,8 @@
 package com.novoda.comparereports
 
-import com.novoda.comparereports.bean.ReportFile
-import com.novoda.comparereports.bean.ReportIssue
+import groovy.transform.CompileStatic
 
+@CompileStatic
 class PathProcessor {
 
     final String baseDir
@@ -11,14 +11,10 @@ class PathProcessor {
         this.baseDir = baseDir
     }
 
-    List<ReportIssue> process(List<ReportIssue> reportIssues) {
-        reportIssues.collect { ReportIssue issue ->
-            String fileNameUsingRelativePath = getRelativePath(issue)
-            new ReportIssue(new ReportFile(fileNameUsingRelativePath), issue.line, issue.column, issue.severity, issue.message, issue.source)
+    String relativize(String fileName) {
+        if (fileName == null || !fileName.startsWith(baseDir + '/')) {
+            return fileName
         }
-    }
-
-    private String getRelativePath(ReportIssue issue) {
-        issue.file.name.substring(baseDir.length() + 1) // + 1 because it shouldn't include the first '/'
+        fileName.substring(baseDir.length() + 1) // + 1 because it shouldn't include the first '/'
     }
 }
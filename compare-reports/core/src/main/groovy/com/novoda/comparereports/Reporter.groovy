@@ -4,22 +4,19 @@ import com.novoda.comparereports.bean.*
 
 class Reporter {
 
-    static Report generate(Checkstyle mainCheckstyle, Checkstyle currentCheckstyle, String mainCheckstyleBaseDir, String currentCheckstyleBaseDir) {
-        List<ReportIssue> mainBranchIssues = new PathProcessor(mainCheckstyleBaseDir).process(from(mainCheckstyle))
-        List<ReportIssue> currentBranchIssues = new PathProcessor(currentCheckstyleBaseDir).process(from(currentCheckstyle))
+    static Report generate(IssueIndex mainBranchIndex, java.io.File currentBranchReport, String currentCheckstyleBaseDir) {
+        return compare(mainBranchIndex, new CheckstyleReader(), currentBranchReport, new PathProcessor(currentCheckstyleBaseDir), new DiffMetrics())
+    }
 
-        FixedIssues fixedIssues = mainBranchIssues.findAll { !currentBranchIssues.contains(it) } ?: new FixedIssues()
-        IntroducedIssues introducedIssues = currentBranchIssues.findAll { !mainBranchIssues.contains(it) } ?: new IntroducedIssues()
+    static Report compare(IssueIndex mainBranchIndex, CheckstyleReader reader, java.io.File currentBranchReport, PathProcessor currentPathProcessor, DiffMetrics metrics) {
+        IssueDiff diff = new IssueDiff(mainBranchIndex)
 
-        return new Report(fixedIssues, introducedIssues)
-    }
+        metrics.measure('stream current') {
+            reader.read(currentBranchReport, currentPathProcessor) { IssueKey key, ReportIssue issue -> diff.accept(key, issue) }
+        }
+        FixedIssues fixedIssues = metrics.measure('diff fixed') { diff.fixedIssues() }
 
-    static List<ReportIssue> from(Checkstyle checkstyle) {
-        return checkstyle.files.collect { File file ->
-            file.errors?.collect { Issue error ->
-                new ReportIssue(new ReportFile(file.name), error.line, error.column, error.severity, error.message, error.source)
-            } ?: new ArrayList<ReportIssue>()
-        }.flatten()
+        return new Report(fixedIssues, diff.introducedIssues, metrics)
     }
 
 }
@@ -4,5 +4,6 @@ class ReportsExtension {
 
     String mainBranchName = ''
     String[] checkstyleFiles
+    int maxParallelReports = Runtime.runtime.availableProcessors()
 
 }
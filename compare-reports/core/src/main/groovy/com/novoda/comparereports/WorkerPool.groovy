@@ -0,0 +1,43 @@
+package com.novoda.comparereports
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
+/**
+ * Runs a closure over a list of items on a bounded number of threads, handing the results back in the order of the
+ * items no matter which one finished first.
+ */
+class WorkerPool {
+
+    final int maxWorkers
+
+    WorkerPool(int maxWorkers) {
+        this.maxWorkers = Math.max(1, maxWorkers)
+    }
+
+    def <T> List<T> collect(List items, Closure<T> work) {
+        if (items.size() < 2 || maxWorkers == 1) {
+            return items.collect(work)
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxWorkers, items.size()))
+        try {
+            List<Future<T>> futures = items.collect { item -> executor.submit({ work.call(item) } as Callable<T>) }
+            futures.collect { Future<T> future -> resultOf(future) }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    private static <T> T resultOf(Future<T> future) {
+        try {
+            future.get()
+        } catch (ExecutionException e) {
+            throw e.cause
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.novoda.comparereports.bean
+
+import java.util.concurrent.TimeUnit
+
+/**
+ * Wall-clock time and number of items handled by each phase of a comparison, in the order the phases first ran.
+ * Reports compared in parallel can record into the same metrics.
+ */
+class DiffMetrics {
+
+    private final Map<String, Phase> phases = new LinkedHashMap<String, Phase>()
+
+    /**
+     * Runs the given work as part of the named phase. The phase count is the number the work returns, or the size
+     * of whatever else it returns.
+     */
+    def measure(String phase, Closure work) {
+        long start = System.nanoTime()
+        def result = work.call()
+        record(phase, System.nanoTime() - start, countOf(result))
+        result
+    }
+
+    private static int countOf(result) {
+        if (result == null) {
+            return 0
+        }
+        result instanceof Number ? result.intValue() : result.size()
+    }
+
+    synchronized void record(String phase, long nanos, int count) {
+        Phase current = phases.get(phase)
+        phases.put(phase, current == null ? new Phase(nanos, count) : current.plus(new Phase(nanos, count)))
+    }
+
+    synchronized Map<String, Phase> getPhases() {
+        Collections.unmodifiableMap(new LinkedHashMap<String, Phase>(phases))
+    }
+
+    DiffMetrics plus(DiffMetrics other) {
+        DiffMetrics merged = new DiffMetrics()
+        [this, other].each { DiffMetrics metrics ->
+            metrics.getPhases().each { String name, Phase phase -> merged.record(name, phase.nanos, phase.count) }
+        }
+        merged
+    }
+
+    synchronized String forHumans() {
+        StringBuilder builder = new StringBuilder()
+        builder.append("Comparison metrics:\n")
+        phases.each { String name, Phase phase ->
+            builder.append(" > ${name}: ${phase.count} items in ${phase.millis()}ms\n")
+        }
+        builder.toString()
+    }
+
+    @Override
+    public String toString() {
+        return "DiffMetrics{" +
+                "phases=" + phases +
+                '}';
+    }
+
+    static class Phase {
+
+        final long nanos
+        final int count
+
+        Phase(long nanos, int count) {
+            this.nanos = nanos
+            this.count = count
+        }
+
+        Phase plus(Phase other) {
+            new Phase(nanos + other.nanos, count + other.count)
+        }
+
+        long millis() {
+            TimeUnit.NANOSECONDS.toMillis(nanos)
+        }
+
+        @Override
+        public String toString() {
+            return "Phase{" +
+                    "nanos=" + nanos +
+                    ", count=" + count +
+                    '}';
+        }
+    }
+
+}
@@ -6,10 +6,16 @@ class Report {
 
     final FixedIssues fixedIssues
     final IntroducedIssues introducedIssues
+    final DiffMetrics metrics
 
     Report(FixedIssues fixedIssues, IntroducedIssues introducedIssues) {
+        this(fixedIssues, introducedIssues, new DiffMetrics())
+    }
+
+    Report(FixedIssues fixedIssues, IntroducedIssues introducedIssues, DiffMetrics metrics) {
         this.fixedIssues = fixedIssues
         this.introducedIssues = introducedIssues
+        this.metrics = metrics
     }
 
     Checkstyle fixedCheckstyle() {
@@ -21,12 +27,16 @@ class Report {
     }
 
     Checkstyle toCheckstyle(List<ReportIssue> reportIssues) {
-        Set<ReportFile> reportFiles = reportIssues.collect { ReportIssue issue -> issue.file }.toSet()
-        List<File> files = reportFiles.collect { ReportFile file ->
-            List<ReportIssue> issuesForFile = reportIssues.findAll { ReportIssue issue -> issue.file.equals(file) }
-            List<Issue> issues = issuesForFile.collect { ReportIssue issue -> issue.toIssue() }
-            new File(file.name, issues)
+        Map<ReportFile, List<Issue>> issuesByFile = new LinkedHashMap<ReportFile, List<Issue>>()
+        reportIssues.each { ReportIssue reportIssue ->
+            List<Issue> issues = issuesByFile.get(reportIssue.file)
+            if (issues == null) {
+                issues = new ArrayList<Issue>()
+                issuesByFile.put(reportIssue.file, issues)
+            }
+            issues.add(reportIssue.toIssue())
         }
+        List<File> files = issuesByFile.collect { ReportFile file, List<Issue> issues -> new File(file.name, issues) }
 
         new Checkstyle(CHECKSTYLE_REPORT_VERSION, files)
     }
@@ -36,6 +46,7 @@ class Report {
         return "Report{" +
                 "fixedIssues=" + fixedIssues +
                 ", introducedIssues=" + introducedIssues +
+                ", metrics=" + metrics +
                 '}';
     }
 }
@@ -0,0 +1,104 @@
+package com.novoda.comparereports
+
+import com.novoda.comparereports.bean.ReportFile
+import com.novoda.comparereports.bean.ReportIssue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertNull
+
+class BaselineCacheTest {
+
+    private static final String KEY = 'abc123|checkstyle'
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    private BaselineCache cache
+
+    @Before
+    void setUp() {
+        cache = new BaselineCache(new java.io.File(temporaryFolder.root, 'baseline/cache.bin'))
+    }
+
+    @Test
+    void givenNothingWasWritten_whenReading_thenNothingIsCached() {
+        assertNull(cache.read(KEY))
+    }
+
+    @Test
+    void givenIndexesWereWritten_whenReadingWithTheSameKey_thenTheSameIssuesAreRead() {
+        cache.write(KEY, sampleIndexes())
+
+        Map<String, IssueIndex> indexes = cache.read(KEY)
+
+        assertEquals(['main.xml', 'other.xml'], new ArrayList<String>(indexes.keySet()))
+        assertEquals(issuesOf(sampleIndexes()['main.xml']), issuesOf(indexes['main.xml']))
+        assertEquals(0, indexes['other.xml'].size())
+    }
+
+    @Test
+    void givenIndexesWereWrittenForAnotherKey_whenReading_thenNothingIsCached() {
+        cache.write('def456|checkstyle', sampleIndexes())
+
+        assertNull(cache.read(KEY))
+    }
+
+    @Test
+    void givenATruncatedFile_whenReading_thenNothingIsCached() {
+        cache.write(KEY, sampleIndexes())
+        byte[] bytes = cache.file.bytes
+        cache.file.bytes = Arrays.copyOf(bytes, bytes.length - 3)
+
+        assertNull(cache.read(KEY))
+    }
+
+    @Test
+    void givenAFileThatIsNotACache_whenReading_thenNothingIsCached() {
+        cache.file.parentFile.mkdirs()
+        cache.file.text = 'not a baseline cache'
+
+        assertNull(cache.read(KEY))
+    }
+
+    @Test
+    void givenACorruptCountInTheFile_whenReading_thenNothingIsCachedInsteadOfAllocatingIt() {
+        cache.write(KEY, sampleIndexes())
+        byte[] bytes = cache.file.bytes
+        int stringCountOffset = 4 + 4 + 1 + KEY.length()
+        bytes[stringCountOffset] = (byte) 0xFF
+        bytes[stringCountOffset + 1] = (byte) 0xFF
+        bytes[stringCountOffset + 2] = (byte) 0x7F
+        cache.file.bytes = bytes
+
+        assertNull(cache.read(KEY))
+    }
+
+    @Test
+    void givenAnExistingCache_whenWritingAgain_thenItIsReplaced() {
+        cache.write(KEY, sampleIndexes())
+
+        cache.write(KEY, ['main.xml': new IssueIndex()])
+
+        assertEquals(0, cache.read(KEY)['main.xml'].size())
+    }
+
+    private static Map<String, IssueIndex> sampleIndexes() {
+        ReportFile file = new ReportFile('src/Foo.java')
+        IssueIndex main = new IssueIndex()
+        main.add(new ReportIssue(file, 10, 5, 'error', 'Unused import', 'UnusedImportsCheck'))
+        main.add(new ReportIssue(file, null, null, 'warning', 'Missing header', 'HeaderCheck'))
+        main.add(new ReportIssue(file, 10, 5, 'error', 'Unused import', 'UnusedImportsCheck'))
+        ['main.xml': main, 'other.xml': new IssueIndex()]
+    }
+
+    private static List<ReportIssue> issuesOf(IssueIndex index) {
+        List<ReportIssue> issues = []
+        index.eachIssue { ReportIssue issue -> issues.add(issue) }
+        issues
+    }
+
+}
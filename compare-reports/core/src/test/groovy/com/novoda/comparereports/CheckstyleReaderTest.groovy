@@ -0,0 +1,64 @@
+package com.novoda.comparereports
+
+import com.novoda.comparereports.bean.ReportFile
+import com.novoda.comparereports.bean.ReportIssue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import static org.junit.Assert.assertEquals
+
+class CheckstyleReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    @Test
+    void givenAReport_whenIndexing_thenEveryErrorIsIndexedWithAPathRelativeToTheBaseDir() {
+        java.io.File report = report('''<?xml version="1.0" encoding="UTF-8"?>
+<checkstyle version="6.1">
+  <file name="/repo/src/Foo.java">
+    <error line="10" column="5" severity="error" message="Unused import" source="UnusedImportsCheck"/>
+    <error line="20" severity="warning" message="Magic number" source="MagicNumberCheck"/>
+  </file>
+  <file name="/repo/src/Bar.java"/>
+</checkstyle>''')
+
+        IssueIndex index = new CheckstyleReader().index(report, new PathProcessor('/repo'))
+
+        ReportFile file = new ReportFile('src/Foo.java')
+        assertEquals(2, index.size())
+        assertEquals([
+                new ReportIssue(file, 10, 5, 'error', 'Unused import', 'UnusedImportsCheck'),
+                new ReportIssue(file, 20, null, 'warning', 'Magic number', 'MagicNumberCheck')
+        ], index.issuesExcept(Collections.<IssueKey> emptySet()))
+    }
+
+    @Test
+    void givenAReport_whenReading_thenTheIssuesComeInDocumentOrderWithTheirKeys() {
+        java.io.File report = report('''<checkstyle>
+  <file name="/repo/src/Foo.java">
+    <error line="10" column="5" severity="error" message="Unused import" source="UnusedImportsCheck"/>
+  </file>
+  <file name="/elsewhere/Bar.java">
+    <error severity="error" message="Missing header" source="HeaderCheck"/>
+  </file>
+</checkstyle>''')
+        List<IssueKey> keys = []
+
+        int count = new CheckstyleReader().read(report, new PathProcessor('/repo')) { IssueKey key, ReportIssue issue -> keys.add(key) }
+
+        assertEquals(2, count)
+        assertEquals([
+                new IssueKey('src/Foo.java', 'UnusedImportsCheck', 'Unused import', 10),
+                new IssueKey('/elsewhere/Bar.java', 'HeaderCheck', 'Missing header', -1)
+        ], keys)
+    }
+
+    private java.io.File report(String xml) {
+        java.io.File file = temporaryFolder.newFile('checkstyle.xml')
+        file.setText(xml, 'UTF-8')
+        file
+    }
+
+}
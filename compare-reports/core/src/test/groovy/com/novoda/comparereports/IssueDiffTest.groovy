@@ -0,0 +1,98 @@
+package com.novoda.comparereports
+
+import com.novoda.comparereports.bean.ReportFile
+import com.novoda.comparereports.bean.ReportIssue
+import org.junit.Test
+
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertTrue
+
+class IssueDiffTest {
+
+    private static final ReportFile FILE = new ReportFile('src/Foo.java')
+
+    @Test
+    void givenTheSameIssues_whenDiffing_thenNothingIsFixedOrIntroduced() {
+        IssueDiff diff = new IssueDiff(indexOf(issue(10, 'Unused import'), issue(20, 'Magic number')))
+
+        accept(diff, issue(10, 'Unused import'), issue(20, 'Magic number'))
+
+        assertTrue(diff.fixedIssues().isEmpty())
+        assertTrue(diff.introducedIssues.isEmpty())
+    }
+
+    @Test
+    void givenAnIssueMissingFromTheCurrentBranch_whenDiffing_thenItIsFixed() {
+        IssueDiff diff = new IssueDiff(indexOf(issue(10, 'Unused import'), issue(20, 'Magic number')))
+
+        accept(diff, issue(20, 'Magic number'))
+
+        assertEquals([issue(10, 'Unused import')], diff.fixedIssues())
+        assertTrue(diff.introducedIssues.isEmpty())
+    }
+
+    @Test
+    void givenAnIssueMovedToAnotherLine_whenDiffing_thenItIsFixedOnTheOldLineAndIntroducedOnTheNewOne() {
+        IssueDiff diff = new IssueDiff(indexOf(issue(10, 'Unused import'), issue(20, 'Magic number')))
+
+        accept(diff, issue(11, 'Unused import'), issue(20, 'Magic number'))
+
+        assertEquals([issue(10, 'Unused import')], diff.fixedIssues())
+        assertEquals([issue(11, 'Unused import')], diff.introducedIssues)
+    }
+
+    @Test
+    void givenAnIssueOnADifferentColumnOrSeverity_whenDiffing_thenItIsTheSameIssue() {
+        IssueDiff diff = new IssueDiff(indexOf(issue(10, 'Unused import')))
+
+        accept(diff, new ReportIssue(FILE, 10, 5, 'warning', 'Unused import', 'SomeCheck'))
+
+        assertTrue(diff.fixedIssues().isEmpty())
+        assertTrue(diff.introducedIssues.isEmpty())
+    }
+
+    @Test
+    void givenIdenticalIssuesOnTheSameLine_whenDiffing_thenTheyAreMatchedTogether() {
+        IssueDiff diff = new IssueDiff(indexOf(issue(10, 'Magic number'), issue(10, 'Magic number')))
+
+        accept(diff, issue(10, 'Magic number'), issue(10, 'Magic number'), issue(10, 'Magic number'))
+
+        assertTrue(diff.fixedIssues().isEmpty())
+        assertTrue(diff.introducedIssues.isEmpty())
+    }
+
+    @Test
+    void givenIdenticalIssuesOnTheSameLineThatAreAllGone_whenDiffing_thenEveryOneOfThemIsFixed() {
+        IssueDiff diff = new IssueDiff(indexOf(issue(10, 'Magic number'), issue(10, 'Magic number')))
+
+        accept(diff)
+
+        assertEquals([issue(10, 'Magic number'), issue(10, 'Magic number')], diff.fixedIssues())
+    }
+
+    @Test
+    void givenTheSameIssueInAnotherFile_whenDiffing_thenItIsIntroduced() {
+        IssueDiff diff = new IssueDiff(indexOf(issue(10, 'Unused import')))
+        ReportIssue otherFileIssue = new ReportIssue(new ReportFile('src/Bar.java'), 10, 1, 'error', 'Unused import', 'UnusedImportsCheck')
+
+        accept(diff, otherFileIssue)
+
+        assertEquals([issue(10, 'Unused import')], diff.fixedIssues())
+        assertEquals([otherFileIssue], diff.introducedIssues)
+    }
+
+    private static IssueIndex indexOf(ReportIssue... issues) {
+        IssueIndex index = new IssueIndex()
+        issues.each { index.add(it) }
+        index
+    }
+
+    private static void accept(IssueDiff diff, ReportIssue... issues) {
+        issues.each { diff.accept(IssueKey.of(it), it) }
+    }
+
+    private static ReportIssue issue(int line, String message) {
+        new ReportIssue(FILE, line, 1, 'error', message, 'SomeCheck')
+    }
+
+}
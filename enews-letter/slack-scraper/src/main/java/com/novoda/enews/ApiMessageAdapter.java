@@ -0,0 +1,54 @@
+package com.novoda.enews;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Reads a message field by field, parsing {@code ts} straight into the {@code long} of the message so that no boxed
+ * timestamp is made on the way. Fields other than {@code text}, {@code type} and {@code ts} are skipped.
+ */
+class ApiMessageAdapter extends TypeAdapter<ApiPagedChannelHistory.ApiMessage> {
+
+    @Override
+    public void write(JsonWriter out, ApiPagedChannelHistory.ApiMessage apiMessage) throws IOException {
+        if (apiMessage == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("text").value(apiMessage.text);
+        out.name("type").value(apiMessage.type);
+        out.name("ts").value(SlackTimestamp.format(apiMessage.timeStamp));
+        out.endObject();
+    }
+
+    @Override
+    public ApiPagedChannelHistory.ApiMessage read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ApiPagedChannelHistory.ApiMessage apiMessage = new ApiPagedChannelHistory.ApiMessage();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            } else if ("text".equals(name)) {
+                apiMessage.text = in.nextString();
+            } else if ("type".equals(name)) {
+                apiMessage.type = in.nextString();
+            } else if ("ts".equals(name)) {
+                apiMessage.timeStamp = SlackTimestamp.parse(in.nextString());
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return apiMessage;
+    }
+}
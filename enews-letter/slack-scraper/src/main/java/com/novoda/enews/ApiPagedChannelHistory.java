@@ -1,5 +1,6 @@
 package com.novoda.enews;
 
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
 
 import java.util.List;
@@ -24,6 +25,7 @@ class ApiPagedChannelHistory {
                 '}';
     }
 
+    @JsonAdapter(ApiMessageAdapter.class)
     public static class ApiMessage {
 
         @SerializedName("text")
@@ -33,14 +35,14 @@ class ApiPagedChannelHistory {
         public String type;
 
         @SerializedName("ts")
-        public String timeStamp;
+        public long timeStamp;
 
         @Override
         public String toString() {
             return "\nApiMessage{" +
                     "text='" + text + '\'' +
                     ", type='" + type + '\'' +
-                    ", timeStamp='" + timeStamp + '\'' +
+                    ", timeStamp='" + SlackTimestamp.format(timeStamp) + '\'' +
                     '}';
         }
     }
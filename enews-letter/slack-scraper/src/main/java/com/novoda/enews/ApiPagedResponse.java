@@ -1,18 +1,21 @@
 package com.novoda.enews;
 
 import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Tracks the paging cursor through one run of pages. Only the latest page is kept, the pages themselves are handed
+ * on as they arrive.
+ */
 class ApiPagedResponse {
-    private final List<ApiPagedChannelHistory> responses = new ArrayList<>();
+    private static final long NO_CURSOR = Long.MIN_VALUE;
 
-    private LocalDateTime lastResponseDateTime;
+    private ApiPagedChannelHistory lastResponse;
+    private long lastResponseEpochMicros;
     private boolean hasMore = false;
 
     public ApiPagedResponse(LocalDateTime start) {
-        this.lastResponseDateTime = start;
+        this.lastResponseEpochMicros = start == null ? NO_CURSOR : SlackTimestamp.of(start);
     }
 
     public boolean hasMoreResponses() {
@@ -21,37 +24,37 @@ class ApiPagedResponse {
 
     public void addResponse(ApiPagedChannelHistory apiPagedChannelHistory) {
         updateLastResponseDateTime(apiPagedChannelHistory);
-        responses.add(apiPagedChannelHistory);
+        lastResponse = apiPagedChannelHistory;
     }
 
     private void updateLastResponseDateTime(ApiPagedChannelHistory apiPagedChannelHistory) {
         List<ApiPagedChannelHistory.ApiMessage> apiMessages = apiPagedChannelHistory.apiMessages;
+        if (apiMessages.isEmpty()) {
+            hasMore = false;
+            return;
+        }
         ApiPagedChannelHistory.ApiMessage oldestApiMessage = apiMessages.get(apiMessages.size() - 1);
-        String lastResponseEpochTime = oldestApiMessage.timeStamp;
-        lastResponseDateTime = convertToLocalDateTime(lastResponseEpochTime);
+        lastResponseEpochMicros = oldestApiMessage.timeStamp;
         hasMore = apiPagedChannelHistory.hasMore;
     }
 
-    private LocalDateTime convertToLocalDateTime(String lastResponseEpochTime) {
-        int decimalSplit = lastResponseEpochTime.indexOf(".");
-        Long epochSecond = Long.valueOf(lastResponseEpochTime.substring(0, decimalSplit));
-        Integer nanoOfSecond = Integer.valueOf(lastResponseEpochTime.substring(decimalSplit + 1));
-        ZoneOffset timezone = ZoneOffset.UTC;
-        return LocalDateTime.ofEpochSecond(epochSecond, nanoOfSecond, timezone);
-    }
-
+    /**
+     * The exact timestamp of the oldest message seen so far, Slack leaves it out when it is passed back as {@code latest}.
+     */
     public String getLastResponseEpochTime() {
-        return String.valueOf(lastResponseDateTime.toEpochSecond(ZoneOffset.UTC));
+        return lastResponseEpochMicros == NO_CURSOR ? null : SlackTimestamp.format(lastResponseEpochMicros);
     }
 
-    public List<ApiPagedChannelHistory> getResponses() {
-        return responses;
+    public boolean responsesAreAfter(LocalDateTime dateTime) {
+        return responsesAreAfter(SlackTimestamp.of(dateTime));
     }
 
-    public boolean responsesAreAfter(LocalDateTime dateTime) {
-        List<ApiPagedChannelHistory.ApiMessage> latestMessages = responses.get(responses.size() - 1).apiMessages;
+    public boolean responsesAreAfter(long epochMicros) {
+        List<ApiPagedChannelHistory.ApiMessage> latestMessages = lastResponse.apiMessages;
+        if (latestMessages.isEmpty()) {
+            return false;
+        }
         ApiPagedChannelHistory.ApiMessage latestMessage = latestMessages.get(latestMessages.size() - 1);
-        LocalDateTime latestMessageDateTime = convertToLocalDateTime(latestMessage.timeStamp);
-        return latestMessageDateTime.isAfter(dateTime);
+        return latestMessage.timeStamp > epochMicros;
     }
 }
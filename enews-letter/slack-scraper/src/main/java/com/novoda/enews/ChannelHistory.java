@@ -37,12 +37,22 @@ class ChannelHistory {
     }
 
     public static class Message {
+        private final long timeStamp;
         private final String text;
 
-        public Message(String text) {
+        public Message(long timeStamp, String text) {
+            this.timeStamp = timeStamp;
             this.text = text;
         }
 
+        public long getTimeStamp() {
+            return timeStamp;
+        }
+
+        public String getText() {
+            return text;
+        }
+
         @Override
         public String toString() {
             return text;
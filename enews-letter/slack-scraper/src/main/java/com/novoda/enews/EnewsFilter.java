@@ -0,0 +1,51 @@
+package com.novoda.enews;
+
+import java.util.function.Consumer;
+
+/**
+ * Streaming stage that passes on the messages tagged {@code #enews} which carry a link, one message at a time.
+ * Matching is case insensitive and done in place on the message text, nothing is copied or lowercased.
+ */
+class EnewsFilter implements Consumer<ApiPagedChannelHistory.ApiMessage> {
+
+    private static final String ENEWS_TAG = "#enews";
+    private static final String LINK = "http";
+
+    private final Consumer<ChannelHistory.Message> messageConsumer;
+
+    EnewsFilter(Consumer<ChannelHistory.Message> messageConsumer) {
+        this.messageConsumer = messageConsumer;
+    }
+
+    @Override
+    public void accept(ApiPagedChannelHistory.ApiMessage apiMessage) {
+        String text = apiMessage.text;
+        if (isEnews(text)) {
+            messageConsumer.accept(new ChannelHistory.Message(apiMessage.timeStamp, text));
+        }
+    }
+
+    static boolean isEnews(String text) {
+        return text != null
+                && containsIgnoreCase(text, ENEWS_TAG)
+                && containsIgnoreCase(text, LINK);
+    }
+
+    static boolean containsIgnoreCase(String text, String lowerCaseNeedle) {
+        return indexOfIgnoreCase(text, lowerCaseNeedle, 0) >= 0;
+    }
+
+    static int indexOfIgnoreCase(String text, String lowerCaseNeedle, int fromIndex) {
+        int needleLength = lowerCaseNeedle.length();
+        char first = lowerCaseNeedle.charAt(0);
+        char firstUpper = Character.toUpperCase(first);
+        int lastStart = text.length() - needleLength;
+        for (int i = fromIndex; i <= lastStart; i++) {
+            char c = text.charAt(i);
+            if ((c == first || c == firstUpper) && text.regionMatches(true, i + 1, lowerCaseNeedle, 1, needleLength - 1)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,7 +1,6 @@
 package com.novoda.enews;
 
 import java.time.LocalDateTime;
-import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,26 +20,18 @@ class HistoryConverter {
 
     private static ChannelHistory.Message convert(ApiPagedChannelHistory.ApiMessage apiMessage) {
         String text = apiMessage.text; // Bots send messages with attachments but no text
-        return new ChannelHistory.Message(text == null ? "" : text);
+        return new ChannelHistory.Message(apiMessage.timeStamp, text == null ? "" : text);
     }
 
     private static LocalDateTime getOldestMessageLocalDateTime(ApiPagedChannelHistory apiPagedChannelHistory) {
         List<ApiPagedChannelHistory.ApiMessage> apiMessages = apiPagedChannelHistory.apiMessages;
         ApiPagedChannelHistory.ApiMessage lastMessage = apiMessages.get(apiMessages.size() - 1);
-        return convertToLocalDateTime(lastMessage.timeStamp);
+        return SlackTimestamp.toLocalDateTime(lastMessage.timeStamp);
     }
 
     private static LocalDateTime getLatestMessageLocalDateTime(ApiPagedChannelHistory apiPagedChannelHistory) {
         List<ApiPagedChannelHistory.ApiMessage> apiMessages = apiPagedChannelHistory.apiMessages;
         ApiPagedChannelHistory.ApiMessage firstMessage = apiMessages.get(0);
-        return convertToLocalDateTime(firstMessage.timeStamp);
-    }
-
-    private static LocalDateTime convertToLocalDateTime(String lastResponseEpochTime) {
-        int decimalSplit = lastResponseEpochTime.indexOf(".");
-        Long epochSecond = Long.valueOf(lastResponseEpochTime.substring(0, decimalSplit));
-        Integer nanoOfSecond = Integer.valueOf(lastResponseEpochTime.substring(decimalSplit + 1));
-        ZoneOffset timezone = ZoneOffset.UTC;
-        return LocalDateTime.ofEpochSecond(epochSecond, nanoOfSecond, timezone);
+        return SlackTimestamp.toLocalDateTime(firstMessage.timeStamp);
     }
 }
@@ -0,0 +1,31 @@
+package com.novoda.enews;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Last stage of the digest: pulls the links out of every message it's given and collapses reposts into one entry.
+ */
+class LinkDigest implements Consumer<ChannelHistory.Message> {
+
+    private final LinkExtractor linkExtractor;
+    private final LinkIndex linkIndex;
+
+    LinkDigest() {
+        this(new LinkExtractor(), new LinkIndex());
+    }
+
+    LinkDigest(LinkExtractor linkExtractor, LinkIndex linkIndex) {
+        this.linkExtractor = linkExtractor;
+        this.linkIndex = linkIndex;
+    }
+
+    @Override
+    public void accept(ChannelHistory.Message message) {
+        linkExtractor.extract(message.getText(), linkIndex::add);
+    }
+
+    public List<LinkIndex.Link> getLinks() {
+        return linkIndex.getLinks();
+    }
+}
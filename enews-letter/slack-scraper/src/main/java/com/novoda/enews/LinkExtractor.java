@@ -0,0 +1,150 @@
+package com.novoda.enews;
+
+import java.util.function.Consumer;
+
+/**
+ * Finds the links in a message and writes each one out in a normal form, so the same article posted twice reads the
+ * same: scheme and host lowercased, Slack's {@code &amp;} unescaped, {@code utm_} tracking parameters, fragments and
+ * trailing slashes dropped.
+ *
+ * Links are normalised into one reused buffer, which is only valid until the consumer returns.
+ */
+class LinkExtractor {
+
+    private static final String HTTP = "http";
+    private static final String SCHEME_SEPARATOR = "://";
+    private static final String ESCAPED_AMPERSAND = "&amp;";
+    private static final String TRACKING_PARAMETER = "utm_";
+    private static final String TRAILING_PUNCTUATION = ".,;:!?)'\"";
+
+    private final StringBuilder link = new StringBuilder();
+
+    public void extract(String text, Consumer<CharSequence> linkConsumer) {
+        int start = EnewsFilter.indexOfIgnoreCase(text, HTTP, 0);
+        while (start >= 0) {
+            int schemeEnd = schemeEnd(text, start);
+            if (schemeEnd < 0) {
+                start = EnewsFilter.indexOfIgnoreCase(text, HTTP, start + HTTP.length());
+                continue;
+            }
+            int end = linkEnd(text, start);
+            if (end > schemeEnd + SCHEME_SEPARATOR.length()) {
+                normalise(text, start, schemeEnd, end);
+                linkConsumer.accept(link);
+            }
+            start = EnewsFilter.indexOfIgnoreCase(text, HTTP, end);
+        }
+    }
+
+    /**
+     * @return where {@code ://} starts for {@code http} or {@code https} at {@code start}, or -1 for any other word
+     */
+    private static int schemeEnd(String text, int start) {
+        int schemeEnd = start + HTTP.length();
+        if (schemeEnd < text.length() && (text.charAt(schemeEnd) == 's' || text.charAt(schemeEnd) == 'S')) {
+            schemeEnd++;
+        }
+        return text.startsWith(SCHEME_SEPARATOR, schemeEnd) ? schemeEnd : -1;
+    }
+
+    /**
+     * Slack wraps links as {@code <url>} or {@code <url|label>}, pasted text just runs up to the next space.
+     */
+    private static int linkEnd(String text, int start) {
+        boolean wrapped = start > 0 && text.charAt(start - 1) == '<';
+        int end = start;
+        while (end < text.length() && !isLinkEnd(text.charAt(end))) {
+            end++;
+        }
+        if (!wrapped) {
+            while (end > start && TRAILING_PUNCTUATION.indexOf(text.charAt(end - 1)) >= 0) {
+                end--;
+            }
+        }
+        return end;
+    }
+
+    private static boolean isLinkEnd(char c) {
+        return Character.isWhitespace(c) || c == '>' || c == '|' || c == '<' || c == '"';
+    }
+
+    private void normalise(String text, int start, int schemeEnd, int end) {
+        link.setLength(0);
+        appendLowerCase(text, start, schemeEnd);
+        link.append(SCHEME_SEPARATOR);
+
+        int hostStart = schemeEnd + SCHEME_SEPARATOR.length();
+        int hostEnd = indexOfAny(text, hostStart, end, "/?#");
+        appendLowerCase(text, hostStart, hostEnd);
+
+        int fragmentStart = indexOfAny(text, hostEnd, end, "#");
+        int queryStart = indexOfAny(text, hostEnd, fragmentStart, "?");
+        appendUnescaped(text, hostEnd, queryStart);
+        trimTrailingSlash(queryStart - hostEnd);
+        appendQuery(text, queryStart, fragmentStart);
+    }
+
+    private void appendLowerCase(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            link.append(Character.toLowerCase(text.charAt(i)));
+        }
+    }
+
+    private void appendUnescaped(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.startsWith(ESCAPED_AMPERSAND, i) && i + ESCAPED_AMPERSAND.length() <= end) {
+                link.append('&');
+                i += ESCAPED_AMPERSAND.length() - 1;
+            } else {
+                link.append(text.charAt(i));
+            }
+        }
+    }
+
+    private void trimTrailingSlash(int pathLength) {
+        if (pathLength > 0 && link.charAt(link.length() - 1) == '/') {
+            link.setLength(link.length() - 1);
+        }
+    }
+
+    /**
+     * Keeps the parameters in the order they were posted, leaving out the ones that only track where a click came from.
+     */
+    private void appendQuery(String text, int queryStart, int queryEnd) {
+        char separator = '?';
+        int parameterStart = queryStart + 1;
+        while (parameterStart < queryEnd) {
+            int parameterEnd = nextParameter(text, parameterStart, queryEnd);
+            if (parameterEnd > parameterStart && !text.regionMatches(true, parameterStart, TRACKING_PARAMETER, 0, TRACKING_PARAMETER.length())) {
+                link.append(separator);
+                appendUnescaped(text, parameterStart, parameterEnd);
+                separator = '&';
+            }
+            parameterStart = skipSeparator(text, parameterEnd, queryEnd);
+        }
+    }
+
+    private static int nextParameter(String text, int start, int end) {
+        int i = start;
+        while (i < end && text.charAt(i) != '&') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipSeparator(String text, int parameterEnd, int end) {
+        if (text.startsWith(ESCAPED_AMPERSAND, parameterEnd) && parameterEnd + ESCAPED_AMPERSAND.length() <= end) {
+            return parameterEnd + ESCAPED_AMPERSAND.length();
+        }
+        return parameterEnd + 1;
+    }
+
+    private static int indexOfAny(String text, int start, int end, String chars) {
+        for (int i = start; i < end; i++) {
+            if (chars.indexOf(text.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return end;
+    }
+}
@@ -0,0 +1,123 @@
+package com.novoda.enews;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Counts how often each link is posted. Links are looked up by a 64-bit FNV-1a fingerprint of their normal form in an
+ * open addressing table of primitive arrays, so a repost costs a hash and a probe and never allocates. Only the first
+ * sighting of a link keeps its text.
+ *
+ * Two different links sharing a fingerprint would be counted as one, at 64 bits that's not a worry for a channel's
+ * worth of links.
+ */
+class LinkIndex {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int EMPTY = -1;
+
+    private final List<Link> links = new ArrayList<>();
+
+    private long[] fingerprints = new long[INITIAL_CAPACITY];
+    private int[] linkIndexes = emptySlots(INITIAL_CAPACITY);
+
+    public void add(CharSequence link) {
+        long fingerprint = fingerprint(link);
+        int slot = slotOf(fingerprint, fingerprints, linkIndexes);
+        int linkIndex = linkIndexes[slot];
+        if (linkIndex != EMPTY) {
+            links.get(linkIndex).addMention();
+            return;
+        }
+        fingerprints[slot] = fingerprint;
+        linkIndexes[slot] = links.size();
+        links.add(new Link(link.toString()));
+        if (links.size() * 2 > linkIndexes.length) {
+            grow();
+        }
+    }
+
+    public int size() {
+        return links.size();
+    }
+
+    /**
+     * @return every link once, most mentioned first and in the order they were first posted otherwise
+     */
+    public List<Link> getLinks() {
+        List<Link> sorted = new ArrayList<>(links);
+        sorted.sort((lhs, rhs) -> Integer.compare(rhs.getMentions(), lhs.getMentions()));
+        return Collections.unmodifiableList(sorted);
+    }
+
+    static long fingerprint(CharSequence link) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < link.length(); i++) {
+            char c = link.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static int slotOf(long fingerprint, long[] fingerprints, int[] linkIndexes) {
+        int mask = linkIndexes.length - 1;
+        int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        while (linkIndexes[slot] != EMPTY && fingerprints[slot] != fingerprint) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int capacity = linkIndexes.length * 2;
+        long[] grownFingerprints = new long[capacity];
+        int[] grownLinkIndexes = emptySlots(capacity);
+        for (int slot = 0; slot < linkIndexes.length; slot++) {
+            if (linkIndexes[slot] != EMPTY) {
+                int grownSlot = slotOf(fingerprints[slot], grownFingerprints, grownLinkIndexes);
+                grownFingerprints[grownSlot] = fingerprints[slot];
+                grownLinkIndexes[grownSlot] = linkIndexes[slot];
+            }
+        }
+        fingerprints = grownFingerprints;
+        linkIndexes = grownLinkIndexes;
+    }
+
+    private static int[] emptySlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        return slots;
+    }
+
+    static class Link {
+
+        private final String url;
+        private int mentions = 1;
+
+        Link(String url) {
+            this.url = url;
+        }
+
+        void addMention() {
+            mentions++;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public int getMentions() {
+            return mentions;
+        }
+
+        @Override
+        public String toString() {
+            return url + " (" + mentions + ")";
+        }
+    }
+}
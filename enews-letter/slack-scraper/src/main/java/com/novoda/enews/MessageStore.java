@@ -0,0 +1,253 @@
+package com.novoda.enews;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Append-only log of channel messages on disk, one record per Slack {@code ts}, so a run only has to fetch what was
+ * posted since the last one that synced successfully.
+ *
+ * The file starts with a magic number, a version and the time the store was last synced up to, followed by one record
+ * per message: its {@code ts} in epoch microseconds, then its type and text, each written as a length prefixed UTF-8
+ * string. An index from message time to record offset is rebuilt when the store is opened and kept in memory, which
+ * lets date range queries seek straight to the records they need. A record left half written or torn by a crash is
+ * cut off on open, along with everything after it.
+ *
+ * Not thread safe, feed it from a single thread such as the one draining
+ * {@link SlackHistoryFetcher#streamChannelHistory}.
+ */
+class MessageStore implements Consumer<ApiPagedChannelHistory>, Closeable {
+
+    private static final int MAGIC = 0x454e4d53; // ENMS
+    private static final int VERSION = 3;
+    private static final int SYNCED_UP_TO_OFFSET = 8;
+    private static final int HEADER_SIZE = 16;
+    private static final long NOT_SYNCED = Long.MIN_VALUE;
+    private static final int TIMESTAMP_SIZE = 8;
+    private static final int NULL_LENGTH = -1;
+
+    private final File file;
+    private final NavigableMap<Long, Long> offsetsByTime = new TreeMap<>();
+    private final FileOutputStream fileOutput;
+    private final DataOutputStream output;
+    private final RandomAccessFile reader;
+
+    private long size;
+    private long syncedUpTo = NOT_SYNCED;
+
+    public static MessageStore open(File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Couldn't create " + directory);
+        }
+        return new MessageStore(file);
+    }
+
+    private MessageStore(File file) throws IOException {
+        this.file = file;
+        this.size = hasCurrentHeader() ? index() : writeHeader();
+        this.fileOutput = new FileOutputStream(file, true);
+        this.output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+        this.reader = new RandomAccessFile(file, "r");
+    }
+
+    /**
+     * A store from an older version is started over, everything in it can be fetched again.
+     */
+    private boolean hasCurrentHeader() throws IOException {
+        if (file.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException(file + " is not a message store");
+            }
+            if (input.readInt() != VERSION) {
+                return false;
+            }
+            syncedUpTo = input.readLong();
+            return true;
+        }
+    }
+
+    private long writeHeader() throws IOException {
+        try (DataOutputStream header = new DataOutputStream(new FileOutputStream(file))) {
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeLong(NOT_SYNCED);
+        }
+        return HEADER_SIZE;
+    }
+
+    private long index() throws IOException {
+        long fileLength = file.length();
+        long offset = HEADER_SIZE;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            input.skipBytes(HEADER_SIZE);
+            while (true) {
+                long timeStamp = input.readLong();
+                long bytesLeft = fileLength - offset - TIMESTAMP_SIZE;
+                int typeLength = skipString(input, bytesLeft);
+                int textLength = skipString(input, bytesLeft - typeLength);
+                offsetsByTime.put(timeStamp, offset);
+                offset += TIMESTAMP_SIZE + typeLength + textLength;
+            }
+        } catch (EOFException e) {
+            // either the end of the log or a record that was only partly written or torn, which is dropped below
+        }
+        truncate(offset);
+        return offset;
+    }
+
+    private void truncate(long length) throws IOException {
+        try (RandomAccessFile writer = new RandomAccessFile(file, "rw")) {
+            if (writer.length() > length) {
+                writer.setLength(length);
+            }
+        }
+    }
+
+    /**
+     * Appends every message of the page whose {@code ts} isn't stored yet.
+     */
+    @Override
+    public void accept(ApiPagedChannelHistory page) {
+        try {
+            for (ApiPagedChannelHistory.ApiMessage apiMessage : page.apiMessages) {
+                append(apiMessage);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't append to " + file, e);
+        }
+    }
+
+    private void append(ApiPagedChannelHistory.ApiMessage apiMessage) throws IOException {
+        if (offsetsByTime.containsKey(apiMessage.timeStamp)) {
+            return;
+        }
+        offsetsByTime.put(apiMessage.timeStamp, size);
+        output.writeLong(apiMessage.timeStamp);
+        size += TIMESTAMP_SIZE;
+        size += writeString(apiMessage.type);
+        size += writeString(apiMessage.text);
+    }
+
+    /**
+     * Messages from a sync that failed part way can be stored without anything older than them, since slices are
+     * fetched concurrently, which is why fetching carries on from here rather than from the newest stored message.
+     *
+     * @return the time every message before was stored by, as of the last successful sync
+     */
+    public Optional<LocalDateTime> getSyncedUpTo() {
+        if (syncedUpTo == NOT_SYNCED) {
+            return Optional.empty();
+        }
+        return Optional.of(SlackTimestamp.toLocalDateTime(syncedUpTo));
+    }
+
+    /**
+     * Records that every message before the given time is stored, once the messages appended so far are on disk.
+     */
+    public void markSyncedUpTo(LocalDateTime time) throws IOException {
+        long epochMicros = SlackTimestamp.of(time);
+        output.flush();
+        fileOutput.getFD().sync();
+        try (RandomAccessFile writer = new RandomAccessFile(file, "rw")) {
+            writer.seek(SYNCED_UP_TO_OFFSET);
+            writer.writeLong(epochMicros);
+            writer.getFD().sync();
+        }
+        syncedUpTo = epochMicros;
+    }
+
+    public int size() {
+        return offsetsByTime.size();
+    }
+
+    /**
+     * Reads back the messages posted in [from, to), newest first.
+     */
+    public void read(LocalDateTime from, LocalDateTime to, Consumer<ApiPagedChannelHistory.ApiMessage> messageConsumer) {
+        try {
+            output.flush();
+            NavigableMap<Long, Long> range = offsetsByTime.subMap(SlackTimestamp.of(from), true, SlackTimestamp.of(to), false);
+            for (long offset : range.descendingMap().values()) {
+                reader.seek(offset);
+                ApiPagedChannelHistory.ApiMessage apiMessage = new ApiPagedChannelHistory.ApiMessage();
+                apiMessage.timeStamp = reader.readLong();
+                apiMessage.type = readString(reader);
+                apiMessage.text = readString(reader);
+                messageConsumer.accept(apiMessage);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't read from " + file, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            output.close();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private int writeString(String value) throws IOException {
+        if (value == null) {
+            output.writeInt(NULL_LENGTH);
+            return 4;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+        return 4 + bytes.length;
+    }
+
+    private static String readString(RandomAccessFile input) throws IOException {
+        int length = readLength(input, input.length() - input.getFilePointer());
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int skipString(DataInputStream input, long bytesLeft) throws IOException {
+        int length = readLength(input, bytesLeft);
+        if (length == NULL_LENGTH) {
+            return 4;
+        }
+        input.readFully(new byte[length]); // skipping could run past the end of the file without noticing
+        return 4 + length;
+    }
+
+    /**
+     * A length that is negative or longer than what's left of the file comes from a torn record, which is treated like
+     * one cut short rather than allocated for.
+     */
+    private static int readLength(DataInput input, long bytesLeft) throws IOException {
+        int length = input.readInt();
+        if (length < NULL_LENGTH || length > bytesLeft - 4) {
+            throw new EOFException("Torn record, string of " + length + " bytes with " + (bytesLeft - 4) + " left");
+        }
+        return length;
+    }
+}
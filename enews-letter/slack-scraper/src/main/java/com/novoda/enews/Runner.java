@@ -3,11 +3,13 @@ package com.novoda.enews;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.time.LocalDateTime;
 
 public class Runner {
 
+    private static final String MESSAGE_STORE_PATH = ".enews/messages.log";
 
     public static void main(String[] args) throws IOException {
         String slackToken = args[0];
@@ -23,21 +25,17 @@ public class Runner {
         SlackHistoryFetcher slackHistoryFetcher = SlackHistoryFetcher.from(slackWebService, slackToken);
 
         LocalDateTime start = LocalDateTime.now();
-        LocalDateTime end = LocalDateTime.now().minusDays(7);
-        ChannelHistory channelHistory = slackHistoryFetcher.getChannelHistory(start, end);
-
-        System.out.println(channelHistory.getHistoryFrom() + " / " + channelHistory.getHistoryTo());
-        channelHistory
-                .getMessages()
-                .parallelStream()
-                .filter(message -> {
-                    String messageText = message.toString().toLowerCase();
-                    return messageText.contains("#enews")
-                            &&
-                            messageText.contains("http");
-
-                })
-                .forEach(System.out::println);
+        LocalDateTime end = start.minusDays(7);
+
+        File messageStoreFile = new File(args.length > 1 ? args[1] : MESSAGE_STORE_PATH);
+        try (MessageStore messageStore = MessageStore.open(messageStoreFile)) {
+            slackHistoryFetcher.syncInto(messageStore, start, end);
+
+            System.out.println(end + " / " + start);
+            LinkDigest linkDigest = new LinkDigest();
+            messageStore.read(end, start, new EnewsFilter(linkDigest));
+            linkDigest.getLinks().forEach(System.out::println);
+        }
     }
 
 }
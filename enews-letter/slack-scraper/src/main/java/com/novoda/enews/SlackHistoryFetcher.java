@@ -4,50 +4,181 @@ import retrofit2.Call;
 import retrofit2.Response;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 class SlackHistoryFetcher {
 
     private static final String CHANNEL_GENERAL = "C029J9QTH";
     private static final int NUMBER_OF_RESULTS = 200;
+    private static final Duration SLICE_LENGTH = Duration.ofDays(1);
+    private static final int MAX_REQUESTS_IN_FLIGHT = 4;
+    private static final int PAGES_BUFFERED_PER_REQUEST = 2;
 
     private final SlackWebService slackWebService;
     private final String slackToken;
     private final String channel;
     private final HistoryConverter historyConverter;
+    private final Duration sliceLength;
+    private final int maxRequestsInFlight;
 
     public static SlackHistoryFetcher from(SlackWebService slackWebService, String slackToken) {
         HistoryConverter historyConverter = new HistoryConverter();
-        return new SlackHistoryFetcher(slackWebService, slackToken, CHANNEL_GENERAL, historyConverter);
+        return new SlackHistoryFetcher(slackWebService, slackToken, CHANNEL_GENERAL, historyConverter, SLICE_LENGTH, MAX_REQUESTS_IN_FLIGHT);
     }
 
     SlackHistoryFetcher(SlackWebService slackWebService,
                         String slackToken,
-                        String channel, HistoryConverter historyConverter) {
+                        String channel, HistoryConverter historyConverter,
+                        Duration sliceLength,
+                        int maxRequestsInFlight) {
         this.slackWebService = slackWebService;
         this.slackToken = slackToken;
         this.channel = channel;
         this.historyConverter = historyConverter;
+        this.sliceLength = sliceLength;
+        this.maxRequestsInFlight = maxRequestsInFlight;
     }
 
     public ChannelHistory getChannelHistory(LocalDateTime start, LocalDateTime end) {
-        return historyConverter.convert(getApiChannelHistory(start, end));
+        List<ApiPagedChannelHistory> responses = new ArrayList<>();
+        streamChannelHistory(start, end, responses::add);
+        ApiPagedChannelHistory apiChannelHistory = merge(responses);
+        if (apiChannelHistory.apiMessages.isEmpty()) {
+            return new ChannelHistory(end, start, Collections.emptyList());
+        }
+        return historyConverter.convert(Collections.singletonList(apiChannelHistory));
+    }
+
+    /**
+     * Hands every page to {@code pageConsumer} as soon as it arrives, so the history is never held in memory as a
+     * whole. The window is split into time slices which are paged through concurrently, at most
+     * {@code maxRequestsInFlight} of them at once. Paging within a slice stays sequential since every page needs the
+     * cursor of the one before.
+     * <p>
+     * The consumer is always called on the calling thread. Pages from one slice come newest first but slices
+     * interleave, and fetching pauses while the consumer falls behind.
+     */
+    public void streamChannelHistory(LocalDateTime start, LocalDateTime end, Consumer<ApiPagedChannelHistory> pageConsumer) {
+        List<TimeSlice> slices = TimeSlice.split(end, start, sliceLength);
+        if (slices.isEmpty()) {
+            return;
+        }
+        BlockingQueue<FetchedPage> fetchedPages = new ArrayBlockingQueue<>(PAGES_BUFFERED_PER_REQUEST * maxRequestsInFlight);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxRequestsInFlight, slices.size()));
+        try {
+            for (TimeSlice slice : slices) {
+                executor.execute(() -> fetchSlice(slice, fetchedPages));
+            }
+            int slicesRemaining = slices.size();
+            while (slicesRemaining > 0) {
+                FetchedPage fetchedPage = take(fetchedPages);
+                if (fetchedPage.failure != null) {
+                    throw rethrown(fetchedPage.failure);
+                } else if (fetchedPage.page == null) {
+                    slicesRemaining--;
+                } else {
+                    pageConsumer.accept(fetchedPage.page);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stores the history since the store was last synced, or since {@code end} if that's later, and only marks the store
+     * as synced up to {@code start} once every slice has been stored. A sync that fails leaves the mark where it was, so
+     * the next one fetches the slices that were missed again.
+     */
+    public void syncInto(MessageStore messageStore, LocalDateTime start, LocalDateTime end) throws IOException {
+        LocalDateTime syncFrom = messageStore.getSyncedUpTo()
+                .filter(syncedUpTo -> syncedUpTo.isAfter(end))
+                .orElse(end);
+        streamChannelHistory(start, syncFrom, messageStore);
+        messageStore.markSyncedUpTo(start);
+    }
+
+    private void fetchSlice(TimeSlice slice, BlockingQueue<FetchedPage> fetchedPages) {
+        try {
+            ApiPagedResponse apiPagedResponse = new ApiPagedResponse(slice.getTo());
+            do {
+                ApiPagedChannelHistory page = fetchChannelHistory(apiPagedResponse, slice);
+                apiPagedResponse.addResponse(page);
+                fetchedPages.put(FetchedPage.of(page));
+            } while (apiPagedResponse.hasMoreResponses() && apiPagedResponse.responsesAreAfter(slice.getFromEpochMicros()));
+            fetchedPages.put(FetchedPage.SLICE_DONE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            putFailure(e, fetchedPages);
+        }
     }
 
-    private List<ApiPagedChannelHistory> getApiChannelHistory(LocalDateTime start, LocalDateTime end) {
-        ApiPagedResponse apiPagedResponse = new ApiPagedResponse(start);
-        do {
-            appendChannelHistory(apiPagedResponse);
-        } while (apiPagedResponse.responsesAreAfter(end) && apiPagedResponse.hasMoreResponses());
-        return apiPagedResponse.getResponses();
+    /**
+     * Errors are handed over too, a slice that stopped without saying so would leave the consumer waiting for it
+     * forever.
+     */
+    private static void putFailure(Throwable failure, BlockingQueue<FetchedPage> fetchedPages) {
+        try {
+            fetchedPages.put(FetchedPage.failed(failure));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
-    private void appendChannelHistory(ApiPagedResponse apiPagedResponse) {
-        Response<ApiPagedChannelHistory> response = fetchApiChannelHistoryResponse(apiPagedResponse.getLastResponseEpochTime());
+    private static RuntimeException rethrown(Throwable failure) {
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure instanceof RuntimeException) {
+            return (RuntimeException) failure;
+        }
+        return new IllegalStateException("Couldn't fetch the channel history", failure);
+    }
+
+    private static FetchedPage take(BlockingQueue<FetchedPage> fetchedPages) {
+        try {
+            return fetchedPages.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fetching the channel history", e);
+        }
+    }
+
+    /**
+     * Puts every message of every page in a single page, newest first, keeping one message per timestamp.
+     */
+    private static ApiPagedChannelHistory merge(List<ApiPagedChannelHistory> responses) {
+        List<ApiPagedChannelHistory.ApiMessage> apiMessages = new ArrayList<>();
+        for (ApiPagedChannelHistory response : responses) {
+            apiMessages.addAll(response.apiMessages);
+        }
+        apiMessages.sort((lhs, rhs) -> Long.compare(rhs.timeStamp, lhs.timeStamp));
+        List<ApiPagedChannelHistory.ApiMessage> newestFirst = new ArrayList<>(apiMessages.size());
+        for (ApiPagedChannelHistory.ApiMessage apiMessage : apiMessages) {
+            if (newestFirst.isEmpty() || newestFirst.get(newestFirst.size() - 1).timeStamp != apiMessage.timeStamp) {
+                newestFirst.add(apiMessage);
+            }
+        }
+        ApiPagedChannelHistory merged = new ApiPagedChannelHistory();
+        merged.ok = "true";
+        merged.apiMessages = newestFirst;
+        merged.hasMore = false;
+        return merged;
+    }
+
+    private ApiPagedChannelHistory fetchChannelHistory(ApiPagedResponse apiPagedResponse, TimeSlice slice) {
+        Response<ApiPagedChannelHistory> response = fetchApiChannelHistoryResponse(apiPagedResponse.getLastResponseEpochTime(), slice.getOldestTimestamp());
         if (response.isSuccess()) {
-            ApiPagedChannelHistory apiPagedChannelHistory = response.body();
-            apiPagedResponse.addResponse(apiPagedChannelHistory);
+            return response.body();
         } else {
             throw new IllegalStateException("No internet or server down or something."
                     + " code: " + response.code()
@@ -55,13 +186,34 @@ class SlackHistoryFetcher {
         }
     }
 
-    private Response<ApiPagedChannelHistory> fetchApiChannelHistoryResponse(String lastResponseEpochTime) {
+    private Response<ApiPagedChannelHistory> fetchApiChannelHistoryResponse(String lastResponseEpochTime, String oldestEpochTime) {
         Call<ApiPagedChannelHistory> channelHistory = slackWebService
-                .getChannelHistory(slackToken, channel, lastResponseEpochTime, NUMBER_OF_RESULTS);
+                .getChannelHistory(slackToken, channel, lastResponseEpochTime, oldestEpochTime, NUMBER_OF_RESULTS);
         try {
             return channelHistory.execute();
         } catch (IOException e) {
-            throw new IllegalStateException("FooBar ", e);
+            throw new IllegalStateException("Couldn't fetch the history of channel " + channel + " from Slack", e);
+        }
+    }
+
+    private static class FetchedPage {
+
+        static final FetchedPage SLICE_DONE = new FetchedPage(null, null);
+
+        final ApiPagedChannelHistory page;
+        final Throwable failure;
+
+        static FetchedPage of(ApiPagedChannelHistory page) {
+            return new FetchedPage(page, null);
+        }
+
+        static FetchedPage failed(Throwable failure) {
+            return new FetchedPage(null, failure);
+        }
+
+        private FetchedPage(ApiPagedChannelHistory page, Throwable failure) {
+            this.page = page;
+            this.failure = failure;
         }
     }
 
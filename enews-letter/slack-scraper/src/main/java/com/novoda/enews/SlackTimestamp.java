@@ -0,0 +1,79 @@
+package com.novoda.enews;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Slack {@code ts} values, such as {@code "1480550400.000200"}, held as microseconds since the epoch in a plain
+ * {@code long} so they can be compared and range checked without parsing or allocating anything.
+ */
+final class SlackTimestamp {
+
+    private static final int MICROS_PER_SECOND = 1000000;
+    private static final int NANOS_PER_MICRO = 1000;
+    private static final int FRACTION_DIGITS = 6;
+
+    private SlackTimestamp() {
+        throw new IllegalStateException("NonInstantiableClassException");
+    }
+
+    /**
+     * Reads the seconds and the fraction digit by digit, a missing fraction or one shorter than six digits still
+     * counts in microseconds.
+     */
+    public static long parse(CharSequence timeStamp) {
+        int length = timeStamp.length();
+        if (length == 0) {
+            throw new IllegalArgumentException("Empty timestamp");
+        }
+        long seconds = 0;
+        int i = 0;
+        for (; i < length; i++) {
+            char c = timeStamp.charAt(i);
+            if (c == '.') {
+                break;
+            }
+            seconds = seconds * 10 + digit(timeStamp, c);
+        }
+        long micros = 0;
+        int fractionDigits = 0;
+        for (i++; i < length; i++) {
+            if (fractionDigits == FRACTION_DIGITS) {
+                throw new IllegalArgumentException("More than microsecond precision in " + timeStamp);
+            }
+            micros = micros * 10 + digit(timeStamp, timeStamp.charAt(i));
+            fractionDigits++;
+        }
+        for (; fractionDigits < FRACTION_DIGITS; fractionDigits++) {
+            micros *= 10;
+        }
+        return seconds * MICROS_PER_SECOND + micros;
+    }
+
+    private static int digit(CharSequence timeStamp, char c) {
+        if (c < '0' || c > '9') {
+            throw new IllegalArgumentException("Not a Slack timestamp: " + timeStamp);
+        }
+        return c - '0';
+    }
+
+    public static String format(long epochMicros) {
+        StringBuilder timeStamp = new StringBuilder(17);
+        timeStamp.append(Math.floorDiv(epochMicros, MICROS_PER_SECOND)).append('.');
+        long micros = Math.floorMod(epochMicros, MICROS_PER_SECOND);
+        for (long unit = MICROS_PER_SECOND / 10; unit > 1 && micros < unit; unit /= 10) {
+            timeStamp.append('0');
+        }
+        return timeStamp.append(micros).toString();
+    }
+
+    public static long of(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * MICROS_PER_SECOND + dateTime.getNano() / NANOS_PER_MICRO;
+    }
+
+    public static LocalDateTime toLocalDateTime(long epochMicros) {
+        long epochSecond = Math.floorDiv(epochMicros, MICROS_PER_SECOND);
+        int nanoOfSecond = (int) (Math.floorMod(epochMicros, MICROS_PER_SECOND) * NANOS_PER_MICRO);
+        return LocalDateTime.ofEpochSecond(epochSecond, nanoOfSecond, ZoneOffset.UTC);
+    }
+}
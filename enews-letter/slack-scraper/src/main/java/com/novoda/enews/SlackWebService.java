@@ -11,6 +11,7 @@ public interface SlackWebService {
             @Query("token") String token,
             @Query("channel") String channel,
             @Query("latest") String latest,
+            @Query("oldest") String oldest,
             @Query("count") int count);
 
 }
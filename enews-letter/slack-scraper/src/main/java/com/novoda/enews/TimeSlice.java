@@ -0,0 +1,59 @@
+package com.novoda.enews;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+class TimeSlice {
+
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final long fromEpochMicros;
+
+    /**
+     * Splits [from, to) into back to back slices of the given length, newest first.
+     */
+    public static List<TimeSlice> split(LocalDateTime from, LocalDateTime to, Duration sliceLength) {
+        List<TimeSlice> slices = new ArrayList<>();
+        LocalDateTime sliceTo = to;
+        while (sliceTo.isAfter(from)) {
+            LocalDateTime sliceFrom = sliceTo.minus(sliceLength);
+            if (sliceFrom.isBefore(from)) {
+                sliceFrom = from;
+            }
+            slices.add(new TimeSlice(sliceFrom, sliceTo));
+            sliceTo = sliceFrom;
+        }
+        return slices;
+    }
+
+    TimeSlice(LocalDateTime from, LocalDateTime to) {
+        this.from = from;
+        this.to = to;
+        this.fromEpochMicros = SlackTimestamp.of(from);
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public long getFromEpochMicros() {
+        return fromEpochMicros;
+    }
+
+    /**
+     * Slack excludes messages at exactly {@code oldest}, so asking from a microsecond earlier includes the start of the slice.
+     */
+    public String getOldestTimestamp() {
+        return SlackTimestamp.format(fromEpochMicros - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "TimeSlice{" +
+                "from=" + from +
+                ", to=" + to +
+                '}';
+    }
+}
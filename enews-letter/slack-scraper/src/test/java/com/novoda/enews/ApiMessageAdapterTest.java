@@ -0,0 +1,41 @@
+package com.novoda.enews;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ApiMessageAdapterTest {
+
+    @Test
+    public void messageFields_areReadAndTheOthersSkipped() throws Exception {
+        String json = "{\"type\":\"message\",\"user\":\"U1\",\"attachments\":[{\"ts\":\"1\"}],\"text\":\"hi\",\"ts\":\"1480550400.000200\"}";
+
+        ApiPagedChannelHistory.ApiMessage apiMessage = new Gson().fromJson(json, ApiPagedChannelHistory.ApiMessage.class);
+
+        assertThat(apiMessage.type).isEqualTo("message");
+        assertThat(apiMessage.text).isEqualTo("hi");
+        assertThat(apiMessage.timeStamp).isEqualTo(1480550400000200L);
+    }
+
+    @Test
+    public void nullText_staysNull() throws Exception {
+        String json = "{\"type\":\"message\",\"text\":null,\"ts\":\"1480550400.000200\"}";
+
+        ApiPagedChannelHistory.ApiMessage apiMessage = new Gson().fromJson(json, ApiPagedChannelHistory.ApiMessage.class);
+
+        assertThat(apiMessage.text).isNull();
+    }
+
+    @Test
+    public void message_roundTripsThroughJson() throws Exception {
+        ApiPagedChannelHistory.ApiMessage apiMessage = new ApiPagedChannelHistory.ApiMessage();
+        apiMessage.type = "message";
+        apiMessage.text = "hi";
+        apiMessage.timeStamp = 1480550400000200L;
+
+        String json = new Gson().toJson(apiMessage);
+
+        assertThat(json).isEqualTo("{\"text\":\"hi\",\"type\":\"message\",\"ts\":\"1480550400.000200\"}");
+    }
+}
@@ -35,7 +35,7 @@ public class ApiPagedResponseTest {
         ApiPagedChannelHistory apiPagedChannelHistory = new ApiPagedChannelHistory();
         apiPagedChannelHistory.apiMessages = new ArrayList<>();
         ApiPagedChannelHistory.ApiMessage apiMessage = new ApiPagedChannelHistory.ApiMessage();
-        apiMessage.timeStamp = timestamp;
+        apiMessage.timeStamp = SlackTimestamp.parse(timestamp);
         apiPagedChannelHistory.apiMessages.add(apiMessage);
         return apiPagedChannelHistory;
     }
@@ -0,0 +1,49 @@
+package com.novoda.enews;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EnewsFilterTest {
+
+    @Test
+    public void messageWithTagAndLink_inAnyCase_isPassedOn() throws Exception {
+        List<String> passedOn = filter("Worth a read #eNews HTTPS://example.com", "#ENEWS http://example.com");
+
+        assertThat(passedOn).containsExactly("Worth a read #eNews HTTPS://example.com", "#ENEWS http://example.com");
+    }
+
+    @Test
+    public void messageMissingTagOrLink_isDropped() throws Exception {
+        List<String> passedOn = filter("#enews but no link", "http://example.com without a tag", "#enew http://example.com");
+
+        assertThat(passedOn).isEmpty();
+    }
+
+    @Test
+    public void messageWithoutText_isDropped() throws Exception {
+        List<String> passedOn = filter((String) null);
+
+        assertThat(passedOn).isEmpty();
+    }
+
+    @Test
+    public void needleAtTheVeryEnd_isFound() throws Exception {
+        assertThat(EnewsFilter.containsIgnoreCase("see #ENEWS", "#enews")).isTrue();
+        assertThat(EnewsFilter.containsIgnoreCase("see #ENEW", "#enews")).isFalse();
+    }
+
+    private static List<String> filter(String... texts) {
+        List<String> passedOn = new ArrayList<>();
+        EnewsFilter enewsFilter = new EnewsFilter(message -> passedOn.add(message.toString()));
+        for (String text : texts) {
+            ApiPagedChannelHistory.ApiMessage apiMessage = new ApiPagedChannelHistory.ApiMessage();
+            apiMessage.text = text;
+            enewsFilter.accept(apiMessage);
+        }
+        return passedOn;
+    }
+}
@@ -0,0 +1,59 @@
+package com.novoda.enews;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LinkExtractorTest {
+
+    @Test
+    public void slackWrappedLinks_areExtractedWithoutTheirLabel() throws Exception {
+        List<String> links = extract("#enews <https://example.com/article|example.com/article> and <http://other.org/post>");
+
+        assertThat(links).containsExactly("https://example.com/article", "http://other.org/post");
+    }
+
+    @Test
+    public void pastedLink_stopsBeforeTrailingPunctuation() throws Exception {
+        List<String> links = extract("Have a look (http://example.com/article).");
+
+        assertThat(links).containsExactly("http://example.com/article");
+    }
+
+    @Test
+    public void schemeAndHost_areLowercasedButThePathIsNot() throws Exception {
+        List<String> links = extract("HTTPS://Example.COM/Some/Article");
+
+        assertThat(links).containsExactly("https://example.com/Some/Article");
+    }
+
+    @Test
+    public void trackingParametersAndFragment_areDropped() throws Exception {
+        List<String> links = extract("<https://example.com/a?utm_source=slack&amp;id=4&amp;UTM_medium=chat#comments>");
+
+        assertThat(links).containsExactly("https://example.com/a?id=4");
+    }
+
+    @Test
+    public void queryWithOnlyTrackingParameters_isDroppedWhole() throws Exception {
+        List<String> links = extract("<https://example.com/a/?utm_source=slack>");
+
+        assertThat(links).containsExactly("https://example.com/a");
+    }
+
+    @Test
+    public void wordsStartingWithHttp_areNotLinks() throws Exception {
+        List<String> links = extract("httpd isn't a link, nor is http:/broken");
+
+        assertThat(links).isEmpty();
+    }
+
+    private static List<String> extract(String text) {
+        List<String> links = new ArrayList<>();
+        new LinkExtractor().extract(text, link -> links.add(link.toString()));
+        return links;
+    }
+}
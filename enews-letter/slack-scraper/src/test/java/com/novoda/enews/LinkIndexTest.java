@@ -0,0 +1,43 @@
+package com.novoda.enews;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LinkIndexTest {
+
+    @Test
+    public void repostedLink_isCountedOnce() throws Exception {
+        LinkIndex linkIndex = new LinkIndex();
+
+        linkIndex.add("https://example.com/a");
+        linkIndex.add(new StringBuilder("https://example.com/a"));
+        linkIndex.add("https://example.com/b");
+
+        assertThat(linkIndex.size()).isEqualTo(2);
+        assertThat(linkIndex.getLinks()).extracting(LinkIndex.Link::getUrl).containsExactly("https://example.com/a", "https://example.com/b");
+        assertThat(linkIndex.getLinks()).extracting(LinkIndex.Link::getMentions).containsExactly(2, 1);
+    }
+
+    @Test
+    public void manyLinks_surviveTheTableGrowing() throws Exception {
+        LinkIndex linkIndex = new LinkIndex();
+
+        for (int i = 0; i < 10000; i++) {
+            linkIndex.add("https://example.com/" + i);
+        }
+        for (int i = 0; i < 10000; i += 2) {
+            linkIndex.add("https://example.com/" + i);
+        }
+
+        assertThat(linkIndex.size()).isEqualTo(10000);
+        assertThat(linkIndex.getLinks().get(0).getMentions()).isEqualTo(2);
+        assertThat(linkIndex.getLinks().get(9999).getMentions()).isEqualTo(1);
+    }
+
+    @Test
+    public void fingerprint_dependsOnEveryCharacter() throws Exception {
+        assertThat(LinkIndex.fingerprint("https://example.com/ab")).isNotEqualTo(LinkIndex.fingerprint("https://example.com/ba"));
+        assertThat(LinkIndex.fingerprint("https://example.com/ab")).isEqualTo(LinkIndex.fingerprint(new StringBuilder("https://example.com/ab")));
+    }
+}
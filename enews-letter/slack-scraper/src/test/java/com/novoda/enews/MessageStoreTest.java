@@ -0,0 +1,145 @@
+package com.novoda.enews;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageStoreTest {
+
+    private static final LocalDateTime TWENTY16_DEC_1_0_0_0 = LocalDateTime.of(2016, 12, 1, 0, 0, 0);
+    private static final LocalDateTime TWENTY16_DEC_2_0_0_0 = LocalDateTime.of(2016, 12, 2, 0, 0, 0);
+    private static final LocalDateTime TWENTY16_DEC_3_0_0_0 = LocalDateTime.of(2016, 12, 3, 0, 0, 0);
+    private static final String TWENTY16_NOV_30_12_0_0 = "1480507200.000000";
+    private static final String TWENTY16_DEC_1_0_0_0_TS = "1480550400.000000";
+    private static final String TWENTY16_DEC_1_12_0_0 = "1480593600.000000";
+    private static final String TWENTY16_DEC_2_12_0_0 = "1480680000.000200";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void messagesInRange_areReadBackNewestFirst() throws Exception {
+        try (MessageStore messageStore = MessageStore.open(storeFile())) {
+            messageStore.accept(page(TWENTY16_DEC_2_12_0_0, TWENTY16_DEC_1_12_0_0, TWENTY16_DEC_1_0_0_0_TS, TWENTY16_NOV_30_12_0_0));
+
+            assertThat(read(messageStore, TWENTY16_DEC_1_0_0_0, TWENTY16_DEC_2_0_0_0))
+                    .containsExactly(TWENTY16_DEC_1_12_0_0, TWENTY16_DEC_1_0_0_0_TS);
+        }
+    }
+
+    @Test
+    public void messageAlreadyStored_isNotAppendedAgain() throws Exception {
+        try (MessageStore messageStore = MessageStore.open(storeFile())) {
+            messageStore.accept(page(TWENTY16_DEC_1_12_0_0));
+            messageStore.accept(page(TWENTY16_DEC_1_12_0_0));
+
+            assertThat(messageStore.size()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void reopenedStore_keepsMessagesAndSyncedUpTo() throws Exception {
+        File file = storeFile();
+        try (MessageStore messageStore = MessageStore.open(file)) {
+            messageStore.accept(page(TWENTY16_DEC_1_12_0_0, TWENTY16_DEC_2_12_0_0));
+            messageStore.markSyncedUpTo(TWENTY16_DEC_3_0_0_0);
+        }
+
+        try (MessageStore messageStore = MessageStore.open(file)) {
+            assertThat(read(messageStore, TWENTY16_DEC_1_0_0_0, TWENTY16_DEC_3_0_0_0))
+                    .containsExactly(TWENTY16_DEC_2_12_0_0, TWENTY16_DEC_1_12_0_0);
+            assertThat(messageStore.getSyncedUpTo()).contains(TWENTY16_DEC_3_0_0_0);
+        }
+    }
+
+    @Test
+    public void storeNeverMarkedSynced_hasNotSyncedAnything() throws Exception {
+        File file = storeFile();
+        try (MessageStore messageStore = MessageStore.open(file)) {
+            messageStore.accept(page(TWENTY16_DEC_1_12_0_0, TWENTY16_DEC_2_12_0_0));
+        }
+
+        try (MessageStore messageStore = MessageStore.open(file)) {
+            assertThat(messageStore.getSyncedUpTo()).isEmpty();
+        }
+    }
+
+    @Test
+    public void partlyWrittenRecord_isDroppedOnOpen() throws Exception {
+        File file = storeFile();
+        try (MessageStore messageStore = MessageStore.open(file)) {
+            messageStore.accept(page(TWENTY16_DEC_1_12_0_0, TWENTY16_DEC_2_12_0_0));
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.setLength(raw.length() - 3);
+        }
+
+        try (MessageStore messageStore = MessageStore.open(file)) {
+            messageStore.accept(page(TWENTY16_DEC_2_12_0_0));
+
+            assertThat(read(messageStore, TWENTY16_DEC_1_0_0_0, TWENTY16_DEC_3_0_0_0))
+                    .containsExactly(TWENTY16_DEC_2_12_0_0, TWENTY16_DEC_1_12_0_0);
+        }
+    }
+
+    @Test
+    public void recordWithAHugeLength_isDroppedOnOpen() throws Exception {
+        assertTornRecordIsDroppedOnOpen(Integer.MAX_VALUE - 8);
+    }
+
+    @Test
+    public void recordWithANegativeLength_isDroppedOnOpen() throws Exception {
+        assertTornRecordIsDroppedOnOpen(-5);
+    }
+
+    private void assertTornRecordIsDroppedOnOpen(int typeLength) throws Exception {
+        File file = storeFile();
+        try (MessageStore messageStore = MessageStore.open(file)) {
+            messageStore.accept(page(TWENTY16_DEC_1_12_0_0, TWENTY16_DEC_2_12_0_0));
+        }
+        int lastRecordLength = 8 + 4 + "message".length() + 4 + ("message at " + TWENTY16_DEC_2_12_0_0).length();
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(raw.length() - lastRecordLength + 8);
+            raw.writeInt(typeLength);
+        }
+
+        try (MessageStore messageStore = MessageStore.open(file)) {
+            assertThat(messageStore.size()).isEqualTo(1);
+            messageStore.accept(page(TWENTY16_DEC_2_12_0_0));
+
+            assertThat(read(messageStore, TWENTY16_DEC_1_0_0_0, TWENTY16_DEC_3_0_0_0))
+                    .containsExactly(TWENTY16_DEC_2_12_0_0, TWENTY16_DEC_1_12_0_0);
+        }
+    }
+
+    private File storeFile() {
+        return new File(temporaryFolder.getRoot(), "enews/messages.log");
+    }
+
+    private static List<String> read(MessageStore messageStore, LocalDateTime from, LocalDateTime to) {
+        List<String> timeStamps = new ArrayList<>();
+        messageStore.read(from, to, apiMessage -> timeStamps.add(SlackTimestamp.format(apiMessage.timeStamp)));
+        return timeStamps;
+    }
+
+    private static ApiPagedChannelHistory page(String... timeStamps) {
+        ApiPagedChannelHistory page = new ApiPagedChannelHistory();
+        page.apiMessages = new ArrayList<>();
+        for (String timeStamp : timeStamps) {
+            ApiPagedChannelHistory.ApiMessage apiMessage = new ApiPagedChannelHistory.ApiMessage();
+            apiMessage.text = "message at " + timeStamp;
+            apiMessage.type = "message";
+            apiMessage.timeStamp = SlackTimestamp.parse(timeStamp);
+            page.apiMessages.add(apiMessage);
+        }
+        return page;
+    }
+}
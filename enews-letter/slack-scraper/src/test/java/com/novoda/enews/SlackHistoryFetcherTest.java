@@ -0,0 +1,346 @@
+package com.novoda.enews;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class SlackHistoryFetcherTest {
+
+    private static final LocalDateTime TWENTY16_DEC_1_0_0_0 = LocalDateTime.of(2016, 12, 1, 0, 0, 0);
+    private static final LocalDateTime TWENTY16_DEC_8_0_0_0 = LocalDateTime.of(2016, 12, 8, 0, 0, 0);
+    private static final LocalDateTime TWENTY16_DEC_4_12_0_0 = LocalDateTime.of(2016, 12, 4, 12, 0, 0);
+    private static final String TWENTY16_DEC_1_0_0_0_TS = "1480550400.000000";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void messagesAcrossSeveralSlices_areMergedNewestFirst() throws Exception {
+        FakeSlackWebService slackWebService = new FakeSlackWebService(3);
+        for (int hour = 0; hour < 7 * 24; hour++) {
+            slackWebService.addMessage("message " + hour, TWENTY16_DEC_1_0_0_0.plusHours(hour));
+        }
+        SlackHistoryFetcher fetcher = createFetcher(slackWebService, 2);
+
+        ChannelHistory channelHistory = fetcher.getChannelHistory(TWENTY16_DEC_8_0_0_0, TWENTY16_DEC_1_0_0_0);
+
+        List<ChannelHistory.Message> messages = channelHistory.getMessages();
+        assertThat(messages).hasSize(7 * 24);
+        assertThat(messages.get(0).toString()).isEqualTo("message " + (7 * 24 - 1));
+        assertThat(messages.get(messages.size() - 1).toString()).isEqualTo("message 0");
+        assertThat(channelHistory.getHistoryFrom()).isEqualTo(TWENTY16_DEC_1_0_0_0);
+    }
+
+    @Test
+    public void messagesSharingATimestamp_areKeptOnce() throws Exception {
+        FakeSlackWebService slackWebService = new FakeSlackWebService(3);
+        slackWebService.addMessage("edited", TWENTY16_DEC_1_0_0_0.plusHours(1));
+        slackWebService.addMessage("original", TWENTY16_DEC_1_0_0_0.plusHours(1));
+        SlackHistoryFetcher fetcher = createFetcher(slackWebService, 2);
+
+        ChannelHistory channelHistory = fetcher.getChannelHistory(TWENTY16_DEC_8_0_0_0, TWENTY16_DEC_1_0_0_0);
+
+        assertThat(channelHistory.getMessages()).hasSize(1);
+    }
+
+    @Test
+    public void messageOnASliceBoundary_isFetchedOnce() throws Exception {
+        FakeSlackWebService slackWebService = new FakeSlackWebService(3);
+        slackWebService.addMessage("midnight", TWENTY16_DEC_1_0_0_0.plusDays(1));
+        slackWebService.addMessage("first", TWENTY16_DEC_1_0_0_0);
+        SlackHistoryFetcher fetcher = createFetcher(slackWebService, 2);
+
+        ChannelHistory channelHistory = fetcher.getChannelHistory(TWENTY16_DEC_8_0_0_0, TWENTY16_DEC_1_0_0_0);
+
+        assertThat(channelHistory.getMessages()).extracting(Object::toString).containsExactly("midnight", "first");
+        assertThat(slackWebService.fetchedTimeStamps()).containsOnlyOnce(TWENTY16_DEC_1_0_0_0_TS);
+    }
+
+    @Test
+    public void requestsInFlight_reachButNeverExceedTheLimit() throws Exception {
+        FakeSlackWebService slackWebService = new FakeSlackWebService(2);
+        for (int hour = 0; hour < 7 * 24; hour++) {
+            slackWebService.addMessage("message " + hour, TWENTY16_DEC_1_0_0_0.plusHours(hour));
+        }
+        slackWebService.holdRequestsUntilInFlight(3);
+        SlackHistoryFetcher fetcher = createFetcher(slackWebService, 3);
+
+        fetcher.getChannelHistory(TWENTY16_DEC_8_0_0_0, TWENTY16_DEC_1_0_0_0);
+
+        assertThat(slackWebService.maxRequestsInFlight()).isEqualTo(3);
+    }
+
+    @Test
+    public void channelWithoutMessages_returnsNoMessages() throws Exception {
+        FakeSlackWebService slackWebService = new FakeSlackWebService(3);
+        SlackHistoryFetcher fetcher = createFetcher(slackWebService, 2);
+
+        ChannelHistory channelHistory = fetcher.getChannelHistory(TWENTY16_DEC_8_0_0_0, TWENTY16_DEC_1_0_0_0);
+
+        assertThat(channelHistory.getMessages()).isEmpty();
+    }
+
+    @Test
+    public void streamedPages_areHandedOverOnTheCallingThread() throws Exception {
+        FakeSlackWebService slackWebService = new FakeSlackWebService(3);
+        for (int hour = 0; hour < 7 * 24; hour++) {
+            slackWebService.addMessage("message " + hour, TWENTY16_DEC_1_0_0_0.plusHours(hour));
+        }
+        SlackHistoryFetcher fetcher = createFetcher(slackWebService, 3);
+        Thread callingThread = Thread.currentThread();
+        List<Thread> consumingThreads = new ArrayList<>();
+        AtomicInteger messageCount = new AtomicInteger();
+
+        fetcher.streamChannelHistory(TWENTY16_DEC_8_0_0_0, TWENTY16_DEC_1_0_0_0, page -> {
+            consumingThreads.add(Thread.currentThread());
+            messageCount.addAndGet(page.apiMessages.size());
+        });
+
+        assertThat(consumingThreads).containsOnly(callingThread);
+        assertThat(messageCount.get()).isEqualTo(7 * 24);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failingRequest_failsTheStream() throws Exception {
+        FakeSlackWebService slackWebService = new FakeSlackWebService(3);
+        slackWebService.failRequests();
+        SlackHistoryFetcher fetcher = createFetcher(slackWebService, 2);
+
+        fetcher.streamChannelHistory(TWENTY16_DEC_8_0_0_0, TWENTY16_DEC_1_0_0_0, page -> {
+        });
+    }
+
+    @Test(timeout = 10000, expected = StackOverflowError.class)
+    public void sliceThrowingAnError_failsTheStreamInsteadOfHangingIt() throws Exception {
+        FakeSlackWebService slackWebService = new FakeSlackWebService(2);
+        for (int hour = 0; hour < 7 * 24; hour++) {
+            slackWebService.addMessage("message " + hour, TWENTY16_DEC_1_0_0_0.plusHours(hour));
+        }
+        slackWebService.throwErrorBefore(TWENTY16_DEC_4_12_0_0);
+        SlackHistoryFetcher fetcher = createFetcher(slackWebService, 3);
+
+        fetcher.streamChannelHistory(TWENTY16_DEC_8_0_0_0, TWENTY16_DEC_1_0_0_0, page -> {
+        });
+    }
+
+    @Test
+    public void sliceFailingMidway_leavesTheSyncMarkSoTheNextSyncFetchesItAgain() throws Exception {
+        FakeSlackWebService slackWebService = new FakeSlackWebService(2);
+        for (int hour = 0; hour < 7 * 24; hour++) {
+            slackWebService.addMessage("message " + hour, TWENTY16_DEC_1_0_0_0.plusHours(hour));
+        }
+        slackWebService.failRequestsBefore(TWENTY16_DEC_4_12_0_0);
+        SlackHistoryFetcher fetcher = createFetcher(slackWebService, 3);
+        File storeFile = new File(temporaryFolder.getRoot(), "messages.log");
+        try (MessageStore messageStore = MessageStore.open(storeFile)) {
+            fetcher.syncInto(messageStore, TWENTY16_DEC_8_0_0_0, TWENTY16_DEC_1_0_0_0);
+            fail("The sync should have failed");
+        } catch (IllegalStateException expected) {
+            // the slice of December 4th failed after its first pages were stored
+        }
+        slackWebService.failRequestsBefore(LocalDateTime.MIN);
+
+        try (MessageStore messageStore = MessageStore.open(storeFile)) {
+            assertThat(messageStore.size()).isBetween(1, 7 * 24 - 1);
+            assertThat(messageStore.getSyncedUpTo()).isEmpty();
+
+            fetcher.syncInto(messageStore, TWENTY16_DEC_8_0_0_0, TWENTY16_DEC_1_0_0_0);
+
+            assertThat(messageStore.size()).isEqualTo(7 * 24);
+            assertThat(messageStore.getSyncedUpTo()).contains(TWENTY16_DEC_8_0_0_0);
+        }
+    }
+
+    private static SlackHistoryFetcher createFetcher(SlackWebService slackWebService, int maxRequestsInFlight) {
+        return new SlackHistoryFetcher(slackWebService, "token", "channel", new HistoryConverter(), Duration.ofDays(1), maxRequestsInFlight);
+    }
+
+    /**
+     * Serves {@code channels.history} from memory the way Slack does: newest first, {@code latest} and {@code oldest}
+     * exclusive, at most {@code pageSize} messages per page.
+     */
+    private static class FakeSlackWebService implements SlackWebService {
+
+        private final List<ApiPagedChannelHistory.ApiMessage> messages = new ArrayList<>();
+        private final List<String> fetchedTimeStamps = new ArrayList<>();
+        private final AtomicInteger requestsInFlight = new AtomicInteger();
+        private final AtomicInteger maxRequestsInFlight = new AtomicInteger();
+        private final int pageSize;
+        private volatile boolean failRequests;
+        private volatile LocalDateTime failRequestsBefore = LocalDateTime.MIN;
+        private volatile LocalDateTime throwErrorBefore = LocalDateTime.MIN;
+        private volatile CountDownLatch requestsToHoldFor = new CountDownLatch(0);
+
+        FakeSlackWebService(int pageSize) {
+            this.pageSize = pageSize;
+        }
+
+        void addMessage(String text, LocalDateTime dateTime) {
+            ApiPagedChannelHistory.ApiMessage apiMessage = new ApiPagedChannelHistory.ApiMessage();
+            apiMessage.text = text;
+            apiMessage.type = "message";
+            apiMessage.timeStamp = SlackTimestamp.of(dateTime);
+            messages.add(apiMessage);
+        }
+
+        /**
+         * Holds the first requests until that many are in flight together, giving up after a while so fetching one
+         * request at a time fails the test rather than hanging it.
+         */
+        void holdRequestsUntilInFlight(int requestCount) {
+            requestsToHoldFor = new CountDownLatch(requestCount);
+        }
+
+        /**
+         * Fails the requests for pages that end before the given time, so a slice spanning it fails part way through.
+         */
+        void failRequestsBefore(LocalDateTime dateTime) {
+            failRequestsBefore = dateTime;
+        }
+
+        /**
+         * Throws an {@link Error} out of the requests for pages that end before the given time, the way a parser running
+         * out of stack would.
+         */
+        void throwErrorBefore(LocalDateTime dateTime) {
+            throwErrorBefore = dateTime;
+        }
+
+        void failRequests() {
+            failRequests = true;
+        }
+
+        synchronized List<String> fetchedTimeStamps() {
+            return new ArrayList<>(fetchedTimeStamps);
+        }
+
+        int maxRequestsInFlight() {
+            return maxRequestsInFlight.get();
+        }
+
+        @Override
+        public Call<ApiPagedChannelHistory> getChannelHistory(String token, String channel, String latest, String oldest, int count) {
+            return new FakeCall(() -> {
+                if (isBefore(latest, throwErrorBefore)) {
+                    throw new StackOverflowError();
+                }
+                return failRequests || isBefore(latest, failRequestsBefore) ? null : page(latest, oldest, Math.min(count, pageSize));
+            });
+        }
+
+        private static boolean isBefore(String latest, LocalDateTime dateTime) {
+            return dateTime != LocalDateTime.MIN && SlackTimestamp.parse(latest) < SlackTimestamp.of(dateTime);
+        }
+
+        private ApiPagedChannelHistory page(String latest, String oldest, int count) {
+            int inFlight = requestsInFlight.incrementAndGet();
+            maxRequestsInFlight.accumulateAndGet(inFlight, Math::max);
+            try {
+                requestsToHoldFor.countDown();
+                requestsToHoldFor.await(5, TimeUnit.SECONDS);
+                Thread.sleep(2);
+                long latestEpochMicros = SlackTimestamp.parse(latest);
+                long oldestEpochMicros = SlackTimestamp.parse(oldest);
+                List<ApiPagedChannelHistory.ApiMessage> matching = new ArrayList<>();
+                for (ApiPagedChannelHistory.ApiMessage message : newestFirst()) {
+                    if (message.timeStamp < latestEpochMicros && message.timeStamp > oldestEpochMicros) {
+                        matching.add(message);
+                    }
+                }
+                ApiPagedChannelHistory page = new ApiPagedChannelHistory();
+                page.ok = "true";
+                page.apiMessages = new ArrayList<>(matching.subList(0, Math.min(count, matching.size())));
+                page.hasMore = matching.size() > count;
+                recordFetched(page.apiMessages);
+                return page;
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                requestsInFlight.decrementAndGet();
+            }
+        }
+
+        private synchronized List<ApiPagedChannelHistory.ApiMessage> newestFirst() {
+            List<ApiPagedChannelHistory.ApiMessage> sorted = new ArrayList<>(messages);
+            sorted.sort((lhs, rhs) -> Long.compare(rhs.timeStamp, lhs.timeStamp));
+            return sorted;
+        }
+
+        private synchronized void recordFetched(List<ApiPagedChannelHistory.ApiMessage> apiMessages) {
+            for (ApiPagedChannelHistory.ApiMessage apiMessage : apiMessages) {
+                fetchedTimeStamps.add(SlackTimestamp.format(apiMessage.timeStamp));
+            }
+        }
+    }
+
+    private interface PageSource {
+        ApiPagedChannelHistory page();
+    }
+
+    private static class FakeCall implements Call<ApiPagedChannelHistory> {
+
+        private final PageSource pageSource;
+        private boolean executed;
+
+        FakeCall(PageSource pageSource) {
+            this.pageSource = pageSource;
+        }
+
+        @Override
+        public Response<ApiPagedChannelHistory> execute() {
+            executed = true;
+            ApiPagedChannelHistory page = pageSource.page();
+            if (page == null) {
+                return Response.error(500, ResponseBody.create(MediaType.parse("application/json"), "{\"ok\":false}"));
+            }
+            return Response.success(page);
+        }
+
+        @Override
+        public void enqueue(Callback<ApiPagedChannelHistory> callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return executed;
+        }
+
+        @Override
+        public void cancel() {
+            // nothing in flight to cancel
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return false;
+        }
+
+        @Override
+        public Call<ApiPagedChannelHistory> clone() {
+            return new FakeCall(pageSource);
+        }
+
+        public Request request() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
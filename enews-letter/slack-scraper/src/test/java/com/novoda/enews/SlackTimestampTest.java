@@ -0,0 +1,53 @@
+package com.novoda.enews;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SlackTimestampTest {
+
+    private static final String TWENTY16_DEC_1_0_0_0_AND_200_MICROS = "1480550400.000200";
+    private static final long TWENTY16_DEC_1_0_0_0_AND_200_MICROS_EPOCH_MICROS = 1480550400000200L;
+
+    @Test
+    public void timestamp_isParsedToEpochMicros() throws Exception {
+        assertThat(SlackTimestamp.parse(TWENTY16_DEC_1_0_0_0_AND_200_MICROS)).isEqualTo(TWENTY16_DEC_1_0_0_0_AND_200_MICROS_EPOCH_MICROS);
+    }
+
+    @Test
+    public void timestampWithShortOrMissingFraction_isStillInMicros() throws Exception {
+        assertThat(SlackTimestamp.parse("1480550400.5")).isEqualTo(1480550400500000L);
+        assertThat(SlackTimestamp.parse("1480550400")).isEqualTo(1480550400000000L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void somethingElse_isRejected() throws Exception {
+        SlackTimestamp.parse("1480550400.00a200");
+    }
+
+    @Test
+    public void epochMicros_areFormattedWithSixFractionDigits() throws Exception {
+        assertThat(SlackTimestamp.format(TWENTY16_DEC_1_0_0_0_AND_200_MICROS_EPOCH_MICROS)).isEqualTo(TWENTY16_DEC_1_0_0_0_AND_200_MICROS);
+        assertThat(SlackTimestamp.format(1480550400000000L)).isEqualTo("1480550400.000000");
+    }
+
+    @Test
+    public void localDateTime_roundTripsThroughEpochMicros() throws Exception {
+        LocalDateTime dateTime = LocalDateTime.of(2016, 12, 1, 0, 0, 0, 200000);
+
+        assertThat(SlackTimestamp.of(dateTime)).isEqualTo(TWENTY16_DEC_1_0_0_0_AND_200_MICROS_EPOCH_MICROS);
+        assertThat(SlackTimestamp.toLocalDateTime(TWENTY16_DEC_1_0_0_0_AND_200_MICROS_EPOCH_MICROS)).isEqualTo(dateTime);
+    }
+
+    @Test
+    public void tsInJson_isReadStraightIntoTheMessage() throws Exception {
+        String json = "{\"ok\":true,\"messages\":[{\"type\":\"message\",\"text\":\"hi\",\"ts\":\"1480550400.000200\"}],\"has_more\":false}";
+
+        ApiPagedChannelHistory page = new Gson().fromJson(json, ApiPagedChannelHistory.class);
+
+        assertThat(page.apiMessages.get(0).timeStamp).isEqualTo(TWENTY16_DEC_1_0_0_0_AND_200_MICROS_EPOCH_MICROS);
+    }
+}
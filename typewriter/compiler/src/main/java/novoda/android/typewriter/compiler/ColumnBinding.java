@@ -0,0 +1,31 @@
+package novoda.android.typewriter.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A setter of the model, how to read a column for it and the column names {@code @Mapper} points at it.
+ */
+class ColumnBinding {
+
+    final String setter;
+    final String reader;
+    final List<String> columnsMappedByMethod = new ArrayList<String>();
+
+    ColumnBinding(String setter, String reader) {
+        this.setter = setter;
+        this.reader = reader;
+    }
+
+    void mappedFromMethod(String column) {
+        columnsMappedByMethod.add(column);
+    }
+
+    String read(String columnIndex) {
+        return String.format(reader, columnIndex);
+    }
+
+    String indexName() {
+        return setter + "Column";
+    }
+}
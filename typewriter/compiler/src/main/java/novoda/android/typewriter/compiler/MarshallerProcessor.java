@@ -0,0 +1,230 @@
+package novoda.android.typewriter.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a {@code CursorMarshaller} for every class annotated with {@code @Marshalled}. Columns are matched to
+ * setters the same way {@code RichClass} does it at runtime: {@code @Mapper} on a setter, then {@code @Mapper} on a
+ * field, then the camelified column name.
+ */
+public class MarshallerProcessor extends AbstractProcessor {
+
+    static final String MARSHALLED = "novoda.android.typewriter.annotation.Marshalled";
+    static final String MAPPER = "novoda.android.typewriter.annotation.Mapper";
+    static final String GENERATED_SUFFIX = "_CursorMarshaller";
+    static final String SET = "set";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(MARSHALLED);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement marshalled = processingEnv.getElementUtils().getTypeElement(MARSHALLED);
+        if (marshalled == null) {
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(marshalled)) {
+            TypeElement model = (TypeElement) element;
+            try {
+                if (canInstantiate(model)) {
+                    write(model, bindingsOf(model), columnsMappedByField(model));
+                }
+            } catch (UnsupportedSetterException e) {
+                warning(e.setter, "typewriter can't read a column into " + e.setter + ", " + model + " is marshalled through reflection");
+            } catch (IOException e) {
+                error(model, "Couldn't write the marshaller for " + model + ": " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private boolean canInstantiate(TypeElement model) {
+        if (model.getKind() != ElementKind.CLASS || model.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(model, "@Marshalled only works on concrete classes");
+            return false;
+        }
+        if (model.getNestingKind() == NestingKind.MEMBER && !model.getModifiers().contains(Modifier.STATIC)) {
+            error(model, "@Marshalled classes nested in another class have to be static");
+            return false;
+        }
+        for (Element enclosing = model; enclosing.getKind() != ElementKind.PACKAGE; enclosing = enclosing.getEnclosingElement()) {
+            if (enclosing.getModifiers().contains(Modifier.PRIVATE)) {
+                error(model, "@Marshalled classes can't be private");
+                return false;
+            }
+        }
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(model.getEnclosedElements());
+        for (ExecutableElement constructor : constructors) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        error(model, "@Marshalled classes need a constructor without arguments");
+        return false;
+    }
+
+    /**
+     * No marshaller is generated if any setter takes a type the generated code can't read, so that reflection still
+     * sets every one of them.
+     *
+     * @return every setter the class can be marshalled through, with the column names {@code @Mapper} maps onto it
+     */
+    private Map<String, ColumnBinding> bindingsOf(TypeElement model) throws UnsupportedSetterException {
+        Map<String, ColumnBinding> bindings = new LinkedHashMap<String, ColumnBinding>();
+        List<ExecutableElement> methods = ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(model));
+        for (ExecutableElement method : methods) {
+            String name = method.getSimpleName().toString();
+            String column = mapperValue(method);
+            if (!isSetter(method) || (column == null && !name.startsWith(SET))) {
+                continue;
+            }
+            ColumnBinding binding = bindings.get(name);
+            if (binding == null) {
+                String reader = readerFor(method);
+                if (reader == null) {
+                    throw new UnsupportedSetterException(method);
+                }
+                binding = new ColumnBinding(name, reader);
+                bindings.put(name, binding);
+            }
+            if (column != null) {
+                binding.mappedFromMethod(column);
+            }
+        }
+        return bindings;
+    }
+
+    /**
+     * @return the name of the field {@code @Mapper} maps each column onto, the last field winning like in
+     * {@code RichClass}
+     */
+    private Map<String, String> columnsMappedByField(TypeElement model) {
+        Map<String, String> fields = new LinkedHashMap<String, String>();
+        for (VariableElement field : ElementFilter.fieldsIn(model.getEnclosedElements())) {
+            String column = mapperValue(field);
+            if (column != null) {
+                fields.put(column, field.getSimpleName().toString());
+            }
+        }
+        return fields;
+    }
+
+    private static boolean isSetter(ExecutableElement method) {
+        return method.getModifiers().contains(Modifier.PUBLIC)
+                && !method.getModifiers().contains(Modifier.STATIC)
+                && method.getParameters().size() == 1;
+    }
+
+    /**
+     * @return the expression reading a column for the setter, {@code %s} standing for the column index
+     */
+    private static String readerFor(ExecutableElement setter) {
+        TypeMirror type = setter.getParameters().get(0).asType();
+        switch (type.getKind()) {
+            case INT:
+                return "cursor.getInt(%s)";
+            case LONG:
+                return "cursor.getLong(%s)";
+            case DOUBLE:
+                return "cursor.getDouble(%s)";
+            case FLOAT:
+                return "cursor.getFloat(%s)";
+            case SHORT:
+                return "cursor.getShort(%s)";
+            case BOOLEAN:
+                return "cursor.getInt(%s) != 0";
+            case ARRAY:
+                if (type.toString().equals("byte[]")) {
+                    return "cursor.getBlob(%s)";
+                }
+                break;
+            case DECLARED:
+                if (type.toString().equals(String.class.getName())) {
+                    return "cursor.isNull(%1$s) ? \"\" : cursor.getString(%1$s)";
+                }
+                break;
+            default:
+                break;
+        }
+        return null;
+    }
+
+    private String mapperValue(Element element) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (annotation.getAnnotationType().toString().equals(MAPPER)) {
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : annotation.getElementValues().entrySet()) {
+                    if (value.getKey().getSimpleName().contentEquals("value")) {
+                        return (String) value.getValue().getValue();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private void write(TypeElement model, Map<String, ColumnBinding> bindings, Map<String, String> columnsMappedByField) throws IOException {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(model);
+        String packageName = packageElement.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(model).toString();
+        String marshallerName = binaryName.substring(packageName.isEmpty() ? 0 : packageName.length() + 1) + GENERATED_SUFFIX;
+        String modelName = model.getQualifiedName().toString();
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(binaryName + GENERATED_SUFFIX, model);
+        Writer writer = file.openWriter();
+        try {
+            new MarshallerSource(packageName, marshallerName, modelName, new ArrayList<ColumnBinding>(bindings.values()), columnsMappedByField).writeTo(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private void warning(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message, element);
+    }
+
+    private static class UnsupportedSetterException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final transient ExecutableElement setter;
+
+        UnsupportedSetterException(ExecutableElement setter) {
+            this.setter = setter;
+        }
+    }
+}
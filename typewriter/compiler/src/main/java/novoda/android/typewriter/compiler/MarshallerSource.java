@@ -0,0 +1,143 @@
+package novoda.android.typewriter.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Source of a generated marshaller. The constructor finds the column of every setter once per cursor, the same way
+ * {@code RichClass} picks a setter for a column name, and {@code marshall} then calls the setters with the matching
+ * primitive cursor getters.
+ */
+class MarshallerSource {
+
+    private static final String INDENT = "    ";
+    private static final int NO_COLUMN = -1;
+
+    private final String packageName;
+    private final String marshallerName;
+    private final String modelName;
+    private final List<ColumnBinding> bindings;
+    private final Map<String, String> columnsMappedByField;
+
+    private Writer writer;
+
+    MarshallerSource(String packageName, String marshallerName, String modelName, List<ColumnBinding> bindings, Map<String, String> columnsMappedByField) {
+        this.packageName = packageName;
+        this.marshallerName = marshallerName;
+        this.modelName = modelName;
+        this.bindings = bindings;
+        this.columnsMappedByField = columnsMappedByField;
+    }
+
+    void writeTo(Writer writer) throws IOException {
+        this.writer = writer;
+        line(0, "// Generated by the typewriter compiler, do not edit.");
+        if (!packageName.isEmpty()) {
+            line(0, "package " + packageName + ";");
+        }
+        line(0, "");
+        line(0, "import android.database.Cursor;");
+        line(0, "");
+        line(0, "import novoda.android.typewriter.cursor.CursorMarshaller;");
+        line(0, "import novoda.android.typewriter.util.StringUtil;");
+        line(0, "");
+        line(0, "public final class " + marshallerName + " implements CursorMarshaller<" + modelName + "> {");
+        line(0, "");
+        for (ColumnBinding binding : bindings) {
+            line(1, "private final int " + binding.indexName() + ";");
+        }
+        line(0, "");
+        writeConstructor();
+        line(0, "");
+        writeSetterFor();
+        line(0, "");
+        writeMarshall();
+        line(0, "}");
+    }
+
+    private void writeConstructor() throws IOException {
+        line(1, "public " + marshallerName + "(Cursor cursor) {");
+        for (ColumnBinding binding : bindings) {
+            line(2, "int " + binding.indexName() + " = " + NO_COLUMN + ";");
+        }
+        line(2, "for (int i = 0; i < cursor.getColumnCount(); i++) {");
+        line(3, "String setter = setterFor(cursor.getColumnName(i));");
+        String keyword = "if";
+        for (ColumnBinding binding : bindings) {
+            line(3, keyword + " (" + literal(binding.setter) + ".equals(setter)) {");
+            line(4, binding.indexName() + " = i;");
+            keyword = "} else if";
+        }
+        if (!bindings.isEmpty()) {
+            line(3, "}");
+        }
+        line(2, "}");
+        for (ColumnBinding binding : bindings) {
+            line(2, "this." + binding.indexName() + " = " + binding.indexName() + ";");
+        }
+        line(1, "}");
+    }
+
+    private void writeSetterFor() throws IOException {
+        line(1, "private static String setterFor(String column) {");
+        for (ColumnBinding binding : bindings) {
+            for (String column : binding.columnsMappedByMethod) {
+                writeMapping(column, binding);
+            }
+        }
+        for (Map.Entry<String, String> columnAndField : columnsMappedByField.entrySet()) {
+            line(2, "if (" + literal(columnAndField.getKey()) + ".equals(column)) {");
+            line(3, "return StringUtil.asCamelifySetMethod(" + literal(columnAndField.getValue()) + ");");
+            line(2, "}");
+        }
+        line(2, "return StringUtil.asCamelifySetMethod(column);");
+        line(1, "}");
+    }
+
+    private void writeMapping(String column, ColumnBinding binding) throws IOException {
+        line(2, "if (" + literal(column) + ".equals(column)) {");
+        line(3, "return " + literal(binding.setter) + ";");
+        line(2, "}");
+    }
+
+    private void writeMarshall() throws IOException {
+        line(1, "@Override");
+        line(1, "public " + modelName + " marshall(Cursor cursor) {");
+        line(2, "if (cursor.getPosition() < 0) {");
+        line(3, "throw new RuntimeException(\"Cursor is at position below 0\" + cursor.getPosition());");
+        line(2, "}");
+        line(2, modelName + " obj = new " + modelName + "();");
+        for (ColumnBinding binding : bindings) {
+            line(2, "if (" + binding.indexName() + " != " + NO_COLUMN + ") {");
+            line(3, "obj." + binding.setter + "(" + binding.read(binding.indexName()) + ");");
+            line(2, "}");
+        }
+        line(2, "return obj;");
+        line(1, "}");
+    }
+
+    private static String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                literal.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7e) {
+                literal.append(String.format("\\u%04x", (int) c));
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private void line(int indent, String code) throws IOException {
+        for (int i = 0; i < indent && !code.isEmpty(); i++) {
+            writer.write(INDENT);
+        }
+        writer.write(code);
+        writer.write('\n');
+    }
+}
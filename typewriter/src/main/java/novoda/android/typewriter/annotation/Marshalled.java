@@ -0,0 +1,16 @@
+package novoda.android.typewriter.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Has the typewriter compiler generate a {@link novoda.android.typewriter.cursor.CursorMarshaller} for the class, which
+ * calls its setters directly instead of through reflection. {@link novoda.android.typewriter.cursor.CursorList} uses
+ * the generated marshaller whenever it is on the classpath.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+public @interface Marshalled {
+}
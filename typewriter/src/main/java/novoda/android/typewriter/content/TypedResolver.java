@@ -3,9 +3,12 @@ package novoda.android.typewriter.content;
 import android.content.ContentResolver;
 import android.database.Cursor;
 import android.net.Uri;
+import android.provider.BaseColumns;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import novoda.android.typewriter.cursor.ColumnTable;
 import novoda.android.typewriter.cursor.CursorList;
 
 public class TypedResolver {
@@ -53,4 +56,41 @@ public class TypedResolver {
         final Cursor cursor = resolver.query(uri, projection, selection, selectionArgs, sortOrder);
         return new CursorList<T>(cursor, type);
     }
+
+    /**
+     * Reads {@code limit} rows starting at {@code offset} and closes the cursor. The window is added to the sort order,
+     * which SQLite backed providers pass on to their query, and rows are ordered by {@code _id} when no sort order is
+     * given so consecutive pages don't overlap.
+     */
+    public <T> List<T> queryPage(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder, int offset, int limit, Class<T> type) {
+        String pagedSortOrder = (sortOrder == null ? BaseColumns._ID : sortOrder) + " LIMIT " + limit + " OFFSET " + offset;
+        final Cursor cursor = resolver.query(uri, projection, selection, selectionArgs, pagedSortOrder);
+        CursorList<T> rows = new CursorList<T>(cursor, type);
+        try {
+            List<T> page = new ArrayList<T>(rows.size());
+            for (T row : rows) {
+                page.add(row);
+            }
+            return page;
+        } finally {
+            rows.close();
+        }
+    }
+
+    public ColumnTable queryTable(Uri uri) {
+        return queryTable(uri, null, null, null, null);
+    }
+
+    public ColumnTable queryTable(Uri uri, String selection, String[] selectionArgs) {
+        return queryTable(uri, null, selection, selectionArgs, null);
+    }
+
+    /**
+     * Reads the whole result into memory column by column and closes the cursor, for bulk reads that would otherwise
+     * hold a cursor open while every row is marshalled.
+     */
+    public ColumnTable queryTable(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        final Cursor cursor = resolver.query(uri, projection, selection, selectionArgs, sortOrder);
+        return ColumnTable.read(cursor);
+    }
 }
@@ -0,0 +1,119 @@
+package novoda.android.typewriter.cursor;
+
+import android.database.Cursor;
+import android.database.DataSetObserver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the last {@code windowSize} marshalled rows by position, so scrolling back over rows that were just shown
+ * doesn't marshall them again. On a miss the next {@code prefetchSize} rows in the direction of travel are marshalled
+ * along with it. The window is emptied whenever the cursor is requeried, deactivated or closed.
+ *
+ * Pass it to {@link CursorList#CursorList(Cursor, CursorMarshaller)} to use it, and read its hit and miss counts to
+ * tune the window. Like the cursor it wraps, it isn't thread safe.
+ */
+public class CachingCursorMarshaller<T> implements CursorMarshaller<T> {
+
+    private final Cursor cursor;
+    private final CursorMarshaller<T> marshaller;
+    private final int prefetchSize;
+    private final Map<Integer, T> window;
+    private final DataSetObserver invalidator = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            window.clear();
+        }
+
+        @Override
+        public void onInvalidated() {
+            window.clear();
+        }
+    };
+
+    private int lastPosition = -1;
+    private int hits;
+    private int misses;
+    private int prefetched;
+
+    public CachingCursorMarshaller(Cursor cursor, Class<T> type, int windowSize, int prefetchSize) {
+        this(cursor, CursorMarshallers.create(cursor, type), windowSize, prefetchSize);
+    }
+
+    public CachingCursorMarshaller(Cursor cursor, CursorMarshaller<T> marshaller, final int windowSize, int prefetchSize) {
+        if (prefetchSize < 0 || prefetchSize >= windowSize) {
+            throw new IllegalArgumentException("Prefetching " + prefetchSize + " rows needs a window bigger than that, not " + windowSize);
+        }
+        this.cursor = cursor;
+        this.marshaller = marshaller;
+        this.prefetchSize = prefetchSize;
+        this.window = new LinkedHashMap<Integer, T>(windowSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, T> eldest) {
+                return size() > windowSize;
+            }
+        };
+        cursor.registerDataSetObserver(invalidator);
+    }
+
+    @Override
+    public T marshall(Cursor cursor) {
+        int position = cursor.getPosition();
+        int direction = position < lastPosition ? -1 : 1;
+        lastPosition = position;
+
+        T row = window.get(position);
+        if (row != null) {
+            hits++;
+            return row;
+        }
+        misses++;
+        row = marshaller.marshall(cursor);
+        window.put(position, row);
+        prefetch(cursor, position, direction);
+        return row;
+    }
+
+    private void prefetch(Cursor cursor, int position, int direction) {
+        if (prefetchSize == 0) {
+            return;
+        }
+        for (int i = 1; i <= prefetchSize; i++) {
+            int ahead = position + i * direction;
+            if (window.containsKey(ahead)) {
+                continue;
+            }
+            if (!cursor.moveToPosition(ahead)) {
+                break;
+            }
+            window.put(ahead, marshaller.marshall(cursor));
+            prefetched++;
+        }
+        cursor.moveToPosition(position);
+    }
+
+    public void invalidate() {
+        window.clear();
+    }
+
+    /**
+     * Stops listening to the cursor, for when the window is dropped before the cursor is closed.
+     */
+    public void release() {
+        window.clear();
+        cursor.unregisterDataSetObserver(invalidator);
+    }
+
+    public int getHitCount() {
+        return hits;
+    }
+
+    public int getMissCount() {
+        return misses;
+    }
+
+    public int getPrefetchCount() {
+        return prefetched;
+    }
+}
@@ -0,0 +1,681 @@
+package novoda.android.typewriter.cursor;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A whole query read into memory one column at a time, for reads too big to marshall row by row. The cursor is walked
+ * once and closed straight away. Integer columns end up in a {@code long[]}, float columns in a {@code double[]} and
+ * text columns in a {@code String[]} where repeated values share one instance, so the memory a table takes is known
+ * from its size and shape, see {@link #sizeInBytes()}.
+ *
+ * Values can be read in place through the getters, or turned into objects a range of rows at a time with
+ * {@link #materialise(Class, int, int)}. A column holding integers and floats is kept as floats, and one mixing
+ * numbers with text is kept as text. A column mixing blobs with any other type keeps every value as it was read, one
+ * object per row.
+ */
+public final class ColumnTable {
+
+    private static final int OBJECT_SIZE = 16;
+    private static final int REFERENCE_SIZE = 4;
+
+    private final String[] columnNames;
+    private final Column[] columns;
+    private final int rowCount;
+    private final long sizeInBytes;
+
+    /**
+     * Reads every row of the cursor and closes it.
+     */
+    public static ColumnTable read(Cursor cursor) {
+        try {
+            int rowCount = cursor.getCount();
+            String[] columnNames = cursor.getColumnNames();
+            Column[] columns = new Column[columnNames.length];
+            Interner interner = new Interner();
+            for (int column = 0; column < columns.length; column++) {
+                columns[column] = new NullColumn(rowCount);
+            }
+            int row = 0;
+            while (cursor.moveToNext()) {
+                for (int column = 0; column < columns.length; column++) {
+                    columns[column] = columns[column].read(cursor, column, row, interner);
+                }
+                row++;
+            }
+            return new ColumnTable(columnNames, columns, row, interner.sizeInBytes);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private ColumnTable(String[] columnNames, Column[] columns, int rowCount, long stringsSizeInBytes) {
+        this.columnNames = columnNames;
+        this.columns = columns;
+        this.rowCount = rowCount;
+        long size = stringsSizeInBytes;
+        for (Column column : columns) {
+            size += column.sizeInBytes();
+        }
+        this.sizeInBytes = size;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    public int getColumnIndex(String columnName) {
+        for (int column = 0; column < columnNames.length; column++) {
+            if (columnNames[column].equals(columnName)) {
+                return column;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return one of the {@code Cursor.FIELD_TYPE_} constants for the value
+     */
+    public int getType(int row, int column) {
+        Column values = columns[column];
+        return values.isNull(row) ? Cursor.FIELD_TYPE_NULL : values.type(row);
+    }
+
+    public boolean isNull(int row, int column) {
+        return columns[column].isNull(row);
+    }
+
+    public long getLong(int row, int column) {
+        return columns[column].getLong(row);
+    }
+
+    public int getInt(int row, int column) {
+        return (int) columns[column].getLong(row);
+    }
+
+    public short getShort(int row, int column) {
+        return (short) columns[column].getLong(row);
+    }
+
+    public double getDouble(int row, int column) {
+        return columns[column].getDouble(row);
+    }
+
+    public float getFloat(int row, int column) {
+        return (float) columns[column].getDouble(row);
+    }
+
+    public String getString(int row, int column) {
+        return columns[column].getString(row);
+    }
+
+    public byte[] getBlob(int row, int column) {
+        return columns[column].getBlob(row);
+    }
+
+    /**
+     * Roughly what the table's arrays and distinct strings take on the heap.
+     */
+    public long sizeInBytes() {
+        return sizeInBytes;
+    }
+
+    /**
+     * Marshalls rows {@code [from, to)} into objects the same way a {@link CursorList} would.
+     */
+    public <T> List<T> materialise(Class<T> type, int from, int to) {
+        if (from < 0 || to > rowCount || from > to) {
+            throw new IndexOutOfBoundsException("Rows " + from + " to " + to + " of a table of " + rowCount);
+        }
+        Cursor cursor = asCursor();
+        CursorMarshaller<T> marshaller = CursorMarshallers.create(cursor, type);
+        List<T> objects = new ArrayList<T>(to - from);
+        for (int row = from; row < to; row++) {
+            cursor.moveToPosition(row);
+            objects.add(marshaller.marshall(cursor));
+        }
+        return objects;
+    }
+
+    /**
+     * A read only cursor over the table, which needs no closing.
+     */
+    public Cursor asCursor() {
+        return new ColumnTableCursor(this);
+    }
+
+    /**
+     * Shares one instance between equal strings of the same scan.
+     */
+    private static class Interner {
+        private final Map<String, String> strings = new HashMap<String, String>();
+        private long sizeInBytes;
+
+        String intern(String value) {
+            if (value == null) {
+                return null;
+            }
+            String interned = strings.get(value);
+            if (interned == null) {
+                strings.put(value, value);
+                sizeInBytes += OBJECT_SIZE * 2 + value.length() * 2;
+                interned = value;
+            }
+            return interned;
+        }
+    }
+
+    private abstract static class Column {
+
+        abstract int type();
+
+        /**
+         * The type of a value that isn't null, the column's own type unless it mixes types.
+         */
+        int type(int row) {
+            return type();
+        }
+
+        abstract boolean isNull(int row);
+
+        abstract long getLong(int row);
+
+        abstract double getDouble(int row);
+
+        abstract String getString(int row);
+
+        abstract byte[] getBlob(int row);
+
+        abstract long sizeInBytes();
+
+        /**
+         * Reads the value at {@code row} into the column, or into a wider column that replaces this one if the value
+         * doesn't fit.
+         */
+        abstract Column read(Cursor cursor, int column, int row, Interner interner);
+
+        Column widenedFor(int cursorType, int rowCount, int rows, Interner interner) {
+            Column widened;
+            if (type() == Cursor.FIELD_TYPE_BLOB || (cursorType == Cursor.FIELD_TYPE_BLOB && type() != Cursor.FIELD_TYPE_NULL)) {
+                widened = new MixedColumn(rowCount);
+            } else if (cursorType == Cursor.FIELD_TYPE_INTEGER) {
+                widened = new LongColumn(rowCount);
+            } else if (cursorType == Cursor.FIELD_TYPE_FLOAT && (type() == Cursor.FIELD_TYPE_INTEGER || type() == Cursor.FIELD_TYPE_NULL)) {
+                widened = new DoubleColumn(rowCount);
+            } else if (cursorType == Cursor.FIELD_TYPE_BLOB && type() == Cursor.FIELD_TYPE_NULL) {
+                widened = new BlobColumn(rowCount);
+            } else {
+                widened = new StringColumn(rowCount);
+            }
+            for (int row = 0; row < rows; row++) {
+                widened.copy(this, row, interner);
+            }
+            return widened;
+        }
+
+        abstract void copy(Column from, int row, Interner interner);
+    }
+
+    private static class NullColumn extends Column {
+        private final int rowCount;
+
+        NullColumn(int rowCount) {
+            this.rowCount = rowCount;
+        }
+
+        @Override
+        int type() {
+            return Cursor.FIELD_TYPE_NULL;
+        }
+
+        @Override
+        boolean isNull(int row) {
+            return true;
+        }
+
+        @Override
+        long getLong(int row) {
+            return 0;
+        }
+
+        @Override
+        double getDouble(int row) {
+            return 0;
+        }
+
+        @Override
+        String getString(int row) {
+            return null;
+        }
+
+        @Override
+        byte[] getBlob(int row) {
+            return null;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return OBJECT_SIZE;
+        }
+
+        @Override
+        Column read(Cursor cursor, int column, int row, Interner interner) {
+            int type = cursor.getType(column);
+            if (type == Cursor.FIELD_TYPE_NULL) {
+                return this;
+            }
+            return widenedFor(type, rowCount, row, interner).read(cursor, column, row, interner);
+        }
+
+        @Override
+        void copy(Column from, int row, Interner interner) {
+        }
+    }
+
+    private static class LongColumn extends Column {
+        private final long[] values;
+        private final BitSet nulls = new BitSet();
+
+        LongColumn(int rowCount) {
+            values = new long[rowCount];
+        }
+
+        @Override
+        int type() {
+            return Cursor.FIELD_TYPE_INTEGER;
+        }
+
+        @Override
+        boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        @Override
+        long getLong(int row) {
+            return values[row];
+        }
+
+        @Override
+        double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        String getString(int row) {
+            return isNull(row) ? null : Long.toString(values[row]);
+        }
+
+        @Override
+        byte[] getBlob(int row) {
+            return null;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return OBJECT_SIZE * 2 + values.length * 8L + nulls.size() / 8;
+        }
+
+        @Override
+        Column read(Cursor cursor, int column, int row, Interner interner) {
+            int type = cursor.getType(column);
+            if (type == Cursor.FIELD_TYPE_INTEGER) {
+                values[row] = cursor.getLong(column);
+            } else if (type == Cursor.FIELD_TYPE_NULL) {
+                nulls.set(row);
+            } else {
+                return widenedFor(type, values.length, row, interner).read(cursor, column, row, interner);
+            }
+            return this;
+        }
+
+        @Override
+        void copy(Column from, int row, Interner interner) {
+            if (from.isNull(row)) {
+                nulls.set(row);
+            } else {
+                values[row] = from.getLong(row);
+            }
+        }
+    }
+
+    private static class DoubleColumn extends Column {
+        private final double[] values;
+        private final BitSet nulls = new BitSet();
+
+        DoubleColumn(int rowCount) {
+            values = new double[rowCount];
+        }
+
+        @Override
+        int type() {
+            return Cursor.FIELD_TYPE_FLOAT;
+        }
+
+        @Override
+        boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        @Override
+        long getLong(int row) {
+            return (long) values[row];
+        }
+
+        @Override
+        double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        String getString(int row) {
+            return isNull(row) ? null : Double.toString(values[row]);
+        }
+
+        @Override
+        byte[] getBlob(int row) {
+            return null;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return OBJECT_SIZE * 2 + values.length * 8L + nulls.size() / 8;
+        }
+
+        @Override
+        Column read(Cursor cursor, int column, int row, Interner interner) {
+            int type = cursor.getType(column);
+            if (type == Cursor.FIELD_TYPE_FLOAT || type == Cursor.FIELD_TYPE_INTEGER) {
+                values[row] = cursor.getDouble(column);
+            } else if (type == Cursor.FIELD_TYPE_NULL) {
+                nulls.set(row);
+            } else {
+                return widenedFor(type, values.length, row, interner).read(cursor, column, row, interner);
+            }
+            return this;
+        }
+
+        @Override
+        void copy(Column from, int row, Interner interner) {
+            if (from.isNull(row)) {
+                nulls.set(row);
+            } else {
+                values[row] = from.getDouble(row);
+            }
+        }
+    }
+
+    private static class StringColumn extends Column {
+        private final String[] values;
+
+        StringColumn(int rowCount) {
+            values = new String[rowCount];
+        }
+
+        @Override
+        int type() {
+            return Cursor.FIELD_TYPE_STRING;
+        }
+
+        @Override
+        boolean isNull(int row) {
+            return values[row] == null;
+        }
+
+        @Override
+        long getLong(int row) {
+            try {
+                return values[row] == null ? 0 : Long.parseLong(values[row]);
+            } catch (NumberFormatException e) {
+                return (long) getDouble(row);
+            }
+        }
+
+        @Override
+        double getDouble(int row) {
+            try {
+                return values[row] == null ? 0 : Double.parseDouble(values[row]);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        @Override
+        String getString(int row) {
+            return values[row];
+        }
+
+        @Override
+        byte[] getBlob(int row) {
+            return null;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return OBJECT_SIZE + values.length * (long) REFERENCE_SIZE;
+        }
+
+        @Override
+        Column read(Cursor cursor, int column, int row, Interner interner) {
+            int type = cursor.getType(column);
+            if (type == Cursor.FIELD_TYPE_BLOB) {
+                return widenedFor(type, values.length, row, interner).read(cursor, column, row, interner);
+            }
+            values[row] = interner.intern(cursor.getString(column));
+            return this;
+        }
+
+        @Override
+        void copy(Column from, int row, Interner interner) {
+            values[row] = interner.intern(from.getString(row));
+        }
+    }
+
+    private static class BlobColumn extends Column {
+        private final byte[][] values;
+        private long blobBytes;
+
+        BlobColumn(int rowCount) {
+            values = new byte[rowCount][];
+        }
+
+        @Override
+        int type() {
+            return Cursor.FIELD_TYPE_BLOB;
+        }
+
+        @Override
+        boolean isNull(int row) {
+            return values[row] == null;
+        }
+
+        @Override
+        long getLong(int row) {
+            return 0;
+        }
+
+        @Override
+        double getDouble(int row) {
+            return 0;
+        }
+
+        @Override
+        String getString(int row) {
+            return null;
+        }
+
+        @Override
+        byte[] getBlob(int row) {
+            return values[row];
+        }
+
+        @Override
+        long sizeInBytes() {
+            return OBJECT_SIZE + values.length * (long) (REFERENCE_SIZE + OBJECT_SIZE) + blobBytes;
+        }
+
+        @Override
+        Column read(Cursor cursor, int column, int row, Interner interner) {
+            int type = cursor.getType(column);
+            if (type == Cursor.FIELD_TYPE_BLOB) {
+                values[row] = cursor.getBlob(column);
+                blobBytes += values[row].length;
+            } else if (type != Cursor.FIELD_TYPE_NULL) {
+                return widenedFor(type, values.length, row, interner).read(cursor, column, row, interner);
+            }
+            return this;
+        }
+
+        @Override
+        void copy(Column from, int row, Interner interner) {
+            values[row] = from.getBlob(row);
+        }
+    }
+
+    private static class MixedColumn extends Column {
+        private final Object[] values;
+        private long valueBytes;
+
+        MixedColumn(int rowCount) {
+            values = new Object[rowCount];
+        }
+
+        @Override
+        int type() {
+            return Cursor.FIELD_TYPE_BLOB;
+        }
+
+        @Override
+        int type(int row) {
+            Object value = values[row];
+            if (value instanceof Long) {
+                return Cursor.FIELD_TYPE_INTEGER;
+            } else if (value instanceof Double) {
+                return Cursor.FIELD_TYPE_FLOAT;
+            } else if (value instanceof String) {
+                return Cursor.FIELD_TYPE_STRING;
+            }
+            return Cursor.FIELD_TYPE_BLOB;
+        }
+
+        @Override
+        boolean isNull(int row) {
+            return values[row] == null;
+        }
+
+        @Override
+        long getLong(int row) {
+            Object value = values[row];
+            if (value instanceof Number) {
+                return ((Number) value).longValue();
+            }
+            if (value instanceof String) {
+                try {
+                    return Long.parseLong((String) value);
+                } catch (NumberFormatException e) {
+                    return (long) getDouble(row);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        double getDouble(int row) {
+            Object value = values[row];
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            }
+            if (value instanceof String) {
+                try {
+                    return Double.parseDouble((String) value);
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        String getString(int row) {
+            Object value = values[row];
+            if (value == null || value instanceof byte[]) {
+                return null;
+            }
+            return value.toString();
+        }
+
+        @Override
+        byte[] getBlob(int row) {
+            Object value = values[row];
+            return value instanceof byte[] ? (byte[]) value : null;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return OBJECT_SIZE + values.length * (long) REFERENCE_SIZE + valueBytes;
+        }
+
+        @Override
+        Column read(Cursor cursor, int column, int row, Interner interner) {
+            switch (cursor.getType(column)) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    set(row, cursor.getLong(column));
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    set(row, cursor.getDouble(column));
+                    break;
+                case Cursor.FIELD_TYPE_STRING:
+                    values[row] = interner.intern(cursor.getString(column));
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    set(row, cursor.getBlob(column));
+                    break;
+                default:
+                    break;
+            }
+            return this;
+        }
+
+        @Override
+        void copy(Column from, int row, Interner interner) {
+            if (from.isNull(row)) {
+                return;
+            }
+            switch (from.type(row)) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    set(row, from.getLong(row));
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    set(row, from.getDouble(row));
+                    break;
+                case Cursor.FIELD_TYPE_STRING:
+                    values[row] = interner.intern(from.getString(row));
+                    break;
+                default:
+                    set(row, from.getBlob(row));
+                    break;
+            }
+        }
+
+        private void set(int row, Object value) {
+            values[row] = value;
+            valueBytes += value instanceof byte[] ? OBJECT_SIZE + ((byte[]) value).length : OBJECT_SIZE + 8;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package novoda.android.typewriter.cursor;
+
+import android.database.AbstractCursor;
+
+/**
+ * Lets marshallers written against a cursor read rows out of a {@link ColumnTable}.
+ */
+class ColumnTableCursor extends AbstractCursor {
+
+    private final ColumnTable table;
+
+    ColumnTableCursor(ColumnTable table) {
+        this.table = table;
+    }
+
+    @Override
+    public int getCount() {
+        return table.getRowCount();
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return table.getColumnNames();
+    }
+
+    @Override
+    public int getColumnIndex(String columnName) {
+        return table.getColumnIndex(columnName);
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return table.getColumnName(column);
+    }
+
+    @Override
+    public int getColumnCount() {
+        return table.getColumnCount();
+    }
+
+    @Override
+    public int getType(int column) {
+        return table.getType(getPosition(), column);
+    }
+
+    @Override
+    public String getString(int column) {
+        return table.getString(getPosition(), column);
+    }
+
+    @Override
+    public short getShort(int column) {
+        return table.getShort(getPosition(), column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return table.getInt(getPosition(), column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        return table.getLong(getPosition(), column);
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return table.getFloat(getPosition(), column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return table.getDouble(getPosition(), column);
+    }
+
+    @Override
+    public byte[] getBlob(int column) {
+        return table.getBlob(getPosition(), column);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return table.isNull(getPosition(), column);
+    }
+}
@@ -14,7 +14,7 @@ public class CursorList<T> implements List<T>, Closeable {
     private final CursorMarshaller<T> marshaller;
 
     public CursorList(Cursor cursor, Class<T> type) {
-        this(cursor, new ReflectionCursorMarshaller<T>(cursor, type));
+        this(cursor, CursorMarshallers.create(cursor, type));
     }
 
     public CursorList(Cursor cursor, CursorMarshaller<T> marshaller) {
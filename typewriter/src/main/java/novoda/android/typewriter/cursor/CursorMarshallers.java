@@ -0,0 +1,66 @@
+package novoda.android.typewriter.cursor;
+
+import android.database.Cursor;
+
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Picks the marshaller for a class: the one the typewriter compiler generated for it if there is one, reflection
+ * otherwise. Generated marshallers are named after the class they marshall with a {@code _CursorMarshaller} suffix
+ * and take the cursor in their constructor.
+ */
+public final class CursorMarshallers {
+
+    public static final String GENERATED_SUFFIX = "_CursorMarshaller";
+
+    private static final Constructor<?> NOT_GENERATED = null;
+
+    /**
+     * Keyed by model class, {@link #NOT_GENERATED} standing for a class marshalled through reflection.
+     */
+    private static final Map<Class<?>, Constructor<?>> generatedConstructors = new HashMap<Class<?>, Constructor<?>>();
+
+    private CursorMarshallers() {
+    }
+
+    public static <T> CursorMarshaller<T> create(Cursor cursor, Class<T> type) {
+        Constructor<?> constructor = generatedConstructor(type);
+        if (constructor == NOT_GENERATED) {
+            return new ReflectionCursorMarshaller<T>(cursor, type);
+        }
+        try {
+            @SuppressWarnings("unchecked")
+            CursorMarshaller<T> marshaller = (CursorMarshaller<T>) constructor.newInstance(cursor);
+            return marshaller;
+        } catch (Exception e) {
+            throw new RuntimeException("Can't create the generated marshaller for " + type.getName(), e);
+        }
+    }
+
+    private static Constructor<?> generatedConstructor(Class<?> type) {
+        synchronized (generatedConstructors) {
+            if (generatedConstructors.containsKey(type)) {
+                return generatedConstructors.get(type);
+            }
+            Constructor<?> constructor = findGeneratedConstructor(type);
+            generatedConstructors.put(type, constructor);
+            return constructor;
+        }
+    }
+
+    private static Constructor<?> findGeneratedConstructor(Class<?> type) {
+        try {
+            Class<?> generated = Class.forName(type.getName() + GENERATED_SUFFIX, true, type.getClassLoader());
+            if (!CursorMarshaller.class.isAssignableFrom(generated)) {
+                return NOT_GENERATED;
+            }
+            return generated.getConstructor(Cursor.class);
+        } catch (ClassNotFoundException e) {
+            return NOT_GENERATED;
+        } catch (NoSuchMethodException e) {
+            return NOT_GENERATED;
+        }
+    }
+}
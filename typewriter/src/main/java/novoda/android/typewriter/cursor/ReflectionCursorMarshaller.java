@@ -3,29 +3,32 @@ package novoda.android.typewriter.cursor;
 import android.database.Cursor;
 
 import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 
 import novoda.android.typewriter.introspection.RichClass;
 
+/**
+ * Binds the columns of a cursor to the setters of a class. The columns are matched to setters once, when the
+ * marshaller is built for the cursor's schema, and every row is then a walk over that fixed plan: no column name
+ * lookups, and each setter reads its column with the getter matching its parameter type. Columns without a setter
+ * are left out of the plan. A NULL column gives {@code String} setters an empty string, as it always has.
+ */
 public class ReflectionCursorMarshaller<T> implements CursorMarshaller<T> {
 
-    private final static int TYPE_INT = 0;
-    private final static int TYPE_DOUBLE = 1;
-    private final static int TYPE_LONG = 2;
-
     private final RichClass<T> richClass;
-    private final Map<String, Method> methodsByName = new HashMap<String, Method>();
+    private final ColumnBinding[] bindings;
 
     public ReflectionCursorMarshaller(Cursor cursor, Class<T> classType) {
-        richClass = new RichClass<T>(classType);
+        richClass = RichClass.of(classType);
+        List<ColumnBinding> plan = new ArrayList<ColumnBinding>();
         for (int i = 0; i < cursor.getColumnCount(); i++) {
             String name = cursor.getColumnName(i);
             if (richClass.hasMethod(name)) {
-                Method setter = richClass.setter(name);
-                methodsByName.put(name, setter);
+                plan.add(new ColumnBinding(i, richClass.setter(name)));
             }
         }
+        bindings = plan.toArray(new ColumnBinding[plan.size()]);
     }
 
     @Override
@@ -36,18 +39,8 @@ public class ReflectionCursorMarshaller<T> implements CursorMarshaller<T> {
         T obj;
         try {
             obj = richClass.newInstance();
-
-            for (int i = 0; i < cursor.getColumnCount(); i++) {
-                String name = cursor.getColumnName(i);
-                Method setter = methodsByName.get(name);
-                int type = TYPE_INT;
-                Class<?> t = setter.getParameterTypes()[0];
-                if (t.equals(long.class)) {
-                    type = TYPE_LONG;
-                } else if (t.equals(double.class)) {
-                    type = TYPE_DOUBLE;
-                }
-                setter.invoke(obj, getObjectFromCursor(cursor, i, type));
+            for (ColumnBinding binding : bindings) {
+                binding.bind(cursor, obj);
             }
             return obj;
         } catch (Exception e) {
@@ -55,32 +48,96 @@ public class ReflectionCursorMarshaller<T> implements CursorMarshaller<T> {
         }
     }
 
-    private Object getObjectFromCursor(Cursor cursor, int index, int type) {
-        final int cursorType = cursor.getType(index);
-        final Object obj;
-        switch (cursorType) {
-            case Cursor.FIELD_TYPE_FLOAT:
-                obj = cursor.getFloat(index);
-                break;
-            case Cursor.FIELD_TYPE_STRING:
-                obj = cursor.getString(index);
-                break;
-            case Cursor.FIELD_TYPE_INTEGER:
-                switch (type) {
-                    case TYPE_DOUBLE:
-                        obj = cursor.getDouble(index);
-                        break;
-                    case TYPE_LONG:
-                        obj = cursor.getLong(index);
-                        break;
-                    default:
-                        obj = cursor.getInt(index);
-                        break;
-                }
-                break;
-            default:
-                obj = "";
+    private static final class ColumnBinding {
+
+        private final static int TYPE_OTHER = 0;
+        private final static int TYPE_INT = 1;
+        private final static int TYPE_LONG = 2;
+        private final static int TYPE_DOUBLE = 3;
+        private final static int TYPE_FLOAT = 4;
+        private final static int TYPE_SHORT = 5;
+        private final static int TYPE_BOOLEAN = 6;
+        private final static int TYPE_STRING = 7;
+        private final static int TYPE_BLOB = 8;
+
+        private final int columnIndex;
+        private final Method setter;
+        private final int type;
+
+        ColumnBinding(int columnIndex, Method setter) {
+            this.columnIndex = columnIndex;
+            this.setter = setter;
+            this.type = typeOf(setter.getParameterTypes()[0]);
+            setter.setAccessible(true);
+        }
+
+        private static int typeOf(Class<?> parameterType) {
+            if (parameterType == int.class) {
+                return TYPE_INT;
+            } else if (parameterType == long.class) {
+                return TYPE_LONG;
+            } else if (parameterType == double.class) {
+                return TYPE_DOUBLE;
+            } else if (parameterType == float.class) {
+                return TYPE_FLOAT;
+            } else if (parameterType == short.class) {
+                return TYPE_SHORT;
+            } else if (parameterType == boolean.class) {
+                return TYPE_BOOLEAN;
+            } else if (parameterType == String.class) {
+                return TYPE_STRING;
+            } else if (parameterType == byte[].class) {
+                return TYPE_BLOB;
+            }
+            return TYPE_OTHER;
+        }
+
+        void bind(Cursor cursor, Object target) throws Exception {
+            switch (type) {
+                case TYPE_INT:
+                    setter.invoke(target, cursor.getInt(columnIndex));
+                    break;
+                case TYPE_LONG:
+                    setter.invoke(target, cursor.getLong(columnIndex));
+                    break;
+                case TYPE_DOUBLE:
+                    setter.invoke(target, cursor.getDouble(columnIndex));
+                    break;
+                case TYPE_FLOAT:
+                    setter.invoke(target, cursor.getFloat(columnIndex));
+                    break;
+                case TYPE_SHORT:
+                    setter.invoke(target, cursor.getShort(columnIndex));
+                    break;
+                case TYPE_BOOLEAN:
+                    setter.invoke(target, cursor.getInt(columnIndex) != 0);
+                    break;
+                case TYPE_STRING:
+                    String value = cursor.getString(columnIndex);
+                    setter.invoke(target, value == null ? "" : value);
+                    break;
+                case TYPE_BLOB:
+                    setter.invoke(target, (Object) cursor.getBlob(columnIndex));
+                    break;
+                default:
+                    setter.invoke(target, getObjectFromCursor(cursor, columnIndex));
+            }
+        }
+
+        /**
+         * Setters taking any other type get the value as the column holds it, the way every column used to be read.
+         */
+        private static Object getObjectFromCursor(Cursor cursor, int index) {
+            switch (cursor.getType(index)) {
+                case Cursor.FIELD_TYPE_FLOAT:
+                    return cursor.getFloat(index);
+                case Cursor.FIELD_TYPE_STRING:
+                    return cursor.getString(index);
+                case Cursor.FIELD_TYPE_INTEGER:
+                    return cursor.getInt(index);
+                default:
+                    return "";
+            }
         }
-        return obj;
     }
-}
\ No newline at end of file
+}
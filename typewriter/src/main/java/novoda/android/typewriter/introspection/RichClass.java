@@ -1,28 +1,65 @@
 package novoda.android.typewriter.introspection;
 
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import novoda.android.typewriter.annotation.Mapper;
 import novoda.android.typewriter.util.StringUtil;
 
+/**
+ * Setters of a class by column name. The class is scanned once and every column name is resolved to its setter the
+ * first time it's asked for, so instances are best shared through {@link #of(Class)} and are safe to use from any
+ * thread.
+ */
 public class RichClass<T> {
 
+    /**
+     * Weakly keyed so model classes can still be unloaded, and softly valued since a rich class holds on to its class.
+     */
+    private static final Map<Class<?>, SoftReference<RichClass<?>>> richClasses = new WeakHashMap<Class<?>, SoftReference<RichClass<?>>>();
+
     private final Class<T> klass;
 
-    private final List<Method> methods;
+    private final Map<String, Method> methodsByName;
 
     private final Map<String, String> fieldMapper;
 
     private final Map<String, Method> methodMapper;
 
+    private final Map<String, Method> settersByColumn = new ConcurrentHashMap<String, Method>();
+
+    private final Set<String> columnsWithoutSetter = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    @SuppressWarnings("unchecked")
+    public static <T> RichClass<T> of(Class<T> klass) {
+        synchronized (richClasses) {
+            SoftReference<RichClass<?>> cached = richClasses.get(klass);
+            RichClass<T> richClass = cached == null ? null : (RichClass<T>) cached.get();
+            if (richClass == null) {
+                richClass = new RichClass<T>(klass);
+                richClasses.put(klass, new SoftReference<RichClass<?>>(richClass));
+            }
+            return richClass;
+        }
+    }
+
     public RichClass(Class<T> klass) {
         this.klass = klass;
-        methods = Arrays.asList(klass.getMethods());
+        Method[] methods = klass.getMethods();
+
+        methodsByName = new HashMap<String, Method>();
+        for (Method m : methods) {
+            if (!methodsByName.containsKey(m.getName())) {
+                methodsByName.put(m.getName(), m);
+            }
+        }
 
         fieldMapper = new HashMap<String, String>();
         for (Field f : klass.getDeclaredFields()) {
@@ -42,6 +79,32 @@ public class RichClass<T> {
     }
 
     public Method setter(String what) {
+        Method setter = findSetter(what);
+        if (setter == null) {
+            throw new RichClassException("can not find method " + what + " " + fieldMapper);
+        }
+        return setter;
+    }
+
+    public boolean hasMethod(String method) {
+        return findSetter(method) != null;
+    }
+
+    private Method findSetter(String what) {
+        Method setter = settersByColumn.get(what);
+        if (setter != null || columnsWithoutSetter.contains(what)) {
+            return setter;
+        }
+        setter = resolveSetter(what);
+        if (setter == null) {
+            columnsWithoutSetter.add(what);
+        } else {
+            settersByColumn.put(what, setter);
+        }
+        return setter;
+    }
+
+    private Method resolveSetter(String what) {
         if (methodMapper.containsKey(what)) {
             return methodMapper.get(what);
         }
@@ -49,21 +112,7 @@ public class RichClass<T> {
         if (fieldMapper.containsKey(what)) {
             methodName = StringUtil.asCamelifySetMethod(fieldMapper.get(what));
         }
-
-        for (Method m : methods) {
-            if (m.getName().equals(methodName)) {
-                return m;
-            }
-        }
-        throw new RichClassException("can not find method " + what + " " + fieldMapper);
-    }
-
-    public boolean hasMethod(String method) {
-        try {
-            return setter(method) != null;
-        } catch (Exception e) {
-            return false;
-        }
+        return methodsByName.get(methodName);
     }
 
     public T newInstance() {
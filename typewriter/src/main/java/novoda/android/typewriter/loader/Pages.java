@@ -0,0 +1,136 @@
+package novoda.android.typewriter.loader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The pages a {@link TypedPagingLoader} holds at one point, as consecutive rows starting at {@link #getFirstPosition()}.
+ * Pages that fell out of the window are gone, so only positions between the first and end position can be read, the
+ * loader reads them again when asked for the previous or next page. Instances never change, each page loaded hands out
+ * a new one.
+ */
+public class Pages<T> {
+
+    private final List<List<T>> pages;
+    private final int firstPage;
+    private final int pageSize;
+    private final boolean complete;
+    private final int size;
+
+    public static <T> Pages<T> empty(int pageSize) {
+        return new Pages<T>(Collections.<List<T>>emptyList(), 0, pageSize, false);
+    }
+
+    private Pages(List<List<T>> pages, int firstPage, int pageSize, boolean complete) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Pages need at least one row, not " + pageSize);
+        }
+        this.pages = pages;
+        this.firstPage = firstPage;
+        this.pageSize = pageSize;
+        this.complete = complete;
+        int rows = 0;
+        for (List<T> page : pages) {
+            rows += page.size();
+        }
+        this.size = rows;
+    }
+
+    /**
+     * @return these pages followed by {@code page}, dropping the oldest pages to keep at most {@code maxPages}
+     */
+    public Pages<T> plus(List<T> page, int maxPages) {
+        List<List<T>> window = new ArrayList<List<T>>(pages);
+        window.add(Collections.unmodifiableList(page));
+        int first = firstPage;
+        while (window.size() > maxPages) {
+            window.remove(0);
+            first++;
+        }
+        return new Pages<T>(Collections.unmodifiableList(window), first, pageSize, page.size() < pageSize);
+    }
+
+    /**
+     * @return {@code page} followed by these pages, dropping the newest pages to keep at most {@code maxPages}
+     */
+    public Pages<T> plusPrevious(List<T> page, int maxPages) {
+        if (!hasPreviousPage()) {
+            throw new IllegalStateException("There is no page before the first one");
+        }
+        List<List<T>> window = new ArrayList<List<T>>(pages);
+        window.add(0, Collections.unmodifiableList(page));
+        boolean windowComplete = complete;
+        while (window.size() > maxPages) {
+            window.remove(window.size() - 1);
+            windowComplete = false;
+        }
+        return new Pages<T>(Collections.unmodifiableList(window), firstPage - 1, pageSize, windowComplete);
+    }
+
+    /**
+     * @return no rows, starting where these pages start, for reading the same window again
+     */
+    public Pages<T> restarted() {
+        return new Pages<T>(Collections.<List<T>>emptyList(), firstPage, pageSize, false);
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    public List<T> getPage(int index) {
+        return pages.get(index);
+    }
+
+    /**
+     * @return the position of the first row still held
+     */
+    public int getFirstPosition() {
+        return firstPage * pageSize;
+    }
+
+    /**
+     * @return the position after the last row loaded, where the next page starts
+     */
+    public int getEndPosition() {
+        return getFirstPosition() + size;
+    }
+
+    /**
+     * @return how many rows are held
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int position) {
+        return position >= getFirstPosition() && position < getEndPosition();
+    }
+
+    public T get(int position) {
+        if (!contains(position)) {
+            throw new IndexOutOfBoundsException("Row " + position + " isn't in rows " + getFirstPosition() + " to " + getEndPosition());
+        }
+        int offset = position - getFirstPosition();
+        return pages.get(offset / pageSize).get(offset % pageSize);
+    }
+
+    /**
+     * @return whether pages before the first one held were dropped
+     */
+    public boolean hasPreviousPage() {
+        return firstPage > 0;
+    }
+
+    /**
+     * @return whether the last page has been loaded, a page shorter than the page size being the last one
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+}
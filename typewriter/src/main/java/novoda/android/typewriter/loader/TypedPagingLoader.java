@@ -0,0 +1,183 @@
+package novoda.android.typewriter.loader;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.v4.content.AsyncTaskLoader;
+
+import java.util.List;
+
+import novoda.android.typewriter.content.TypedResolver;
+
+/**
+ * Loads a query a page at a time instead of all at once. The first page is delivered as soon as it's read and the
+ * following ones are delivered as they land, until {@code maxPages} are held. From then on each call to
+ * {@link #loadNextPage()} reads one more page and drops the oldest, so no more than {@code maxPages} pages are ever in
+ * memory, and each call to {@link #loadPreviousPage()} reads the page before the oldest back and drops the newest. A
+ * content change reads the window held again, from its first page.
+ */
+public class TypedPagingLoader<T> extends AsyncTaskLoader<Pages<T>> {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int DEFAULT_MAX_PAGES = 5;
+
+    private final Class<T> what;
+    private final int pageSize;
+    private final int maxPages;
+    Uri uri;
+    String[] projection;
+    String selection;
+    String[] selectionArgs;
+    String sortOrder;
+
+    private volatile Pages<T> pages;
+    private volatile boolean loadingPrevious;
+
+    public Uri getUri() {
+        return uri;
+    }
+
+    public void setUri(Uri uri) {
+        this.uri = uri;
+    }
+
+    public String[] getProjection() {
+        return projection;
+    }
+
+    public void setProjection(String[] projection) {
+        this.projection = projection;
+    }
+
+    public String getSelection() {
+        return selection;
+    }
+
+    public void setSelection(String selection) {
+        this.selection = selection;
+    }
+
+    public String[] getSelectionArgs() {
+        return selectionArgs;
+    }
+
+    public void setSelectionArgs(String[] selectionArgs) {
+        this.selectionArgs = selectionArgs;
+    }
+
+    public String getSortOrder() {
+        return sortOrder;
+    }
+
+    public void setSortOrder(String sortOrder) {
+        this.sortOrder = sortOrder;
+    }
+
+    public TypedPagingLoader(Context context, Class<T> what, Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder, int pageSize, int maxPages) {
+        this(context, what, pageSize, maxPages);
+        this.uri = uri;
+        this.projection = projection;
+        this.selection = selection;
+        this.selectionArgs = selectionArgs;
+        this.sortOrder = sortOrder;
+    }
+
+    public TypedPagingLoader(Context context, Class<T> what, int pageSize, int maxPages) {
+        super(context);
+        if (pageSize <= 0 || maxPages <= 0) {
+            throw new IllegalArgumentException("Paging needs at least one page of one row, not " + maxPages + " of " + pageSize);
+        }
+        this.what = what;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+    }
+
+    public TypedPagingLoader(Context context, Class<T> what) {
+        this(context, what, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+    }
+
+    @Override
+    public Pages<T> loadInBackground() {
+        Pages<T> loaded = pages == null ? Pages.<T>empty(pageSize) : pages;
+        if (loadingPrevious && loaded.hasPreviousPage()) {
+            return loaded.plusPrevious(queryPage(loaded.getFirstPosition() - pageSize, pageSize), maxPages);
+        }
+        List<T> page = queryPage(loaded.getEndPosition(), pageSize);
+        if (page.isEmpty() && loaded.getPageCount() == 0 && loaded.hasPreviousPage()) {
+            // the rows the window was read again from are gone since the content changed
+            loaded = Pages.empty(pageSize);
+            page = queryPage(0, pageSize);
+        }
+        return loaded.plus(page, maxPages);
+    }
+
+    /**
+     * Reads {@code size} rows from {@code position} through the content resolver.
+     */
+    protected List<T> queryPage(int position, int size) {
+        return new TypedResolver(getContext().getContentResolver()).queryPage(uri, projection, selection, selectionArgs, sortOrder, position, size, what);
+    }
+
+    /**
+     * Reads the page after the last one held, unless the last page was already read.
+     */
+    public void loadNextPage() {
+        if (pages != null && !pages.isComplete()) {
+            loadingPrevious = false;
+            forceLoad();
+        }
+    }
+
+    /**
+     * Reads the page before the first one held, unless the first page is held.
+     */
+    public void loadPreviousPage() {
+        if (pages != null && pages.hasPreviousPage()) {
+            loadingPrevious = true;
+            forceLoad();
+        }
+    }
+
+    @Override
+    public void deliverResult(Pages<T> data) {
+        if (isReset()) {
+            return;
+        }
+        pages = data;
+        if (isStarted()) {
+            super.deliverResult(data);
+            if (!data.isComplete() && data.getPageCount() < maxPages) {
+                loadingPrevious = false;
+                forceLoad();
+            }
+        }
+    }
+
+    @Override
+    public void onContentChanged() {
+        Pages<T> held = pages;
+        pages = held == null ? null : held.restarted();
+        loadingPrevious = false;
+        super.onContentChanged();
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (takeContentChanged() || pages == null || pages.getPageCount() == 0) {
+            forceLoad();
+        } else {
+            deliverResult(pages);
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        pages = null;
+    }
+}
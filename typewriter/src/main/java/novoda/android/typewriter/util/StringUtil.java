@@ -8,12 +8,14 @@ public class StringUtil {
     public static final String SET = "set";
     public static final String GET = "get";
 
+    private static final Pattern WORD = Pattern.compile("[a-zA-Z0-9]+");
+    private static final Pattern CAPITALISED_WORD = Pattern.compile("[A-Z][a-z0-9]+");
+
     public static String camelify(String original) {
         if (original == null)
             return "";
         StringBuilder builder = new StringBuilder();
-        Pattern p = Pattern.compile("[a-zA-Z0-9]+");
-        Matcher m = p.matcher(original);
+        Matcher m = WORD.matcher(original);
         String word;
         while (m.find()) {
             word = m.group();
@@ -33,8 +35,7 @@ public class StringUtil {
             return "";
 
         StringBuilder builder = new StringBuilder();
-        Pattern p = Pattern.compile("[A-Z][a-z0-9]+");
-        Matcher m = p.matcher(original);
+        Matcher m = CAPITALISED_WORD.matcher(original);
         String word;
         while (m.find()) {
             word = m.group();
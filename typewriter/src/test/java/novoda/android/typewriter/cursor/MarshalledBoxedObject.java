@@ -0,0 +1,21 @@
+package novoda.android.typewriter.cursor;
+
+import novoda.android.typewriter.annotation.Mapper;
+import novoda.android.typewriter.annotation.Marshalled;
+
+@Marshalled
+public class MarshalledBoxedObject {
+
+    @Mapper("_id")
+    public long id;
+
+    public Integer count;
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public void setCount(Integer count) {
+        this.count = count;
+    }
+}
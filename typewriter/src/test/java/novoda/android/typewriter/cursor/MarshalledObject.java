@@ -0,0 +1,37 @@
+package novoda.android.typewriter.cursor;
+
+import novoda.android.typewriter.annotation.Mapper;
+import novoda.android.typewriter.annotation.Marshalled;
+
+@Marshalled
+public class MarshalledObject {
+
+    @Mapper("_id")
+    public long id;
+
+    public String test;
+    public float myFloat;
+    public int myInt;
+    public boolean flag;
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public void setTest(String test) {
+        this.test = test;
+    }
+
+    public void setMyFloat(float myFloat) {
+        this.myFloat = myFloat;
+    }
+
+    @Mapper("int_value")
+    public void setMyInt(int myInt) {
+        this.myInt = myInt;
+    }
+
+    public void setFlag(boolean flag) {
+        this.flag = flag;
+    }
+}
@@ -26,6 +26,31 @@ class TypedResolverSpec extends TypeWriterSpec {
       tr.get(Uri.parse("content://someuri"), classOf[MyObject])
       verify(cursor).moveToPosition(0)
     }
+
+    "query a page of rows and close the cursor" in {
+      val cr = mock[ContentResolver]
+      val cursor = mock[Cursor]
+      val tr = new TypedResolver(cr)
+
+      when(cr.query(any(classOf[Uri]), any(classOf[Array[String]]), anyString, any(classOf[Array[String]]), anyString)).thenReturn(cursor)
+      when(cursor.getColumnNames).thenReturn(new Array[String](0))
+
+      tr.queryPage(Uri.parse("content://someuri"), null, null, null, "name", 40, 20, classOf[MyObject])
+      verify(cr).query(any(classOf[Uri]), any(classOf[Array[String]]), anyString, any(classOf[Array[String]]), org.mockito.Matchers.eq("name LIMIT 20 OFFSET 40"))
+      verify(cursor).close()
+    }
+
+    "close the cursor once a table is read" in {
+      val cr = mock[ContentResolver]
+      val cursor = mock[Cursor]
+      val tr = new TypedResolver(cr)
+
+      when(cr.query(any(classOf[Uri]), any(classOf[Array[String]]), anyString, any(classOf[Array[String]]), anyString)).thenReturn(cursor)
+      when(cursor.getColumnNames).thenReturn(new Array[String](0))
+
+      tr.queryTable(Uri.parse("content://someuri")).getRowCount should be(0)
+      verify(cursor).close()
+    }
   }
 
 }
\ No newline at end of file
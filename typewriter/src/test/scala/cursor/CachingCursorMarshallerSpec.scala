@@ -0,0 +1,66 @@
+package cursor
+
+import android.database.{DataSetObserver, Cursor}
+import novoda.android.typewriter.cursor.{CursorMarshaller, CachingCursorMarshaller, MyObject}
+import novoda.android.typewriter.TypeWriterSpec
+
+import org.mockito.ArgumentCaptor
+import org.mockito.Mockito._
+import org.mockito.Matchers._
+
+class CachingCursorMarshallerSpec extends TypeWriterSpec {
+
+  "a caching cursor marshaller" should {
+
+    "marshall a row only once while it is in the window" in {
+      val c = mock[Cursor]
+      val marshaller = mock[CursorMarshaller[MyObject]]
+      when(marshaller.marshall(c)).thenReturn(new MyObject)
+      when(c.getPosition).thenReturn(3)
+      val caching = new CachingCursorMarshaller[MyObject](c, marshaller, 10, 0)
+
+      caching.marshall(c) should be theSameInstanceAs (caching.marshall(c))
+
+      verify(marshaller, times(1)).marshall(c)
+      caching.getHitCount should be(1)
+      caching.getMissCount should be(1)
+    }
+
+    "prefetch the rows ahead on a miss" in {
+      val c = mock[Cursor]
+      val marshaller = mock[CursorMarshaller[MyObject]]
+      when(marshaller.marshall(c)).thenReturn(new MyObject)
+      when(c.getPosition).thenReturn(0)
+      when(c.moveToPosition(anyInt)).thenReturn(true)
+      val caching = new CachingCursorMarshaller[MyObject](c, marshaller, 10, 2)
+
+      caching.marshall(c)
+
+      verify(c).moveToPosition(1)
+      verify(c).moveToPosition(2)
+      verify(c).moveToPosition(0)
+      caching.getPrefetchCount should be(2)
+    }
+
+    "empty the window when the cursor is requeried" in {
+      val c = mock[Cursor]
+      val marshaller = mock[CursorMarshaller[MyObject]]
+      when(marshaller.marshall(c)).thenReturn(new MyObject)
+      when(c.getPosition).thenReturn(3)
+      val caching = new CachingCursorMarshaller[MyObject](c, marshaller, 10, 0)
+      val observer = ArgumentCaptor.forClass(classOf[DataSetObserver])
+      verify(c).registerDataSetObserver(observer.capture())
+
+      caching.marshall(c)
+      observer.getValue.onChanged()
+      caching.marshall(c)
+
+      verify(marshaller, times(2)).marshall(c)
+      caching.getMissCount should be(2)
+    }
+
+    "refuse to prefetch more rows than the window holds" in {
+      evaluating(new CachingCursorMarshaller[MyObject](mock[Cursor], mock[CursorMarshaller[MyObject]], 4, 4)) should produce[IllegalArgumentException]
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package cursor
+
+import android.database.Cursor
+import novoda.android.typewriter.cursor.{ColumnTable, MyObject}
+import novoda.android.typewriter.TypeWriterSpec
+
+import org.mockito.Mockito._
+
+class ColumnTableSpec extends TypeWriterSpec {
+
+  def cursorOf(columns: Array[String], rows: Int) = {
+    val c = mock[Cursor]
+    when(c.getCount).thenReturn(rows)
+    when(c.getColumnNames).thenReturn(columns)
+    val moves = List.fill(rows)(true) :+ false
+    when(c.moveToNext).thenReturn(moves.head, moves.tail.map(Boolean.box): _*)
+    c
+  }
+
+  "a column table" should {
+
+    "read every row in one pass and close the cursor" in {
+      val c = cursorOf(Array("myInt", "test"), 2)
+      when(c.getType(0)).thenReturn(Cursor.FIELD_TYPE_INTEGER)
+      when(c.getType(1)).thenReturn(Cursor.FIELD_TYPE_STRING)
+      when(c.getLong(0)).thenReturn(1L, 2L)
+      when(c.getString(1)).thenReturn("a", "b")
+
+      val table = ColumnTable.read(c)
+
+      table.getRowCount should be(2)
+      table.getLong(1, 0) should be(2L)
+      table.getString(0, 1) should be("a")
+      verify(c).close()
+    }
+
+    "share one instance between equal strings" in {
+      val c = cursorOf(Array("test"), 2)
+      when(c.getType(0)).thenReturn(Cursor.FIELD_TYPE_STRING)
+      when(c.getString(0)).thenReturn(new String("same"), new String("same"))
+
+      val table = ColumnTable.read(c)
+
+      table.getString(0, 0) should be theSameInstanceAs (table.getString(1, 0))
+    }
+
+    "keep a column mixing integers and floats as floats" in {
+      val c = cursorOf(Array("myFloat"), 2)
+      when(c.getType(0)).thenReturn(Cursor.FIELD_TYPE_INTEGER, Cursor.FIELD_TYPE_FLOAT)
+      when(c.getLong(0)).thenReturn(1L)
+      when(c.getDouble(0)).thenReturn(1.5)
+
+      val table = ColumnTable.read(c)
+
+      table.getType(0, 0) should be(Cursor.FIELD_TYPE_FLOAT)
+      table.getDouble(0, 0) should be(1.0)
+      table.getDouble(1, 0) should be(1.5)
+    }
+
+    "keep every value of a column mixing blobs with other types" in {
+      val blob = Array[Byte](1, 2)
+      val c = cursorOf(Array("data"), 3)
+      when(c.getType(0)).thenReturn(Cursor.FIELD_TYPE_BLOB, Cursor.FIELD_TYPE_INTEGER, Cursor.FIELD_TYPE_STRING)
+      when(c.getBlob(0)).thenReturn(blob)
+      when(c.getLong(0)).thenReturn(7L)
+      when(c.getString(0)).thenReturn("text")
+
+      val table = ColumnTable.read(c)
+
+      table.getType(0, 0) should be(Cursor.FIELD_TYPE_BLOB)
+      table.getBlob(0, 0) should be theSameInstanceAs (blob)
+      table.getType(1, 0) should be(Cursor.FIELD_TYPE_INTEGER)
+      table.getLong(1, 0) should be(7L)
+      table.getType(2, 0) should be(Cursor.FIELD_TYPE_STRING)
+      table.getString(2, 0) should be("text")
+    }
+
+    "remember which values were null" in {
+      val c = cursorOf(Array("myInt"), 2)
+      when(c.getType(0)).thenReturn(Cursor.FIELD_TYPE_NULL, Cursor.FIELD_TYPE_INTEGER)
+      when(c.getLong(0)).thenReturn(7L)
+
+      val table = ColumnTable.read(c)
+
+      table.isNull(0, 0) should be(true)
+      table.getLong(1, 0) should be(7L)
+    }
+
+    "close the cursor when reading fails" in {
+      val c = cursorOf(Array("myInt"), 1)
+      when(c.getType(0)).thenThrow(new IllegalStateException)
+
+      evaluating(ColumnTable.read(c)) should produce[IllegalStateException]
+      verify(c).close()
+    }
+
+    "materialise a range of rows into objects" in {
+      val c = cursorOf(Array("myInt", "test"), 3)
+      when(c.getType(0)).thenReturn(Cursor.FIELD_TYPE_INTEGER)
+      when(c.getType(1)).thenReturn(Cursor.FIELD_TYPE_STRING)
+      when(c.getLong(0)).thenReturn(1L, 2L, 3L)
+      when(c.getString(1)).thenReturn("a", "b", "c")
+
+      val objects = ColumnTable.read(c).materialise(classOf[MyObject], 1, 3)
+
+      objects.size should be(2)
+      objects.get(0).myInt should be(2)
+      objects.get(1).test should be("c")
+    }
+  }
+}
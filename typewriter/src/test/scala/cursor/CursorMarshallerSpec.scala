@@ -31,6 +31,17 @@ class CursorMarshallerSpec extends TypeWriterSpec {
       obj.test should be("hello world")
     }
 
+    "marshall a null string column as an empty string" in {
+      val c = mock[Cursor]
+      when(c.getType(anyInt)).thenReturn(Cursor.FIELD_TYPE_NULL)
+      when(c.getColumnCount).thenReturn(1)
+      when(c.getColumnName(anyInt())).thenReturn("test")
+      when(c.getString(anyInt)).thenReturn(null)
+      val marshaller = new ReflectionCursorMarshaller[MyObject](c, classOf[MyObject])
+      val obj = marshaller.marshall(c)
+      obj.test should be("")
+    }
+
     "marshall float correctly" in {
       val c = mock[Cursor]
       when(c.getType(anyInt)).thenReturn(Cursor.FIELD_TYPE_FLOAT)
@@ -64,5 +75,38 @@ class CursorMarshallerSpec extends TypeWriterSpec {
       obj.id should be(Long.MaxValue)
     }
 
+    "skip columns without a setter" in {
+      val c = mock[Cursor]
+      when(c.getColumnCount).thenReturn(2)
+      when(c.getColumnName(0)).thenReturn("unknown")
+      when(c.getColumnName(1)).thenReturn("myInt")
+      when(c.getInt(1)).thenReturn(3)
+      val marshaller = new ReflectionCursorMarshaller[MyObject](c, classOf[MyObject])
+      val obj = marshaller.marshall(c)
+      obj.myInt should be(3)
+      verify(c, never()).getString(0)
+    }
+
+    "read columns with the getter matching the setter type" in {
+      val c = mock[Cursor]
+      when(c.getType(anyInt)).thenReturn(Cursor.FIELD_TYPE_INTEGER)
+      when(c.getColumnCount).thenReturn(1)
+      when(c.getColumnName(anyInt())).thenReturn("myFloat")
+      when(c.getFloat(anyInt)).thenReturn(2.0f)
+      val marshaller = new ReflectionCursorMarshaller[MyObject](c, classOf[MyObject])
+      val obj = marshaller.marshall(c)
+      obj.myFloat should be(2.0f)
+    }
+
+    "match columns to setters only once" in {
+      val c = mock[Cursor]
+      when(c.getColumnCount).thenReturn(1)
+      when(c.getColumnName(anyInt())).thenReturn("myInt")
+      val marshaller = new ReflectionCursorMarshaller[MyObject](c, classOf[MyObject])
+      marshaller.marshall(c)
+      marshaller.marshall(c)
+      verify(c, times(1)).getColumnName(0)
+    }
+
   }
 }
\ No newline at end of file
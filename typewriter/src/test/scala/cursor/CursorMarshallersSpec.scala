@@ -0,0 +1,54 @@
+package cursor
+
+import android.database.Cursor
+import novoda.android.typewriter.cursor._
+import novoda.android.typewriter.TypeWriterSpec
+
+import org.mockito.Mockito._
+
+class CursorMarshallersSpec extends TypeWriterSpec {
+
+  "cursor marshallers" should {
+
+    "use the generated marshaller of a @Marshalled class" in {
+      val c = mock[Cursor]
+      CursorMarshallers.create(c, classOf[MarshalledObject]).isInstanceOf[MarshalledObject_CursorMarshaller] should be(true)
+    }
+
+    "fall back to reflection for any other class" in {
+      val c = mock[Cursor]
+      CursorMarshallers.create(c, classOf[MyObject]).isInstanceOf[ReflectionCursorMarshaller[_]] should be(true)
+    }
+
+    "fall back to reflection for a @Marshalled class with a setter the compiler can't read" in {
+      val c = mock[Cursor]
+      CursorMarshallers.create(c, classOf[MarshalledBoxedObject]).isInstanceOf[ReflectionCursorMarshaller[_]] should be(true)
+    }
+
+    "still set the boxed setters of a @Marshalled class marshalled through reflection" in {
+      val c = mock[Cursor]
+      when(c.getColumnCount).thenReturn(2)
+      when(c.getColumnName(0)).thenReturn("_id")
+      when(c.getColumnName(1)).thenReturn("count")
+      when(c.getType(1)).thenReturn(Cursor.FIELD_TYPE_INTEGER)
+      when(c.getLong(0)).thenReturn(7L)
+      when(c.getInt(1)).thenReturn(3)
+      val obj = CursorMarshallers.create(c, classOf[MarshalledBoxedObject]).marshall(c)
+      obj.id should be(7L)
+      obj.count should be(3)
+    }
+
+    "marshall through the setters the generated marshaller binds" in {
+      val c = mock[Cursor]
+      when(c.getColumnCount).thenReturn(3)
+      when(c.getColumnName(0)).thenReturn("_id")
+      when(c.getColumnName(1)).thenReturn("int_value")
+      when(c.getColumnName(2)).thenReturn("unknown")
+      when(c.getLong(0)).thenReturn(Long.MaxValue)
+      when(c.getInt(1)).thenReturn(3)
+      val obj = CursorMarshallers.create(c, classOf[MarshalledObject]).marshall(c)
+      obj.id should be(Long.MaxValue)
+      obj.myInt should be(3)
+    }
+  }
+}
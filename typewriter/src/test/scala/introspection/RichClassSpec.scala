@@ -69,6 +69,19 @@ class RichClassSpec extends WordSpec with ShouldMatchers with RichClassMatcher {
       )
     }
 
+    "be shared per class" in {
+      RichClass.of(classOf[TestObject]) should be theSameInstanceAs (RichClass.of(classOf[TestObject]))
+      RichClass.of(classOf[TestObject]) should not be theSameInstanceAs (RichClass.of(classOf[MyObject]))
+    }
+
+    "keep answering the same once a column is resolved" in {
+      val richClass = RichClass.of(classOf[TestObject])
+      richClass.setter("name_camel_case") should be(getMethod("setNameCamelCase", classOf[String]))
+      richClass.setter("name_camel_case") should be(getMethod("setNameCamelCase", classOf[String]))
+      richClass.hasMethod("name_not_found") should be(false)
+      richClass.hasMethod("name_not_found") should be(false)
+    }
+
     def getMethod(mn: String, c: Class[_]) = {
       classOf[TestObject].getMethod(mn, c)
     }
@@ -0,0 +1,57 @@
+package loader
+
+import java.util.Arrays
+import novoda.android.typewriter.loader.Pages
+import novoda.android.typewriter.TypeWriterSpec
+
+class PagesSpec extends TypeWriterSpec {
+
+  def page(rows: Int*) = Arrays.asList(rows.map(Int.box): _*)
+
+  "pages" should {
+
+    "read rows across pages by position" in {
+      val pages = Pages.empty[Integer](2).plus(page(0, 1), 5).plus(page(2, 3), 5)
+
+      pages.size should be(4)
+      pages.get(3) should be(3)
+      pages.getEndPosition should be(4)
+    }
+
+    "drop the oldest pages to stay within the window" in {
+      val pages = Pages.empty[Integer](2).plus(page(0, 1), 2).plus(page(2, 3), 2).plus(page(4, 5), 2)
+
+      pages.getPageCount should be(2)
+      pages.getFirstPosition should be(2)
+      pages.contains(1) should be(false)
+      pages.get(4) should be(4)
+      evaluating(pages.get(0)) should produce[IndexOutOfBoundsException]
+    }
+
+    "put a previous page back in front, dropping the newest pages" in {
+      val pages = Pages.empty[Integer](2).plus(page(0, 1), 2).plus(page(2, 3), 2).plus(page(4, 5), 2)
+
+      val back = pages.plusPrevious(page(0, 1), 2)
+
+      back.getFirstPosition should be(0)
+      back.getEndPosition should be(4)
+      back.get(0) should be(0)
+      back.hasPreviousPage should be(false)
+      evaluating(back.plusPrevious(page(0, 1), 2)) should produce[IllegalStateException]
+    }
+
+    "no longer be complete once the last page is dropped" in {
+      val pages = Pages.empty[Integer](2).plus(page(0, 1), 2).plus(page(2, 3), 2).plus(page(4), 2)
+
+      pages.isComplete should be(true)
+      pages.plusPrevious(page(0, 1), 2).isComplete should be(false)
+    }
+
+    "be complete once a page comes back short" in {
+      val pages = Pages.empty[Integer](2).plus(page(0, 1), 5)
+
+      pages.isComplete should be(false)
+      pages.plus(page(2), 5).isComplete should be(true)
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package loader
+
+import android.content.Context
+import android.support.v4.content.Loader
+import android.support.v4.content.Loader.OnLoadCompleteListener
+import java.util.{Arrays, List => JList}
+import novoda.android.typewriter.loader.{Pages, TypedPagingLoader}
+import novoda.android.typewriter.TypeWriterSpec
+import scala.collection.mutable.ListBuffer
+
+class TypedPagingLoaderSpec extends TypeWriterSpec {
+
+  var rows = 11
+
+  class SynchronousLoader extends TypedPagingLoader[Integer](mock[Context], classOf[Integer], 2, 3) {
+    override def queryPage(position: Int, size: Int): JList[Integer] =
+      Arrays.asList((position until math.min(rows, position + size)).map(Int.box): _*)
+
+    override def onForceLoad() {
+      deliverResult(loadInBackground())
+    }
+  }
+
+  def started(loader: SynchronousLoader) = {
+    val delivered = ListBuffer[Pages[Integer]]()
+    loader.registerListener(0, new OnLoadCompleteListener[Pages[Integer]] {
+      def onLoadComplete(l: Loader[Pages[Integer]], data: Pages[Integer]) {
+        delivered += data
+      }
+    })
+    loader.startLoading()
+    delivered
+  }
+
+  "a paging loader" should {
+
+    "deliver pages as they land until the window is full" in {
+      val delivered = started(new SynchronousLoader)
+
+      delivered.map(_.getPageCount) should be(List(1, 2, 3))
+      delivered.last.getEndPosition should be(6)
+    }
+
+    "read the pages it dropped back when paging backwards" in {
+      val loader = new SynchronousLoader
+      val delivered = started(loader)
+      loader.loadNextPage()
+      loader.loadNextPage()
+
+      loader.loadPreviousPage()
+
+      delivered.last.getFirstPosition should be(2)
+      delivered.last.getEndPosition should be(8)
+      delivered.last.get(2) should be(2)
+    }
+
+    "stop at the first and the last page" in {
+      val loader = new SynchronousLoader
+      val delivered = started(loader)
+      (1 to 5).foreach(_ => loader.loadNextPage())
+      val afterLastPage = delivered.size
+
+      loader.loadNextPage()
+      (1 to 5).foreach(_ => loader.loadPreviousPage())
+      val afterFirstPage = delivered.size
+      loader.loadPreviousPage()
+
+      delivered.size should be(afterFirstPage)
+      afterFirstPage should be(afterLastPage + 3)
+      delivered.last.getFirstPosition should be(0)
+    }
+
+    "read the window it holds again when the content changes" in {
+      val loader = new SynchronousLoader
+      val delivered = started(loader)
+      (1 to 3).foreach(_ => loader.loadNextPage())
+
+      loader.onContentChanged()
+
+      delivered.last.getFirstPosition should be(6)
+      delivered.last.getPageCount should be(3)
+    }
+
+    "start over when the rows of the window held are gone" in {
+      val loader = new SynchronousLoader
+      val delivered = started(loader)
+      (1 to 3).foreach(_ => loader.loadNextPage())
+      rows = 3
+
+      loader.onContentChanged()
+
+      delivered.last.getFirstPosition should be(0)
+      delivered.last.getEndPosition should be(3)
+    }
+  }
+}